@@ -2,9 +2,11 @@ package com.example.demo.config;
 
 import java.util.concurrent.Executor;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
@@ -12,9 +14,11 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
 
 @Configuration
 @EnableAsync
+@EnableScheduling
 public class AppConfig {
 
     /**
@@ -37,6 +41,9 @@ public class AppConfig {
         // Estrategia de nombres (snake_case para compatibilidad con Python)
         mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
         
+        // Getters y constructores de los DTOs sin reflexión en cada llamada
+        mapper.registerModule(new BlackbirdModule());
+        
         return mapper;
     }
 
@@ -64,4 +71,36 @@ public class AppConfig {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * Executor acotado para enviar los eventos SSE de /stream.
+     * Cada cliente se vacía en su propia tarea, así un cliente lento no frena la ingesta ni a los demás.
+     */
+    @Bean(name = "streamExecutor")
+    public Executor streamExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("Detection-Stream-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Executor acotado para las ingestas de FileWatcherService: una tarea por fuente (cámara),
+     * como máximo app.detections.watch.max-concurrency a la vez.
+     */
+    @Bean(name = "ingestExecutor")
+    public Executor ingestExecutor(@Value("${app.detections.watch.max-concurrency:4}") int maxConcurrency) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(1, maxConcurrency));
+        executor.setMaxPoolSize(Math.max(1, maxConcurrency));
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("Detection-Ingest-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
 }
@@ -0,0 +1,32 @@
+package com.example.demo.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import lombok.RequiredArgsConstructor;
+
+@Configuration
+@RequiredArgsConstructor
+public class ConditionalGetConfig implements WebMvcConfigurer {
+
+    private final DataVersionEtagInterceptor dataVersionEtagInterceptor;
+
+    @Override
+    public void addInterceptors(@NonNull InterceptorRegistry registry) {
+        // El stream, las ventanas en vivo y los endpoints de estado y salud cambian sin que cambien los datos: quedan fuera
+        registry.addInterceptor(dataVersionEtagInterceptor)
+                .addPathPatterns("/api/detections/**")
+                .excludePathPatterns(
+                    "/api/detections/test",
+                    "/api/detections/health",
+                    "/api/detections/stream",
+                    "/api/detections/stream/**",
+                    "/api/detections/live/**",
+                    "/api/detections/ingest/**",
+                    "/api/detections/aggregates/**",
+                    "/api/detections/maintenance/**"
+                );
+    }
+}
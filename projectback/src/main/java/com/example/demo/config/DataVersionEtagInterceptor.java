@@ -0,0 +1,39 @@
+package com.example.demo.config;
+
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import com.example.demo.service.analytics.DataVersionTracker;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * GET condicional para los endpoints de datos: ETag a partir de la versión de datos y de la URL
+ * con sus parámetros, y Last-Modified del último cambio. Si el cliente ya tiene esa versión
+ * se responde 304 antes de llegar al controlador, sin recalcular ni consultar la base de datos.
+ */
+@Component
+@RequiredArgsConstructor
+public class DataVersionEtagInterceptor implements HandlerInterceptor {
+
+    private final DataVersionTracker dataVersion;
+
+    @Override
+    public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+            @NonNull Object handler) {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            return true;
+        }
+        String query = request.getQueryString();
+        String resource = query != null ? request.getRequestURI() + "?" + query : request.getRequestURI();
+        String etag = "\"" + dataVersion.getEpoch() + "-" + dataVersion.getVersion() + "-"
+            + Integer.toHexString(resource.hashCode()) + "\"";
+
+        // Devuelve true (y deja el 304 armado) si If-None-Match / If-Modified-Since coinciden
+        return !new ServletWebRequest(request, response).checkNotModified(etag, dataVersion.getLastModifiedMillis());
+    }
+}
@@ -1,20 +1,43 @@
 package com.example.demo.controller;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.example.demo.service.DetectionAnalysisService;
+import com.example.demo.service.DetectionBreakdownService;
+import com.example.demo.service.DetectionBulkWriter;
+import com.example.demo.service.DetectionDataLifecycleService;
+import com.example.demo.service.DetectionLiveStreamService;
+import com.example.demo.service.DetectionStagingService;
+import com.example.demo.service.FileWatcherService;
 import com.example.demo.service.JsonLoader;
+import com.example.demo.service.LiveWindowService;
+import com.example.demo.service.TrafficRollupService;
+import com.example.demo.service.DTO.BottleneckResponse;
+import com.example.demo.service.DTO.QuickStatsResponse;
+import com.example.demo.service.DTO.SeriesResponse;
+import com.example.demo.service.DTO.TotalVolumeResponse;
+import com.example.demo.service.analytics.AnalyticsResponseCache;
+import com.example.demo.service.analytics.DashboardSection;
+import com.example.demo.service.analytics.DetectionAggregateStore;
+import com.example.demo.service.analytics.DetectionFilter;
+import com.example.demo.service.analytics.DownsampleSpec;
+import com.example.demo.service.analytics.RollupGranularity;
 
 import lombok.RequiredArgsConstructor;
 
@@ -27,6 +50,16 @@ public class DetectionController {
     private static final Logger logger = LoggerFactory.getLogger(DetectionController.class);
     private final DetectionAnalysisService analysisService;
     private final JsonLoader jsonLoader;
+    private final DetectionBulkWriter detectionBulkWriter;
+    private final DetectionDataLifecycleService lifecycleService;
+    private final DetectionAggregateStore aggregateStore;
+    private final AnalyticsResponseCache responseCache;
+    private final DetectionLiveStreamService liveStreamService;
+    private final LiveWindowService liveWindowService;
+    private final DetectionBreakdownService breakdownService;
+    private final TrafficRollupService rollupService;
+    private final DetectionStagingService stagingService;
+    private final FileWatcherService fileWatcherService;
 
     @GetMapping("/test")
     public ResponseEntity<Map<String, Object>> test() {
@@ -39,10 +72,16 @@ public class DetectionController {
     }
 
     @GetMapping("/volume/total")
-    public ResponseEntity<Map<String, Object>> getTotalVehicleVolume() {
+    public ResponseEntity<Object> getTotalVehicleVolume(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String lane,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String source) {
         logger.info("📊 Solicitando volumen total de vehículos");
+        DetectionFilter filter = DetectionFilter.of(from, to, lane, type, source);
         try {
-            Map<String, Object> result = analysisService.getTotalVehicleVolume();
+            TotalVolumeResponse result = analysisService.getTotalVehicleVolume(filter);
             logger.info("✅ Volumen total obtenido exitosamente: {}", result);
             return ResponseEntity.ok(result);
         } catch (Exception e) {
@@ -56,10 +95,16 @@ public class DetectionController {
     }
 
     @GetMapping("/volume/by-lane")
-    public ResponseEntity<Map<String, Map<String, Integer>>> getVehicleVolumeByLane() {
+    public ResponseEntity<Map<String, Map<String, Integer>>> getVehicleVolumeByLane(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String lane,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String source) {
         logger.info("🛣️ Solicitando volumen por carril");
+        DetectionFilter filter = DetectionFilter.of(from, to, lane, type, source);
         try {
-            Map<String, Map<String, Integer>> result = analysisService.getVehicleVolumeByLane();
+            Map<String, Map<String, Integer>> result = analysisService.getVehicleVolumeByLane(filter);
             logger.info("✅ Volumen por carril obtenido exitosamente");
             return ResponseEntity.ok(result);
         } catch (Exception e) {
@@ -69,10 +114,16 @@ public class DetectionController {
     }
 
     @GetMapping("/patterns/hourly")
-    public ResponseEntity<Map<String, Integer>> getHourlyPatterns() {
+    public ResponseEntity<Map<String, Integer>> getHourlyPatterns(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String lane,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String source) {
         logger.info("⏰ Solicitando patrones horarios");
+        DetectionFilter filter = DetectionFilter.of(from, to, lane, type, source);
         try {
-            Map<String, Integer> result = analysisService.getHourlyPatterns();
+            Map<String, Integer> result = analysisService.getHourlyPatterns(filter);
             logger.info("✅ Patrones horarios obtenidos exitosamente");
             return ResponseEntity.ok(result);
         } catch (Exception e) {
@@ -82,10 +133,16 @@ public class DetectionController {
     }
 
     @GetMapping("/lanes/speed")
-    public ResponseEntity<Map<String, Double>> getAvgSpeedByLane() {
+    public ResponseEntity<Map<String, Double>> getAvgSpeedByLane(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String lane,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String source) {
         logger.info("🚗 Solicitando velocidad promedio por carril");
+        DetectionFilter filter = DetectionFilter.of(from, to, lane, type, source);
         try {
-            Map<String, Double> result = analysisService.getAvgSpeedByLane();
+            Map<String, Double> result = analysisService.getAvgSpeedByLane(filter);
             logger.info("✅ Velocidades por carril obtenidas exitosamente");
             return ResponseEntity.ok(result);
         } catch (Exception e) {
@@ -94,11 +151,36 @@ public class DetectionController {
         }
     }
 
+    @GetMapping("/lanes/speed/stats")
+    public ResponseEntity<Map<String, Map<String, Object>>> getSpeedStatsByLane(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String lane,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String source) {
+        logger.info("📐 Solicitando distribución de velocidades por carril");
+        DetectionFilter filter = DetectionFilter.of(from, to, lane, type, source);
+        try {
+            Map<String, Map<String, Object>> result = analysisService.getSpeedStatsByLane(filter);
+            logger.info("✅ Distribución de velocidades obtenida exitosamente");
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            logger.error("❌ Error obteniendo distribución de velocidades: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @GetMapping("/lanes/bottlenecks")
-    public ResponseEntity<Object[]> getBottlenecks() {
+    public ResponseEntity<BottleneckResponse[]> getBottlenecks(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String lane,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String source) {
         logger.info("🚧 Solicitando cuellos de botella");
+        DetectionFilter filter = DetectionFilter.of(from, to, lane, type, source);
         try {
-            Object[] result = analysisService.getBottlenecks();
+            BottleneckResponse[] result = analysisService.getBottlenecks(filter);
             logger.info("✅ Cuellos de botella obtenidos exitosamente: {} elementos", result.length);
             return ResponseEntity.ok(result);
         } catch (Exception e) {
@@ -107,11 +189,78 @@ public class DetectionController {
         }
     }
 
+    @GetMapping("/dashboard")
+    public ResponseEntity<Map<String, Object>> getDashboard(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String lane,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String source,
+            @RequestParam(required = false) String fields) {
+        logger.info("🧭 Solicitando dashboard completo");
+        DetectionFilter filter = DetectionFilter.of(from, to, lane, type, source);
+        Set<DashboardSection> sections = DashboardSection.parse(fields);
+        try {
+            Map<String, Object> result = analysisService.getDashboard(filter, sections);
+            logger.info("✅ Dashboard obtenido exitosamente: {} secciones", result.size());
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            logger.error("❌ Error obteniendo dashboard: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDetections(
+            @RequestParam(required = false) String lane,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String source) {
+        logger.info("📡 Suscripción al stream de detecciones (lane={}, type={})", lane, type);
+        DetectionFilter filter = DetectionFilter.of(null, null, lane, type, source);
+        return liveStreamService.subscribe(filter);
+    }
+
+    @GetMapping("/stream/status")
+    public ResponseEntity<Map<String, Object>> getStreamStatus() {
+        logger.info("📡 Solicitando estado del stream de detecciones");
+        try {
+            return ResponseEntity.ok(liveStreamService.getStatus());
+        } catch (Exception e) {
+            logger.error("❌ Error obteniendo estado del stream: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/live/window")
+    public ResponseEntity<Map<String, Object>> getLiveWindow(@RequestParam(defaultValue = "5m") String size) {
+        logger.info("⏱️ Solicitando ventana en vivo de {}", size);
+        try {
+            return ResponseEntity.ok(liveWindowService.getWindow(size));
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("❌ Error obteniendo ventana en vivo: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @GetMapping("/temporal/evolution")
-    public ResponseEntity<Map<String, Object>> getTrafficEvolution() {
+    public ResponseEntity<SeriesResponse> getTrafficEvolution(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String lane,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String source,
+            @RequestParam(required = false) String granularity,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(required = false) String bucket,
+            @RequestParam(required = false) String agg) {
         logger.info("📈 Solicitando evolución temporal del tráfico");
+        DetectionFilter filter = DetectionFilter.of(from, to, lane, type, source);
+        RollupGranularity rollupGranularity = granularity != null ? RollupGranularity.fromName(granularity) : null;
+        DownsampleSpec downsample = downsampleSpec(maxPoints, bucket, agg, rollupGranularity);
         try {
-            Map<String, Object> result = analysisService.getTrafficEvolution();
+            SeriesResponse result = analysisService.getTrafficEvolution(filter, rollupGranularity, downsample);
             logger.info("✅ Evolución temporal obtenida exitosamente");
             return ResponseEntity.ok(result);
         } catch (Exception e) {
@@ -121,10 +270,22 @@ public class DetectionController {
     }
 
     @GetMapping("/temporal/speed")
-    public ResponseEntity<Map<String, Object>> getSpeedEvolution() {
+    public ResponseEntity<SeriesResponse> getSpeedEvolution(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String lane,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String source,
+            @RequestParam(required = false) String granularity,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(required = false) String bucket,
+            @RequestParam(required = false) String agg) {
         logger.info("🏎️ Solicitando evolución de velocidad");
+        DetectionFilter filter = DetectionFilter.of(from, to, lane, type, source);
+        RollupGranularity rollupGranularity = granularity != null ? RollupGranularity.fromName(granularity) : null;
+        DownsampleSpec downsample = downsampleSpec(maxPoints, bucket, agg, rollupGranularity);
         try {
-            Map<String, Object> result = analysisService.getSpeedEvolution();
+            SeriesResponse result = analysisService.getSpeedEvolution(filter, rollupGranularity, downsample);
             logger.info("✅ Evolución de velocidad obtenida exitosamente");
             return ResponseEntity.ok(result);
         } catch (Exception e) {
@@ -134,10 +295,16 @@ public class DetectionController {
     }
 
     @GetMapping("/vehicle-types/dominance")
-    public ResponseEntity<Map<String, Double>> getVehicleTypeDominance() {
+    public ResponseEntity<Map<String, Double>> getVehicleTypeDominance(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String lane,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String source) {
         logger.info("🚙 Solicitando dominancia de tipos de vehículos");
+        DetectionFilter filter = DetectionFilter.of(from, to, lane, type, source);
         try {
-            Map<String, Double> result = analysisService.getVehicleTypeDominance();
+            Map<String, Double> result = analysisService.getVehicleTypeDominance(filter);
             logger.info("✅ Dominancia de tipos obtenida exitosamente");
             return ResponseEntity.ok(result);
         } catch (Exception e) {
@@ -262,6 +429,157 @@ public class DetectionController {
         }
     }
 
+    @GetMapping("/ingest/writer")
+    public ResponseEntity<Map<String, Object>> getWriterStats() {
+        logger.info("💾 Solicitando estadísticas de escritura");
+        try {
+            Map<String, Object> result = detectionBulkWriter.getStats();
+            logger.info("✅ Estadísticas de escritura obtenidas: {}", result);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            logger.error("❌ Error obteniendo estadísticas de escritura: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/aggregates/status")
+    public ResponseEntity<Map<String, Object>> getAggregateStoreStatus() {
+        logger.info("🧮 Solicitando estado de los agregados en memoria");
+        try {
+            Map<String, Object> result = aggregateStore.getStatus();
+            logger.info("✅ Estado de agregados obtenido: {}", result);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            logger.error("❌ Error obteniendo estado de agregados: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/maintenance/cache")
+    public ResponseEntity<Map<String, Object>> getResponseCacheStatus() {
+        logger.info("🗄️ Solicitando estado de la caché de análisis");
+        try {
+            return ResponseEntity.ok(responseCache.getStatus());
+        } catch (Exception e) {
+            logger.error("❌ Error obteniendo estado de la caché: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/maintenance/cache/clear")
+    public ResponseEntity<Map<String, Object>> clearResponseCache() {
+        logger.info("🗄️ Vaciando la caché de análisis");
+        try {
+            responseCache.invalidate("vaciado manual");
+            return ResponseEntity.ok(responseCache.getStatus());
+        } catch (Exception e) {
+            logger.error("❌ Error vaciando la caché: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/maintenance/retention")
+    public ResponseEntity<Map<String, Object>> getRetentionStatus() {
+        logger.info("🗓️ Solicitando estado de retención");
+        try {
+            return ResponseEntity.ok(lifecycleService.getStatus());
+        } catch (Exception e) {
+            logger.error("❌ Error obteniendo estado de retención: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/maintenance/retention")
+    public ResponseEntity<Map<String, Object>> runRetention() {
+        logger.info("🗓️ Ejecutando retención manualmente");
+        try {
+            lifecycleService.applyRetentionPolicy();
+            return ResponseEntity.ok(lifecycleService.getStatus());
+        } catch (Exception e) {
+            logger.error("❌ Error ejecutando retención: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/maintenance/rollups")
+    public ResponseEntity<Map<String, Object>> getRollupStatus() {
+        logger.info("🗂️ Solicitando estado de los rollups");
+        try {
+            return ResponseEntity.ok(rollupService.getStatus());
+        } catch (Exception e) {
+            logger.error("❌ Error obteniendo estado de los rollups: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/maintenance/rollups/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildRollups() {
+        logger.info("🗂️ Regenerando rollups temporales");
+        try {
+            rollupService.rebuild();
+            return ResponseEntity.ok(rollupService.getStatus());
+        } catch (Exception e) {
+            logger.error("❌ Error regenerando rollups: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/maintenance/breakdown")
+    public ResponseEntity<Map<String, Object>> getBreakdownStatus() {
+        logger.info("🧩 Solicitando estado del desglose normalizado");
+        try {
+            return ResponseEntity.ok(breakdownService.getStatus());
+        } catch (Exception e) {
+            logger.error("❌ Error obteniendo estado del desglose: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/maintenance/breakdown/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildBreakdown() {
+        logger.info("🧩 Regenerando desglose normalizado");
+        try {
+            breakdownService.rebuild();
+            return ResponseEntity.ok(breakdownService.getStatus());
+        } catch (Exception e) {
+            logger.error("❌ Error regenerando desglose: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/maintenance/reload")
+    public ResponseEntity<Map<String, Object>> getReloadStatus() {
+        logger.info("🔀 Solicitando estado de las recargas en staging");
+        try {
+            return ResponseEntity.ok(stagingService.getStatus());
+        } catch (Exception e) {
+            logger.error("❌ Error obteniendo estado de las recargas: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/maintenance/watcher")
+    public ResponseEntity<Map<String, Object>> getWatcherStatus() {
+        logger.info("🔍 Solicitando estado del monitoreo de archivos");
+        try {
+            return ResponseEntity.ok(fileWatcherService.getStatus());
+        } catch (Exception e) {
+            logger.error("❌ Error obteniendo estado del monitoreo: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/sources")
+    public ResponseEntity<List<Map<String, Object>>> getSources() {
+        logger.info("📷 Solicitando detecciones por fuente");
+        try {
+            return ResponseEntity.ok(lifecycleService.summarizeSources());
+        } catch (Exception e) {
+            logger.error("❌ Error obteniendo detecciones por fuente: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @GetMapping("/analysis/summary")
     public ResponseEntity<Map<String, Object>> getAnalysisSummary() {
         logger.info("📋 Solicitando resumen de análisis");
@@ -306,24 +624,10 @@ public class DetectionController {
     }
 
     @GetMapping("/stats")
-    public ResponseEntity<Map<String, Object>> getQuickStats() {
+    public ResponseEntity<QuickStatsResponse> getQuickStats() {
         logger.info("📊 Solicitando estadísticas rápidas");
         try {
-            Map<String, Object> totalVolume = analysisService.getTotalVehicleVolume();
-            Map<String, Double> avgSpeeds = analysisService.getAvgSpeedByLane();
-            long totalDetections = analysisService.getTotalDetections();
-            
-            @SuppressWarnings("unchecked")
-            Map<String, Integer> totals = (Map<String, Integer>) totalVolume.get("total");
-            int totalVehicles = totals != null ? totals.values().stream().mapToInt(Integer::intValue).sum() : 0;
-            
-            Map<String, Object> stats = new HashMap<>();
-            stats.put("totalDetections", totalDetections);
-            stats.put("totalVehicles", totalVehicles);
-            stats.put("avgSpeedOverall", avgSpeeds.values().stream().mapToDouble(Double::doubleValue).average().orElse(0.0));
-            stats.put("activeLines", avgSpeeds.size());
-            stats.put("lastUpdated", System.currentTimeMillis());
-            
+            QuickStatsResponse stats = analysisService.getQuickStats();
             logger.info("✅ Estadísticas rápidas obtenidas exitosamente");
             return ResponseEntity.ok(stats);
         } catch (Exception e) {
@@ -349,5 +653,15 @@ public class DetectionController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
-}
 
+    /**
+     * La reducción trabaja sobre la serie por detección; no se combina con los rollups (granularity).
+     */
+    private DownsampleSpec downsampleSpec(Integer maxPoints, String bucket, String agg, RollupGranularity granularity) {
+        DownsampleSpec downsample = DownsampleSpec.of(maxPoints, bucket, agg);
+        if (!downsample.isNone() && granularity != null) {
+            throw new IllegalArgumentException("granularity no se combina con maxPoints ni bucket");
+        }
+        return downsample;
+    }
+}
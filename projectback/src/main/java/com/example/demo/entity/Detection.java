@@ -5,6 +5,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -12,12 +13,19 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "detections")
+@Table(name = "detections", indexes = {
+    @Index(name = "idx_detections_timestamp_ms", columnList = "timestamp_ms"),
+    @Index(name = "idx_detections_event_time_ms", columnList = "event_time_ms"),
+    @Index(name = "idx_detections_source_id", columnList = "source_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Detection {
+
+    /** Fuente del archivo raíz detections.json y de las filas anteriores a source_id (que quedan en null). */
+    public static final String DEFAULT_SOURCE = "default";
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -28,6 +36,10 @@ public class Detection {
     
     @Column(name = "date", length = 50)
     private String date;
+
+    /** date convertida a epoch ms (zona del servidor); indexada para filtros por rango. */
+    @Column(name = "event_time_ms")
+    private Long eventTimeMs;
     
     @Column(name = "objects_total", columnDefinition = "TEXT")
     private String objectsTotal;
@@ -37,4 +49,12 @@ public class Detection {
     
     @Column(name = "avg_speed_by_lane", columnDefinition = "TEXT")
     private String avgSpeedByLane;
+
+    /** Las tres columnas JSON ya decodificadas (DetectionPayload); null en filas aún sin rellenar. */
+    @Column(name = "payload", columnDefinition = "BLOB")
+    private byte[] payload;
+
+    /** Cámara o sitio de origen, derivado de la ruta del archivo vigilado (ver FileWatcherService). */
+    @Column(name = "source_id", length = 128)
+    private String sourceId;
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Velocidad promedio normalizada de un carril en una detección (avg_speed_by_lane).
+ */
+@Entity
+@Table(name = "detection_lane_speed", indexes = {
+    @Index(name = "idx_lane_speed_detection", columnList = "detection_id"),
+    @Index(name = "idx_lane_speed_lane", columnList = "lane")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DetectionLaneSpeed {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "detection_id", nullable = false)
+    private Long detectionId;
+
+    @Column(name = "lane", length = 20, nullable = false)
+    private String lane;
+
+    @Column(name = "speed", nullable = false)
+    private Double speed;
+}
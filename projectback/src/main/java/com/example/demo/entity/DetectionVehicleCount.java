@@ -0,0 +1,46 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Conteo normalizado de vehículos de una detección (objects_total y objects_by_lane).
+ * lane = NULL identifica la fila de objects_total: detector.py también cuenta vehículos fuera de carril.
+ * Sin FK hacia detections para que TRUNCATE siga funcionando en MySQL.
+ */
+@Entity
+@Table(name = "detection_vehicle_count", indexes = {
+    @Index(name = "idx_vehicle_count_detection", columnList = "detection_id"),
+    @Index(name = "idx_vehicle_count_lane_type", columnList = "lane, vehicle_type")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DetectionVehicleCount {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "detection_id", nullable = false)
+    private Long detectionId;
+
+    @Column(name = "lane", length = 20)
+    private String lane;
+
+    @Column(name = "vehicle_type", length = 30, nullable = false)
+    private String vehicleType;
+
+    @Column(name = "count", nullable = false)
+    private Integer vehicleCount;
+}
@@ -0,0 +1,49 @@
+package com.example.demo.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Marca de agua de la ingesta incremental por fuente (archivo de detecciones).
+ * Guarda el último timestamp_ms ingerido y el byte siguiente al último elemento leído.
+ * La identidad del archivo (clave del sistema de archivos y hash del inicio ya ingerido) detecta
+ * rotaciones y reescrituras que el offset solo no ve.
+ */
+@Entity
+@Table(name = "ingest_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IngestCheckpoint {
+
+    @Id
+    @Column(name = "source_id", length = 512)
+    private String sourceId;
+
+    @Column(name = "last_timestamp_ms")
+    private Long lastTimestampMs;
+
+    @Column(name = "file_offset")
+    private Long fileOffset;
+
+    @Column(name = "file_size")
+    private Long fileSize;
+
+    @Column(name = "file_identity", length = 160)
+    private String fileIdentity;
+
+    @Column(name = "detections_ingested")
+    private Long detectionsIngested;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,38 @@
+package com.example.demo.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Avance de una tarea de mantenimiento por páginas de id (p. ej. el relleno del desglose).
+ * Recorre (lastId, targetId]; mientras la fila exista la tarea no terminó y se retoma al arrancar.
+ */
+@Entity
+@Table(name = "maintenance_watermarks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MaintenanceWatermark {
+
+    @Id
+    @Column(name = "task", length = 64)
+    private String task;
+
+    @Column(name = "last_id")
+    private Long lastId;
+
+    @Column(name = "target_id")
+    private Long targetId;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,45 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.MappedSuperclass;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Fila de rollup temporal: un bucket (inicio en formato "yyyy-MM-dd HH:mm:ss", igual que detections.date),
+ * un carril y un tipo de vehículo, con conteo y suma/cantidad de velocidades.
+ * lane = 'all' agrupa objects_total; vehicle_type = 'all' guarda velocidades por carril
+ * y, con lane = 'all', la cantidad de detecciones del bucket.
+ */
+@MappedSuperclass
+@Getter
+@Setter
+public abstract class TrafficRollup {
+
+    public static final String ALL = "all";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "bucket_start", length = 19, nullable = false)
+    private String bucketStart;
+
+    @Column(name = "lane", length = 20, nullable = false)
+    private String lane;
+
+    @Column(name = "vehicle_type", length = 30, nullable = false)
+    private String vehicleType;
+
+    @Column(name = "count", nullable = false)
+    private Long vehicleCount;
+
+    @Column(name = "speed_sum", nullable = false)
+    private Double speedSum;
+
+    @Column(name = "speed_count", nullable = false)
+    private Long speedCount;
+}
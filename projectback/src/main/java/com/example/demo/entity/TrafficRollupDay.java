@@ -0,0 +1,11 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+@Entity
+@Table(name = "traffic_rollup_day",
+    uniqueConstraints = @UniqueConstraint(name = "uk_rollup_day_key", columnNames = {"bucket_start", "lane", "vehicle_type"}))
+public class TrafficRollupDay extends TrafficRollup {
+}
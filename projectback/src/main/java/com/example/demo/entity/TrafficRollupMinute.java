@@ -0,0 +1,11 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+@Entity
+@Table(name = "traffic_rollup_minute",
+    uniqueConstraints = @UniqueConstraint(name = "uk_rollup_minute_key", columnNames = {"bucket_start", "lane", "vehicle_type"}))
+public class TrafficRollupMinute extends TrafficRollup {
+}
@@ -0,0 +1,172 @@
+package com.example.demo.repository;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.entity.Detection;
+import com.example.demo.service.analytics.DetectionFilter;
+import com.example.demo.service.analytics.SpeedQuantileSketch;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * GROUP BY filtrados sobre el desglose normalizado. El rango se aplica sobre el índice
+ * de detections.event_time_ms y solo se une a detections cuando hace falta (rango u hora).
+ */
+@Repository
+@RequiredArgsConstructor
+public class DetectionAggregateQueries {
+
+    // En MySQL solo se respeta con useCursorFetch=true en la URL (ver application.properties)
+    private static final int SERIES_FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Cantidad de detecciones y mayor id dentro del rango. */
+    public long[] countDetections(DetectionFilter filter) {
+        Where where = new Where();
+        where.range(filter);
+        return jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) AS total, COALESCE(MAX(d.id), 0) AS max_id FROM detections d" + where,
+            (rs, rowNum) -> new long[] {rs.getLong("total"), rs.getLong("max_id")},
+            where.args());
+    }
+
+    /**
+     * Totales por tipo: de objects_total (lane IS NULL) o, con filtro de carril, de ese carril.
+     */
+    public void sumTotalsByType(DetectionFilter filter, RowCallbackHandler handler) {
+        Where where = countWhere(filter);
+        where.add("c.count > 0");
+        jdbcTemplate.query("SELECT c.vehicle_type, SUM(c.count) AS total FROM detection_vehicle_count c"
+            + joinDetections(filter, "c") + where + " GROUP BY c.vehicle_type", handler, where.args());
+    }
+
+    public void sumTotalsByHour(DetectionFilter filter, RowCallbackHandler handler) {
+        Where where = countWhere(filter);
+        where.add("c.count > 0");
+        where.add("LENGTH(d.date) >= 13");
+        jdbcTemplate.query("SELECT SUBSTRING(d.date, 12, 2) AS hour_of_day, SUM(c.count) AS total FROM detection_vehicle_count c"
+            + " JOIN detections d ON d.id = c.detection_id" + where
+            + " GROUP BY SUBSTRING(d.date, 12, 2)", handler, where.args());
+    }
+
+    public void sumByLaneAndType(DetectionFilter filter, RowCallbackHandler handler) {
+        Where where = new Where();
+        where.add("c.lane IS NOT NULL");
+        where.add("c.lane = ?", filter.lane());
+        where.add("c.vehicle_type = ?", filter.vehicleType());
+        where.range(filter);
+        jdbcTemplate.query("SELECT c.lane, c.vehicle_type, SUM(CASE WHEN c.count > 0 THEN c.count ELSE 0 END) AS total"
+            + " FROM detection_vehicle_count c" + joinDetections(filter, "c") + where
+            + " GROUP BY c.lane, c.vehicle_type", handler, where.args());
+    }
+
+    /** Las velocidades son por carril; el filtro de tipo no aplica. */
+    public void sumSpeedsByLane(DetectionFilter filter, RowCallbackHandler handler) {
+        Where where = new Where();
+        where.add("s.speed > 0");
+        where.add("s.lane = ?", filter.lane());
+        where.range(filter);
+        String join = joinDetections(filter, "s");
+        jdbcTemplate.query("SELECT s.lane, SUM(s.speed) AS speed_sum, COUNT(*) AS speed_count,"
+            + " SUM(s.speed * s.speed) AS speed_sum_squares, MIN(s.speed) AS speed_min, MAX(s.speed) AS speed_max"
+            + " FROM detection_lane_speed s" + join + where + " GROUP BY s.lane", handler, where.args());
+    }
+
+    /**
+     * Histograma de velocidades por carril con los buckets de SpeedQuantileSketch,
+     * para sembrar los percentiles sin leer las muestras. Admite DetectionFilter.NONE.
+     */
+    public void speedHistogramByLane(DetectionFilter filter, RowCallbackHandler handler) {
+        Where where = new Where();
+        where.add("s.speed > 0");
+        where.add("s.lane = ?", filter.lane());
+        where.range(filter);
+        String join = joinDetections(filter, "s");
+        String bucket = SpeedQuantileSketch.sqlBucketIndex("s.speed");
+        jdbcTemplate.query("SELECT s.lane, " + bucket + " AS bucket_index, COUNT(*) AS bucket_count"
+            + " FROM detection_lane_speed s" + join + where + " GROUP BY s.lane, " + bucket, handler, where.args());
+    }
+
+    /**
+     * Recorre las detecciones del rango en orden temporal (hasta maxId, para que el recorrido
+     * coincida con el conteo previo) sin materializar el resultado.
+     */
+    public void streamSeriesRows(DetectionFilter filter, long maxId, RowCallbackHandler handler) {
+        Where where = new Where();
+        where.add("d.id <= ?", maxId);
+        where.range(filter);
+        // Las columnas JSON solo se leen de verdad si payload aún no está relleno
+        String sql = "SELECT d.date, d.event_time_ms, d.payload,"
+            + " CASE WHEN d.payload IS NULL THEN d.objects_total END AS objects_total,"
+            + " CASE WHEN d.payload IS NULL THEN d.objects_by_lane END AS objects_by_lane,"
+            + " CASE WHEN d.payload IS NULL THEN d.avg_speed_by_lane END AS avg_speed_by_lane"
+            + " FROM detections d" + where + " ORDER BY d.event_time_ms, d.timestamp_ms, d.id";
+        ArgumentPreparedStatementSetter setter = new ArgumentPreparedStatementSetter(where.args());
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setFetchSize(SERIES_FETCH_SIZE);
+            setter.setValues(ps);
+            return ps;
+        }, handler);
+    }
+
+    private Where countWhere(DetectionFilter filter) {
+        Where where = new Where();
+        if (filter.lane() == null) {
+            where.add("c.lane IS NULL");
+        } else {
+            where.add("c.lane = ?", filter.lane());
+        }
+        where.add("c.vehicle_type = ?", filter.vehicleType());
+        where.range(filter);
+        return where;
+    }
+
+    // El desglose solo necesita detections cuando se filtra por rango o por fuente
+    private String joinDetections(DetectionFilter filter, String alias) {
+        return filter.range().isUnbounded() && filter.source() == null
+            ? "" : " JOIN detections d ON d.id = " + alias + ".detection_id";
+    }
+
+    private static final class Where {
+        private final List<String> conditions = new ArrayList<>();
+        private final List<Object> args = new ArrayList<>();
+
+        void add(String condition) {
+            conditions.add(condition);
+        }
+
+        void add(String condition, Object arg) {
+            if (arg != null) {
+                conditions.add(condition);
+                args.add(arg);
+            }
+        }
+
+        void range(DetectionFilter filter) {
+            add("d.event_time_ms >= ?", filter.range().fromMillis());
+            add("d.event_time_ms < ?", filter.range().toMillis());
+            // Las filas sin source_id, anteriores a la columna, son de la fuente por defecto
+            String source = Detection.DEFAULT_SOURCE.equals(filter.source())
+                ? "(d.source_id = ? OR d.source_id IS NULL)" : "d.source_id = ?";
+            add(source, filter.source());
+        }
+
+        Object[] args() {
+            return args.toArray();
+        }
+
+        @Override
+        public String toString() {
+            return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+        }
+    }
+}
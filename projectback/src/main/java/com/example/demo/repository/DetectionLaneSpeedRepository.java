@@ -0,0 +1,27 @@
+package com.example.demo.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.entity.DetectionLaneSpeed;
+
+@Repository
+public interface DetectionLaneSpeedRepository extends JpaRepository<DetectionLaneSpeed, Long> {
+
+    interface LaneSpeedTotal {
+        String getLane();
+        Double getSpeedSum();
+        Long getSpeedCount();
+        Double getSpeedSumSquares();
+        Double getSpeedMin();
+        Double getSpeedMax();
+    }
+
+    @Query("SELECT s.lane AS lane, SUM(s.speed) AS speedSum, COUNT(s) AS speedCount, "
+        + "SUM(s.speed * s.speed) AS speedSumSquares, MIN(s.speed) AS speedMin, MAX(s.speed) AS speedMax "
+        + "FROM DetectionLaneSpeed s WHERE s.speed > 0 GROUP BY s.lane")
+    List<LaneSpeedTotal> sumSpeedsByLane();
+}
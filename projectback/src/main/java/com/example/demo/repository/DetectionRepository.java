@@ -1,14 +1,19 @@
 package com.example.demo.repository;
 
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.example.demo.entity.Detection;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface DetectionRepository extends JpaRepository<Detection, Long> {
 
@@ -21,12 +26,25 @@ public interface DetectionRepository extends JpaRepository<Detection, Long> {
     @Query("SELECT d FROM Detection d ORDER BY d.timestampMs ASC")
     List<Detection> findAllOrderByTimestamp();
 
+    // El fetch size necesita useCursorFetch=true en la URL de MySQL para traer el resultado por tandas
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT d FROM Detection d ORDER BY d.timestampMs ASC, d.id ASC")
+    Stream<Detection> streamAllOrderByTimestamp();
+
     @Query("SELECT d FROM Detection d WHERE d.date LIKE :datePattern ORDER BY d.timestampMs ASC")
     List<Detection> findByDatePattern(@Param("datePattern") String datePattern);
 
+    @Query("SELECT COALESCE(MAX(d.id), 0) FROM Detection d")
+    long findMaxId();
+
     @Query("SELECT CASE WHEN COUNT(d) > 0 THEN true ELSE false END FROM Detection d")
     boolean existsAnyDetection();
 
+    /** Por fuente: id, detecciones, primera y última fecha. Las filas sin source_id cuentan como "default". */
+    @Query(value = "SELECT COALESCE(source_id, 'default'), COUNT(*), MIN(date), MAX(date) FROM detections "
+        + "GROUP BY COALESCE(source_id, 'default') ORDER BY 1", nativeQuery = true)
+    List<Object[]> summarizeBySource();
+
     @Query(value = "SELECT * FROM detections ORDER BY timestamp_ms DESC LIMIT 1", nativeQuery = true)
     Detection findMostRecentDetection();
 
@@ -0,0 +1,45 @@
+package com.example.demo.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.entity.DetectionVehicleCount;
+
+@Repository
+public interface DetectionVehicleCountRepository extends JpaRepository<DetectionVehicleCount, Long> {
+
+    interface TypeTotal {
+        String getVehicleType();
+        Long getTotal();
+    }
+
+    interface LaneTypeTotal {
+        String getLane();
+        String getVehicleType();
+        Long getTotal();
+    }
+
+    interface HourTotal {
+        String getHour();
+        Long getTotal();
+    }
+
+    @Query("SELECT c.vehicleType AS vehicleType, SUM(c.vehicleCount) AS total FROM DetectionVehicleCount c "
+        + "WHERE c.lane IS NULL AND c.vehicleCount > 0 GROUP BY c.vehicleType")
+    List<TypeTotal> sumTotalsByType();
+
+    @Query("SELECT c.lane AS lane, c.vehicleType AS vehicleType, "
+        + "SUM(CASE WHEN c.vehicleCount > 0 THEN c.vehicleCount ELSE 0 END) AS total "
+        + "FROM DetectionVehicleCount c WHERE c.lane IS NOT NULL GROUP BY c.lane, c.vehicleType")
+    List<LaneTypeTotal> sumByLaneAndType();
+
+    /** Hora "HH" de la fecha "yyyy-MM-dd HH:mm:ss" de la detección. */
+    @Query("SELECT SUBSTRING(d.date, 12, 2) AS hour, SUM(c.vehicleCount) AS total FROM DetectionVehicleCount c "
+        + "JOIN Detection d ON d.id = c.detectionId "
+        + "WHERE c.lane IS NULL AND c.vehicleCount > 0 AND LENGTH(d.date) >= 13 "
+        + "GROUP BY SUBSTRING(d.date, 12, 2)")
+    List<HourTotal> sumTotalsByHour();
+}
@@ -0,0 +1,10 @@
+package com.example.demo.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.entity.MaintenanceWatermark;
+
+@Repository
+public interface MaintenanceWatermarkRepository extends JpaRepository<MaintenanceWatermark, String> {
+}
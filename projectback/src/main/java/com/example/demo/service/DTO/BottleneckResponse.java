@@ -0,0 +1,13 @@
+package com.example.demo.service.DTO;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Carril con velocidad promedio baja. Los nombres se fijan con @JsonProperty porque
+ * el ObjectMapper de la aplicación usa snake_case.
+ */
+public record BottleneckResponse(
+        String lane,
+        @JsonProperty("avgSpeed") double avgSpeed,
+        @JsonProperty("totalVehicles") int totalVehicles) {
+}
@@ -0,0 +1,22 @@
+package com.example.demo.service.DTO;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Serie reducida en el servidor: descripción del método, timestamps elegidos y una serie
+ * por tipo o carril, que se escriben como propiedades de primer nivel ("car", "lane_1"...).
+ */
+public record DownsampledSeriesResponse(
+        Map<String, Object> downsample,
+        List<String> timestamps,
+        @JsonIgnore Map<String, double[]> series) implements SeriesResponse {
+
+    @JsonAnyGetter
+    public Map<String, double[]> seriesByName() {
+        return series;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.demo.service.DTO;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Respuesta de /stats.
+ */
+public record QuickStatsResponse(
+        @JsonProperty("totalDetections") long totalDetections,
+        @JsonProperty("totalVehicles") int totalVehicles,
+        @JsonProperty("avgSpeedOverall") double avgSpeedOverall,
+        @JsonProperty("activeLines") int activeLines,
+        @JsonProperty("lastUpdated") long lastUpdated) {
+}
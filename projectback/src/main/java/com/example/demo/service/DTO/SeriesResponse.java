@@ -0,0 +1,9 @@
+package com.example.demo.service.DTO;
+
+/**
+ * Respuestas de los endpoints de evolución temporal. Las series son arreglos primitivos,
+ * que Jackson escribe directo al stream de la respuesta sin boxing.
+ */
+public sealed interface SeriesResponse
+        permits TrafficEvolutionResponse, SpeedEvolutionResponse, DownsampledSeriesResponse {
+}
@@ -0,0 +1,18 @@
+package com.example.demo.service.DTO;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Velocidad promedio por carril a lo largo del tiempo; los carriles excluidos por el filtro quedan en null.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record SpeedEvolutionResponse(
+        String granularity,
+        List<String> timestamps,
+        @JsonProperty("lane_1") double[] lane1,
+        @JsonProperty("lane_2") double[] lane2,
+        @JsonProperty("lane_3") double[] lane3) implements SeriesResponse {
+}
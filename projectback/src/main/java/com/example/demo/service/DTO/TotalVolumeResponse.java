@@ -0,0 +1,12 @@
+package com.example.demo.service.DTO;
+
+import java.util.Map;
+
+/**
+ * Respuesta de /volume/total: conteos por tipo, por hora y por tipo de día.
+ */
+public record TotalVolumeResponse(
+        Map<String, Integer> total,
+        Map<String, Integer> hourly,
+        Map<String, Integer> daily) {
+}
@@ -0,0 +1,18 @@
+package com.example.demo.service.DTO;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Vehículos por tipo a lo largo del tiempo. granularity solo viene de los rollups y
+ * los tipos excluidos por el filtro quedan en null, así no se serializan.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TrafficEvolutionResponse(
+        String granularity,
+        List<String> timestamps,
+        int[] car,
+        int[] bus,
+        int[] truck) implements SeriesResponse {
+}
@@ -2,9 +2,25 @@ package com.example.demo.service;
 
 import com.example.demo.entity.Detection;
 import com.example.demo.repository.DetectionRepository;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.demo.service.DTO.BottleneckResponse;
+import com.example.demo.service.DTO.DownsampledSeriesResponse;
+import com.example.demo.service.DTO.QuickStatsResponse;
+import com.example.demo.service.DTO.SeriesResponse;
+import com.example.demo.service.DTO.SpeedEvolutionResponse;
+import com.example.demo.service.DTO.TotalVolumeResponse;
+import com.example.demo.service.DTO.TrafficEvolutionResponse;
+import com.example.demo.service.analytics.AnalyticsResponseCache;
+import com.example.demo.service.analytics.DashboardSection;
+import com.example.demo.service.analytics.DetectionAggregateStore;
+import com.example.demo.service.analytics.DetectionFilter;
+import com.example.demo.service.analytics.DownsampleSpec;
+import com.example.demo.service.analytics.RollupGranularity;
+import com.example.demo.service.analytics.SeriesDownsampler;
+import com.example.demo.service.analytics.SpeedStats;
+import com.example.demo.service.analytics.TimeBucketDownsampler;
+import com.example.demo.service.analytics.TimeRange;
+import com.example.demo.service.analytics.TrafficAnalyticsEngine;
+import com.example.demo.service.analytics.TrafficSnapshot;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,60 +38,20 @@ public class DetectionAnalysisService {
 
     private static final Logger logger = LoggerFactory.getLogger(DetectionAnalysisService.class);
     private final DetectionRepository detectionRepository;
-    private final ObjectMapper objectMapper;
+    private final TrafficAnalyticsEngine analyticsEngine;
+    private final DetectionAggregateStore aggregateStore;
+    private final TrafficRollupService rollupService;
+    private final AnalyticsResponseCache responseCache;
 
-    public Map<String, Object> getTotalVehicleVolume() {
+    public TotalVolumeResponse getTotalVehicleVolume() {
+        return getTotalVehicleVolume(DetectionFilter.NONE);
+    }
+
+    public TotalVolumeResponse getTotalVehicleVolume(DetectionFilter filter) {
         logger.debug("Consultando volumen total de vehículos");
         
         try {
-            List<Detection> detections = detectionRepository.findAll();
-            logger.debug("Obtenidas {} detecciones de la BD", detections.size());
-            
-            if (detections.isEmpty()) {
-                return getDefaultTotalVolumeData();
-            }
-            
-            Map<String, Integer> totalCounts = new HashMap<>();
-            Map<String, Integer> hourlyCounts = new HashMap<>();
-            
-            for (Detection detection : detections) {
-                try {
-                    if (isValidJson(detection.getObjectsTotal())) {
-                        Map<String, Integer> objects = parseJson(detection.getObjectsTotal(), 
-                            new TypeReference<Map<String, Integer>>() {});
-                        
-                        if (objects != null) {
-                            objects.forEach((key, value) -> {
-                                if (value != null && value > 0) {
-                                    totalCounts.merge(key, value, Integer::sum);
-                                }
-                            });
-                            
-                            String hour = extractHourFromDate(detection.getDate());
-                            if (hour != null) {
-                                int hourlyTotal = objects.values().stream()
-                                    .filter(Objects::nonNull)
-                                    .mapToInt(Integer::intValue)
-                                    .sum();
-                                if (hourlyTotal > 0) {
-                                    hourlyCounts.merge(hour, hourlyTotal, Integer::sum);
-                                }
-                            }
-                        }
-                    }
-                } catch (RuntimeException e) {
-                    logger.debug("  Error de runtime procesando detección ID {}: {}", detection.getId(), e.getMessage());
-                }
-            }
-            
-            Map<String, Object> result = new HashMap<>();
-            result.put("total", totalCounts.isEmpty() ? getDefaultTotals() : totalCounts);
-            result.put("hourly", hourlyCounts);
-            result.put("daily", Map.of("weekday", getTotalVehicleCount(totalCounts)));
-            
-            logger.info("Volumen total calculado: {}", totalCounts);
-            return result;
-            
+            return responseCache.get("getTotalVehicleVolume", () -> totalVolumeFrom(aggregateSnapshot(filter)), filter);
         } catch (DataAccessException e) {
             logger.error("Error de acceso a datos en getTotalVehicleVolume: {}", e.getMessage());
             return getDefaultTotalVolumeData();
@@ -86,44 +62,14 @@ public class DetectionAnalysisService {
     }
 
     public Map<String, Map<String, Integer>> getVehicleVolumeByLane() {
+        return getVehicleVolumeByLane(DetectionFilter.NONE);
+    }
+
+    public Map<String, Map<String, Integer>> getVehicleVolumeByLane(DetectionFilter filter) {
         logger.debug("   Consultando volumen por carril");
         
         try {
-            List<Detection> detections = detectionRepository.findAll();
-            
-            if (detections.isEmpty()) {
-                return getDefaultLaneData();
-            }
-            
-            Map<String, Map<String, Integer>> laneData = new HashMap<>();
-            
-            for (Detection detection : detections) {
-                try {
-                    if (isValidJson(detection.getObjectsByLane())) {
-                        Map<String, Map<String, Integer>> lanes = parseJson(detection.getObjectsByLane(), 
-                            new TypeReference<Map<String, Map<String, Integer>>>() {});
-                        
-                        if (lanes != null) {
-                            lanes.forEach((lane, vehicles) -> {
-                                if (vehicles != null) {
-                                    laneData.computeIfAbsent(lane, k -> new HashMap<>());
-                                    vehicles.forEach((vehicleType, count) -> {
-                                        if (count != null && count > 0) {
-                                            laneData.get(lane).merge(vehicleType, count, Integer::sum);
-                                        }
-                                    });
-                                }
-                            });
-                        }
-                    }
-                } catch (RuntimeException e) {
-                    logger.debug("  Error de runtime procesando carril para detección ID {}: {}", detection.getId(), e.getMessage());
-                }
-            }
-            
-            logger.info(" Datos de carril calculados para {} carriles", laneData.size());
-            return laneData.isEmpty() ? getDefaultLaneData() : laneData;
-            
+            return responseCache.get("getVehicleVolumeByLane", () -> laneVolumesFrom(aggregateSnapshot(filter)), filter);
         } catch (DataAccessException e) {
             logger.error("Error de acceso a datos en getVehicleVolumeByLane: {}", e.getMessage());
             return getDefaultLaneData();
@@ -134,42 +80,14 @@ public class DetectionAnalysisService {
     }
 
     public Map<String, Integer> getHourlyPatterns() {
+        return getHourlyPatterns(DetectionFilter.NONE);
+    }
+
+    public Map<String, Integer> getHourlyPatterns(DetectionFilter filter) {
         logger.debug(" Consultando patrones horarios");
         
         try {
-            List<Detection> detections = detectionRepository.findAll();
-            
-            if (detections.isEmpty()) {
-                return getDefaultHourlyPattern();
-            }
-            
-            Map<String, Integer> hourlyPattern = new HashMap<>();
-            
-            for (Detection detection : detections) {
-                try {
-                    String hour = extractHourFromDate(detection.getDate());
-                    if (hour != null && isValidJson(detection.getObjectsTotal())) {
-                        Map<String, Integer> objects = parseJson(detection.getObjectsTotal(), 
-                            new TypeReference<Map<String, Integer>>() {});
-                        
-                        if (objects != null) {
-                            int totalVehicles = objects.values().stream()
-                                .filter(Objects::nonNull)
-                                .mapToInt(Integer::intValue)
-                                .sum();
-                            if (totalVehicles > 0) {
-                                hourlyPattern.merge(hour, totalVehicles, Integer::sum);
-                            }
-                        }
-                    }
-                } catch (RuntimeException e) {
-                    logger.debug("Error de runtime procesando patrón horario para detección ID {}: {}", detection.getId(), e.getMessage());
-                }
-            }
-            
-            logger.info(" Patrones horarios calculados para {} horas", hourlyPattern.size());
-            return hourlyPattern.isEmpty() ? getDefaultHourlyPattern() : hourlyPattern;
-            
+            return responseCache.get("getHourlyPatterns", () -> hourlyPatternsFrom(aggregateSnapshot(filter)), filter);
         } catch (DataAccessException e) {
             logger.error(" Error de acceso a datos en getHourlyPatterns: {}", e.getMessage());
             return getDefaultHourlyPattern();
@@ -180,47 +98,14 @@ public class DetectionAnalysisService {
     }
 
     public Map<String, Double> getAvgSpeedByLane() {
+        return getAvgSpeedByLane(DetectionFilter.NONE);
+    }
+
+    public Map<String, Double> getAvgSpeedByLane(DetectionFilter filter) {
         logger.debug("Consultando velocidades por carril");
         
         try {
-            List<Detection> detections = detectionRepository.findAll();
-            
-            if (detections.isEmpty()) {
-                return getDefaultSpeedData();
-            }
-            
-            Map<String, List<Double>> speedsByLane = new HashMap<>();
-            
-            for (Detection detection : detections) {
-                try {
-                    if (isValidJson(detection.getAvgSpeedByLane())) {
-                        Map<String, Double> speeds = parseJson(detection.getAvgSpeedByLane(), 
-                            new TypeReference<Map<String, Double>>() {});
-                        
-                        if (speeds != null) {
-                            speeds.forEach((lane, speed) -> {
-                                if (speed != null && speed > 0) {
-                                    speedsByLane.computeIfAbsent(lane, k -> new ArrayList<>()).add(speed);
-                                }
-                            });
-                        }
-                    }
-                } catch (RuntimeException e) {
-                    logger.debug(" Error de runtime procesando velocidad para detección ID {}: {}", detection.getId(), e.getMessage());
-                }
-            }
-            
-            Map<String, Double> avgSpeeds = new HashMap<>();
-            speedsByLane.forEach((lane, speeds) -> {
-                if (!speeds.isEmpty()) {
-                    double average = speeds.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-                    avgSpeeds.put(lane, Math.round(average * 100.0) / 100.0);
-                }
-            });
-            
-            logger.info(" Velocidades calculadas para {} carriles", avgSpeeds.size());
-            return avgSpeeds.isEmpty() ? getDefaultSpeedData() : avgSpeeds;
-            
+            return responseCache.get("getAvgSpeedByLane", () -> avgSpeedsFrom(aggregateSnapshot(filter)), filter);
         } catch (DataAccessException e) {
             logger.error("Error de acceso a datos en getAvgSpeedByLane: {}", e.getMessage());
             return getDefaultSpeedData();
@@ -230,80 +115,40 @@ public class DetectionAnalysisService {
         }
     }
 
-    public Object[] getBottlenecks() {
+    /**
+     * Distribución de velocidades por carril (conteo, media, desviación, mínimo, máximo y p50/p85/p95)
+     * más una entrada "all" que combina todos los carriles.
+     */
+    public Map<String, Map<String, Object>> getSpeedStatsByLane(DetectionFilter filter) {
+        logger.debug("Consultando distribución de velocidades por carril");
+
         try {
-            Map<String, Double> avgSpeeds = getAvgSpeedByLane();
-            Map<String, Map<String, Integer>> laneData = getVehicleVolumeByLane();
-            
-            List<Map<String, Object>> bottlenecks = new ArrayList<>();
-            
-            avgSpeeds.forEach((lane, avgSpeed) -> {
-                if (avgSpeed < 15.0) {
-                    Map<String, Integer> vehicles = laneData.getOrDefault(lane, new HashMap<>());
-                    int totalVehicles = vehicles.values().stream()
-                        .filter(Objects::nonNull)
-                        .mapToInt(Integer::intValue)
-                        .sum();
-                    
-                    Map<String, Object> bottleneck = new HashMap<>();
-                    bottleneck.put("lane", lane);
-                    bottleneck.put("avgSpeed", avgSpeed);
-                    bottleneck.put("totalVehicles", totalVehicles);
-                    
-                    bottlenecks.add(bottleneck);
-                }
-            });
-            
-            return bottlenecks.toArray();
-            
+            return responseCache.get("getSpeedStatsByLane", () -> speedStatsFrom(aggregateSnapshot(filter)), filter);
+        } catch (DataAccessException e) {
+            logger.error("Error de acceso a datos en getSpeedStatsByLane: {}", e.getMessage());
+            return new TreeMap<>();
+        } catch (RuntimeException e) {
+            logger.error("Error de runtime en getSpeedStatsByLane: {}", e.getMessage());
+            return new TreeMap<>();
+        }
+    }
+
+    public BottleneckResponse[] getBottlenecks() {
+        return getBottlenecks(DetectionFilter.NONE);
+    }
+
+    public BottleneckResponse[] getBottlenecks(DetectionFilter filter) {
+        try {
+            return responseCache.get("getBottlenecks", () -> bottlenecksFrom(aggregateSnapshot(filter)), filter);
         } catch (RuntimeException e) {
             logger.error("Error de runtime en getBottlenecks: {}", e.getMessage());
-            return new Object[0];
+            return new BottleneckResponse[0];
         }
     }
 
-    public Map<String, Object> getTrafficEvolution() {
+    public SeriesResponse getTrafficEvolution() {
         try {
-            List<Detection> detections = detectionRepository.findAll();
-            detections.sort(Comparator.comparing(Detection::getTimestampMs));
-            
-            List<String> timestamps = new ArrayList<>();
-            List<Integer> carCounts = new ArrayList<>();
-            List<Integer> busCounts = new ArrayList<>();
-            List<Integer> truckCounts = new ArrayList<>();
-            
-            for (Detection detection : detections) {
-                timestamps.add(detection.getDate() != null ? detection.getDate() : "N/A");
-                
-                try {
-                    if (isValidJson(detection.getObjectsTotal())) {
-                        Map<String, Integer> objects = parseJson(detection.getObjectsTotal(), 
-                            new TypeReference<Map<String, Integer>>() {});
-                        
-                        if (objects != null) {
-                            carCounts.add(objects.getOrDefault("car", 0));
-                            busCounts.add(objects.getOrDefault("bus", 0));
-                            truckCounts.add(objects.getOrDefault("truck", 0));
-                        } else {
-                            addZeroCounts(carCounts, busCounts, truckCounts);
-                        }
-                    } else {
-                        addZeroCounts(carCounts, busCounts, truckCounts);
-                    }
-                } catch (RuntimeException e) {
-                    logger.debug("  Error de runtime en evolución de tráfico: {}", e.getMessage());
-                    addZeroCounts(carCounts, busCounts, truckCounts);
-                }
-            }
-            
-            Map<String, Object> result = new HashMap<>();
-            result.put("timestamps", timestamps);
-            result.put("car", carCounts);
-            result.put("bus", busCounts);
-            result.put("truck", truckCounts);
-            
-            return result;
-            
+            return trafficEvolutionFrom(evolutionSnapshot());
         } catch (DataAccessException e) {
             logger.error("Error de acceso a datos en getTrafficEvolution: {}", e.getMessage());
             return getDefaultTrafficEvolution();
@@ -313,48 +158,9 @@ public class DetectionAnalysisService {
         }
     }
 
-    public Map<String, Object> getSpeedEvolution() {
+    public SeriesResponse getSpeedEvolution() {
         try {
-            List<Detection> detections = detectionRepository.findAll();
-            detections.sort(Comparator.comparing(Detection::getTimestampMs));
-            
-            List<String> timestamps = new ArrayList<>();
-            List<Double> lane1Speeds = new ArrayList<>();
-            List<Double> lane2Speeds = new ArrayList<>();
-            List<Double> lane3Speeds = new ArrayList<>();
-            
-            for (Detection detection : detections) {
-                timestamps.add(detection.getDate() != null ? detection.getDate() : "N/A");
-                
-                try {
-                    if (isValidJson(detection.getAvgSpeedByLane())) {
-                        Map<String, Double> speeds = parseJson(detection.getAvgSpeedByLane(), 
-                            new TypeReference<Map<String, Double>>() {});
-                        
-                        if (speeds != null) {
-                            lane1Speeds.add(speeds.getOrDefault("lane_1", 0.0));
-                            lane2Speeds.add(speeds.getOrDefault("lane_2", 0.0));
-                            lane3Speeds.add(speeds.getOrDefault("lane_3", 0.0));
-                        } else {
-                            addZeroSpeeds(lane1Speeds, lane2Speeds, lane3Speeds);
-                        }
-                    } else {
-                        addZeroSpeeds(lane1Speeds, lane2Speeds, lane3Speeds);
-                    }
-                } catch (RuntimeException e) {
-                    logger.debug(" Error de runtime en evolución de velocidad: {}", e.getMessage());
-                    addZeroSpeeds(lane1Speeds, lane2Speeds, lane3Speeds);
-                }
-            }
-            
-            Map<String, Object> result = new HashMap<>();
-            result.put("timestamps", timestamps);
-            result.put("lane_1", lane1Speeds);
-            result.put("lane_2", lane2Speeds);
-            result.put("lane_3", lane3Speeds);
-            
-            return result;
-            
+            return speedEvolutionFrom(evolutionSnapshot());
         } catch (DataAccessException e) {
             logger.error("  Error de acceso a datos en getSpeedEvolution: {}", e.getMessage());
             return getDefaultSpeedEvolution();
@@ -364,39 +170,196 @@ public class DetectionAnalysisService {
         }
     }
 
+    /**
+     * Evolución temporal filtrada: se lee del rollup más grueso necesario para no superar
+     * max-points buckets. Sin filtros ni granularidad se mantiene la serie por detección.
+     * Con maxPoints o bucket la serie por detección se reduce en el servidor durante el recorrido.
+     */
+    public SeriesResponse getTrafficEvolution(DetectionFilter filter, RollupGranularity granularity,
+            DownsampleSpec downsample) {
+        if (!downsample.isNone()) {
+            return downsampledTrafficEvolution(filter, downsample);
+        }
+        if (filter.isEmpty() && granularity == null) {
+            return getTrafficEvolution();
+        }
+        RollupGranularity resolved = resolveGranularity(filter.range(), granularity);
+        if (filter.source() != null) {
+            return downsampledTrafficEvolution(filter, bucketsOf(resolved));
+        }
+        try {
+            return responseCache.get("getTrafficEvolution", () -> {
+                List<TrafficRollupService.Bucket> buckets = rollupService.readBuckets(filter.range(), resolved, filter.lane());
+                return new TrafficEvolutionResponse(
+                    resolved.name().toLowerCase(Locale.ROOT),
+                    buckets.stream().map(TrafficRollupService.Bucket::start).toList(),
+                    vehicleSeries(buckets, filter, "car"),
+                    vehicleSeries(buckets, filter, "bus"),
+                    vehicleSeries(buckets, filter, "truck"));
+            }, filter, resolved);
+        } catch (DataAccessException e) {
+            logger.error("Error de acceso a datos en getTrafficEvolution filtrada: {}", e.getMessage());
+            return getDefaultTrafficEvolution();
+        }
+    }
+
+    public SeriesResponse getSpeedEvolution(DetectionFilter filter, RollupGranularity granularity,
+            DownsampleSpec downsample) {
+        if (!downsample.isNone()) {
+            return downsampledSpeedEvolution(filter, downsample);
+        }
+        if (filter.isEmpty() && granularity == null) {
+            return getSpeedEvolution();
+        }
+        RollupGranularity resolved = resolveGranularity(filter.range(), granularity);
+        if (filter.source() != null) {
+            return downsampledSpeedEvolution(filter, bucketsOf(resolved));
+        }
+        try {
+            return responseCache.get("getSpeedEvolution", () -> {
+                List<TrafficRollupService.Bucket> buckets = rollupService.readBuckets(filter.range(), resolved, filter.lane());
+                return new SpeedEvolutionResponse(
+                    resolved.name().toLowerCase(Locale.ROOT),
+                    buckets.stream().map(TrafficRollupService.Bucket::start).toList(),
+                    laneSpeedSeries(buckets, filter, "lane_1"),
+                    laneSpeedSeries(buckets, filter, "lane_2"),
+                    laneSpeedSeries(buckets, filter, "lane_3"));
+            }, filter, resolved);
+        } catch (DataAccessException e) {
+            logger.error("  Error de acceso a datos en getSpeedEvolution filtrada: {}", e.getMessage());
+            return getDefaultSpeedEvolution();
+        }
+    }
+
+    /**
+     * Los rollups no distinguen fuente: con filtro de fuente la serie se agrupa recorriendo las filas
+     * del rango en buckets de la misma duración que la granularidad.
+     */
+    private static DownsampleSpec bucketsOf(RollupGranularity granularity) {
+        return new DownsampleSpec(null, granularity.getDuration(), null);
+    }
+
+    /** Serie de un tipo desde los rollups, o null si el filtro lo excluye. */
+    private int[] vehicleSeries(List<TrafficRollupService.Bucket> buckets, DetectionFilter filter, String type) {
+        if (filter.vehicleType() != null && !filter.vehicleType().equals(type)) {
+            return null;
+        }
+        return buckets.stream().mapToInt(b -> b.totals().getOrDefault(type, 0L).intValue()).toArray();
+    }
+
+    private double[] laneSpeedSeries(List<TrafficRollupService.Bucket> buckets, DetectionFilter filter, String lane) {
+        if (filter.lane() != null && !filter.lane().equals(lane)) {
+            return null;
+        }
+        return buckets.stream().mapToDouble(b -> b.laneSpeeds().getOrDefault(lane, 0.0)).toArray();
+    }
+
+    private SeriesResponse downsampledTrafficEvolution(DetectionFilter filter, DownsampleSpec downsample) {
+        List<String> types = List.of("car", "bus", "truck").stream()
+            .filter(type -> filter.vehicleType() == null || filter.vehicleType().equals(type))
+            .toList();
+        try {
+            return responseCache.get("downsampledTrafficEvolution", () -> {
+                SeriesDownsampler.Result series = analyticsEngine.downsampleVehicleCounts(filter, types, downsample);
+                return downsampledResult(series, downsample.describe(TimeBucketDownsampler.Aggregation.SUM), types);
+            }, filter, downsample);
+        } catch (DataAccessException e) {
+            logger.error("Error de acceso a datos en getTrafficEvolution reducida: {}", e.getMessage());
+            return getDefaultTrafficEvolution();
+        }
+    }
+
+    private SeriesResponse downsampledSpeedEvolution(DetectionFilter filter, DownsampleSpec downsample) {
+        List<String> lanes = List.of("lane_1", "lane_2", "lane_3").stream()
+            .filter(lane -> filter.lane() == null || filter.lane().equals(lane))
+            .toList();
+        try {
+            return responseCache.get("downsampledSpeedEvolution", () -> {
+                SeriesDownsampler.Result series = analyticsEngine.downsampleLaneSpeeds(filter, lanes, downsample);
+                return downsampledResult(series, downsample.describe(TimeBucketDownsampler.Aggregation.AVG), lanes);
+            }, filter, downsample);
+        } catch (DataAccessException e) {
+            logger.error("  Error de acceso a datos en getSpeedEvolution reducida: {}", e.getMessage());
+            return getDefaultSpeedEvolution();
+        }
+    }
+
+    private DownsampledSeriesResponse downsampledResult(SeriesDownsampler.Result series,
+            Map<String, Object> description, List<String> names) {
+        description.put("sourcePoints", series.sourcePoints());
+        Map<String, double[]> columns = new LinkedHashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i), roundSeries(series.column(i)));
+        }
+        return new DownsampledSeriesResponse(description, series.timestamps(), columns);
+    }
+
+    /** Los huecos (NaN) se devuelven como 0.0, igual que la serie completa. */
+    private double[] roundSeries(double[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Double.isNaN(values[i]) ? 0.0 : Math.round(values[i] * 100.0) / 100.0;
+        }
+        return values;
+    }
+
+    private RollupGranularity resolveGranularity(TimeRange range, RollupGranularity granularity) {
+        return granularity != null ? granularity : rollupService.chooseGranularity(range);
+    }
+
     public Map<String, Double> getVehicleTypeDominance() {
+        return getVehicleTypeDominance(DetectionFilter.NONE);
+    }
+
+    public Map<String, Double> getVehicleTypeDominance(DetectionFilter filter) {
         try {
-            Map<String, Object> totalVolume = getTotalVehicleVolume();
-            @SuppressWarnings("unchecked")
-            Map<String, Integer> totals = (Map<String, Integer>) totalVolume.get("total");
-            
-            if (totals == null || totals.isEmpty()) {
-                return getDefaultDominanceData();
-            }
-            
-            int totalVehicles = totals.values().stream()
-                .filter(Objects::nonNull)
-                .mapToInt(Integer::intValue)
-                .sum();
-            
-            Map<String, Double> dominance = new HashMap<>();
-            if (totalVehicles > 0) {
-                totals.forEach((type, count) -> {
-                    if (count != null && count > 0) {
-                        double percentage = Math.round((count.doubleValue() / totalVehicles) * 10000.0) / 100.0;
-                        dominance.put(type, percentage);
-                    }
-                });
-            }
-            
-            return dominance.isEmpty() ? getDefaultDominanceData() : dominance;
-            
+            return responseCache.get("getVehicleTypeDominance", () -> dominanceFrom(aggregateSnapshot(filter)), filter);
         } catch (RuntimeException e) {
             logger.error("  Error de runtime en getVehicleTypeDominance: {}", e.getMessage());
             return getDefaultDominanceData();
         }
     }
 
+    /**
+     * Todas las secciones pedidas del dashboard en una respuesta: las de agregados salen de un solo
+     * snapshot y las dos evoluciones comparten el mismo recorrido (o los rollups si hay filtro).
+     * Las secciones no pedidas no se calculan.
+     */
+    public Map<String, Object> getDashboard(DetectionFilter filter, Set<DashboardSection> sections) {
+        logger.debug("Consultando dashboard: {}", sections);
+
+        try {
+            return responseCache.get("getDashboard", () -> dashboardFrom(filter, sections), filter, sections);
+        } catch (DataAccessException e) {
+            logger.error("Error de acceso a datos en getDashboard: {}", e.getMessage());
+            return getDefaultDashboard(sections);
+        } catch (RuntimeException e) {
+            logger.error("Error de runtime en getDashboard: {}", e.getMessage());
+            return getDefaultDashboard(sections);
+        }
+    }
+
+    private Map<String, Object> dashboardFrom(DetectionFilter filter, Set<DashboardSection> sections) {
+        TrafficSnapshot snapshot = sections.stream().anyMatch(DashboardSection::isAggregate)
+            ? aggregateSnapshot(filter)
+            : null;
+        Map<String, Object> dashboard = new LinkedHashMap<>();
+        for (DashboardSection section : sections) {
+            Object data = switch (section) {
+                case VOLUME -> totalVolumeFrom(snapshot);
+                case LANES -> laneVolumesFrom(snapshot);
+                case HOURLY -> hourlyPatternsFrom(snapshot);
+                case SPEEDS -> avgSpeedsFrom(snapshot);
+                case SPEED_STATS -> speedStatsFrom(snapshot);
+                case BOTTLENECKS -> bottlenecksFrom(snapshot);
+                case DOMINANCE -> dominanceFrom(snapshot);
+                case EVOLUTION -> getTrafficEvolution(filter, null, DownsampleSpec.NONE);
+                case SPEED_EVOLUTION -> getSpeedEvolution(filter, null, DownsampleSpec.NONE);
+            };
+            dashboard.put(section.getKey(), data);
+        }
+        return dashboard;
+    }
+
     public long getTotalDetections() {
         try {
             return detectionRepository.count();
@@ -411,14 +374,13 @@ public class DetectionAnalysisService {
 
     public Map<String, Object> getAnalysisSummary() {
         try {
-            long totalDetections = getTotalDetections();
-            Map<String, Object> totalVolume = getTotalVehicleVolume();
-            Map<String, Double> avgSpeeds = getAvgSpeedByLane();
+            TrafficSnapshot snapshot = aggregateSnapshot();
+            long totalDetections = snapshot.getDetectionCount();
             
             Map<String, Object> summary = new HashMap<>();
             summary.put("totalDetections", totalDetections);
-            summary.put("totalVolume", totalVolume.get("total"));
-            summary.put("avgSpeedByLane", avgSpeeds);
+            summary.put("totalVolume", totalVolumeFrom(snapshot).total());
+            summary.put("avgSpeedByLane", avgSpeedsFrom(snapshot));
             summary.put("lastUpdated", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
             summary.put("dataQuality", totalDetections > 0 ? "Good" : "No Data");
             
@@ -433,6 +395,143 @@ public class DetectionAnalysisService {
         }
     }
 
+    /**
+     * Estadísticas rápidas del endpoint /stats, calculadas con una sola pasada.
+     */
+    public QuickStatsResponse getQuickStats() {
+        TrafficSnapshot snapshot = aggregateSnapshot();
+        Map<String, Double> avgSpeeds = avgSpeedsFrom(snapshot);
+        Map<String, Integer> totals = totalVolumeFrom(snapshot).total();
+        
+        return new QuickStatsResponse(
+            snapshot.getDetectionCount(),
+            totals != null ? getTotalVehicleCount(totals) : 0,
+            avgSpeeds.values().stream().mapToDouble(Double::doubleValue).average().orElse(0.0),
+            avgSpeeds.size(),
+            System.currentTimeMillis());
+    }
+
+    /**
+     * Snapshot completo con series por detección: es el recorrido más caro, lo comparten
+     * las dos evoluciones y se recalcula solo cuando cambian los datos o vence el TTL.
+     */
+    private TrafficSnapshot evolutionSnapshot() {
+        return responseCache.get("evolutionSnapshot", analyticsEngine::computeSnapshot);
+    }
+
+    /**
+     * Agregados sin series: del store en memoria si está listo, si no desde la base de datos.
+     */
+    private TrafficSnapshot aggregateSnapshot() {
+        return aggregateStore.isReady() ? aggregateStore.snapshot() : analyticsEngine.aggregateTotals().snapshot();
+    }
+
+    /**
+     * Con filtros la agregación se resuelve en SQL sobre el rango indexado; sin filtros, los globales.
+     */
+    private TrafficSnapshot aggregateSnapshot(DetectionFilter filter) {
+        return filter.isEmpty() ? aggregateSnapshot() : analyticsEngine.aggregateFiltered(filter).snapshot();
+    }
+
+    private TotalVolumeResponse totalVolumeFrom(TrafficSnapshot snapshot) {
+        if (snapshot.isEmpty()) {
+            return getDefaultTotalVolumeData();
+        }
+        Map<String, Integer> totalCounts = snapshot.getTotals();
+        
+        TotalVolumeResponse result = new TotalVolumeResponse(
+            totalCounts.isEmpty() ? getDefaultTotals() : totalCounts,
+            snapshot.getHourly(),
+            Map.of("weekday", getTotalVehicleCount(totalCounts)));
+        
+        logger.info("Volumen total calculado: {}", totalCounts);
+        return result;
+    }
+
+    private Map<String, Map<String, Integer>> laneVolumesFrom(TrafficSnapshot snapshot) {
+        Map<String, Map<String, Integer>> laneData = snapshot.getLaneVolumes();
+        logger.info(" Datos de carril calculados para {} carriles", laneData.size());
+        return laneData.isEmpty() ? getDefaultLaneData() : laneData;
+    }
+
+    private Map<String, Integer> hourlyPatternsFrom(TrafficSnapshot snapshot) {
+        Map<String, Integer> hourlyPattern = snapshot.getHourly();
+        logger.info(" Patrones horarios calculados para {} horas", hourlyPattern.size());
+        return hourlyPattern.isEmpty() ? getDefaultHourlyPattern() : hourlyPattern;
+    }
+
+    private Map<String, Double> avgSpeedsFrom(TrafficSnapshot snapshot) {
+        Map<String, Double> avgSpeeds = snapshot.getLaneSpeeds();
+        logger.info(" Velocidades calculadas para {} carriles", avgSpeeds.size());
+        return avgSpeeds.isEmpty() ? getDefaultSpeedData() : avgSpeeds;
+    }
+
+    private Map<String, Map<String, Object>> speedStatsFrom(TrafficSnapshot snapshot) {
+        Map<String, SpeedStats> laneStats = snapshot.getLaneSpeedStats();
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        SpeedStats overall = new SpeedStats();
+        laneStats.forEach((lane, stats) -> {
+            result.put(lane, stats.toMap());
+            overall.merge(stats);
+        });
+        result.put("all", overall.toMap());
+        logger.info(" Distribución de velocidades calculada para {} carriles", laneStats.size());
+        return result;
+    }
+
+    private BottleneckResponse[] bottlenecksFrom(TrafficSnapshot snapshot) {
+        Map<String, Double> avgSpeeds = avgSpeedsFrom(snapshot);
+        Map<String, Map<String, Integer>> laneData = laneVolumesFrom(snapshot);
+        
+        List<BottleneckResponse> bottlenecks = new ArrayList<>();
+        
+        avgSpeeds.forEach((lane, avgSpeed) -> {
+            if (avgSpeed < 15.0) {
+                Map<String, Integer> vehicles = laneData.getOrDefault(lane, new HashMap<>());
+                int totalVehicles = vehicles.values().stream()
+                    .filter(Objects::nonNull)
+                    .mapToInt(Integer::intValue)
+                    .sum();
+                
+                bottlenecks.add(new BottleneckResponse(lane, avgSpeed, totalVehicles));
+            }
+        });
+        
+        return bottlenecks.toArray(BottleneckResponse[]::new);
+    }
+
+    private SeriesResponse trafficEvolutionFrom(TrafficSnapshot snapshot) {
+        return new TrafficEvolutionResponse(null, snapshot.getEvolutionTimestamps(),
+            snapshot.getCarSeries(), snapshot.getBusSeries(), snapshot.getTruckSeries());
+    }
+
+    private SeriesResponse speedEvolutionFrom(TrafficSnapshot snapshot) {
+        return new SpeedEvolutionResponse(null, snapshot.getEvolutionTimestamps(),
+            snapshot.getLane1SpeedSeries(), snapshot.getLane2SpeedSeries(), snapshot.getLane3SpeedSeries());
+    }
+
+    private Map<String, Double> dominanceFrom(TrafficSnapshot snapshot) {
+        Map<String, Integer> totals = totalVolumeFrom(snapshot).total();
+        
+        if (totals == null || totals.isEmpty()) {
+            return getDefaultDominanceData();
+        }
+        
+        int totalVehicles = getTotalVehicleCount(totals);
+        
+        Map<String, Double> dominance = new HashMap<>();
+        if (totalVehicles > 0) {
+            totals.forEach((type, count) -> {
+                if (count != null && count > 0) {
+                    double percentage = Math.round((count.doubleValue() / totalVehicles) * 10000.0) / 100.0;
+                    dominance.put(type, percentage);
+                }
+            });
+        }
+        
+        return dominance.isEmpty() ? getDefaultDominanceData() : dominance;
+    }
+
     public int[] getArrayData() {
         try {
             List<Detection> detections = detectionRepository.findAll();
@@ -540,51 +639,6 @@ public class DetectionAnalysisService {
                 .toArray();
     }
 
-    private boolean isValidJson(String json) {
-        return json != null && !json.trim().isEmpty() && !json.equals("{}") && !json.equals("null");
-    }
-
-    private <T> T parseJson(String json, TypeReference<T> typeRef) {
-        try {
-            return objectMapper.readValue(json, typeRef);
-        } catch (JsonProcessingException e) {
-            logger.debug("  Error parsing JSON: {}", e.getMessage());
-            return null;
-        } catch (RuntimeException e) {
-            logger.debug("  Error de runtime parsing JSON: {}", e.getMessage());
-            return null;
-        }
-    }
-
-    private String extractHourFromDate(String dateStr) {
-        if (dateStr == null || dateStr.trim().isEmpty()) return null;
-        try {
-            String[] parts = dateStr.split(" ");
-            if (parts.length > 1) {
-                String timePart = parts[1];
-                String[] timeParts = timePart.split(":");
-                if (timeParts.length > 0) {
-                    return timeParts[0] + ":00";
-                }
-            }
-        } catch (RuntimeException e) {
-            logger.debug("  Error extrayendo hora de fecha '{}': {}", dateStr, e.getMessage());
-        }
-        return null;
-    }
-
-    private void addZeroCounts(List<Integer> carCounts, List<Integer> busCounts, List<Integer> truckCounts) {
-        carCounts.add(0);
-        busCounts.add(0);
-        truckCounts.add(0);
-    }
-
-    private void addZeroSpeeds(List<Double> lane1Speeds, List<Double> lane2Speeds, List<Double> lane3Speeds) {
-        lane1Speeds.add(0.0);
-        lane2Speeds.add(0.0);
-        lane3Speeds.add(0.0);
-    }
-
     private int getTotalVehicleCount(Map<String, Integer> totals) {
         return totals.values().stream().filter(Objects::nonNull).mapToInt(Integer::intValue).sum();
     }
@@ -593,12 +647,11 @@ public class DetectionAnalysisService {
         return Map.of("car", 0, "bus", 0, "truck", 0);
     }
 
-    private Map<String, Object> getDefaultTotalVolumeData() {
-        Map<String, Object> defaultData = new HashMap<>();
-        defaultData.put("total", getDefaultTotals());
-        defaultData.put("hourly", Map.of("08:00", 0, "09:00", 0, "10:00", 0));
-        defaultData.put("daily", Map.of("weekday", 0, "weekend", 0));
-        return defaultData;
+    private TotalVolumeResponse getDefaultTotalVolumeData() {
+        return new TotalVolumeResponse(
+            getDefaultTotals(),
+            Map.of("08:00", 0, "09:00", 0, "10:00", 0),
+            Map.of("weekday", 0, "weekend", 0));
     }
 
     private Map<String, Map<String, Integer>> getDefaultLaneData() {
@@ -625,21 +678,32 @@ public class DetectionAnalysisService {
         return Map.of("car", 0.0, "bus", 0.0, "truck", 0.0);
     }
 
-    private Map<String, Object> getDefaultTrafficEvolution() {
-        Map<String, Object> defaultEvolution = new HashMap<>();
-        defaultEvolution.put("timestamps", Arrays.asList("08:00", "09:00", "10:00"));
-        defaultEvolution.put("car", Arrays.asList(0, 0, 0));
-        defaultEvolution.put("bus", Arrays.asList(0, 0, 0));
-        defaultEvolution.put("truck", Arrays.asList(0, 0, 0));
-        return defaultEvolution;
+    private Map<String, Object> getDefaultDashboard(Set<DashboardSection> sections) {
+        Map<String, Object> dashboard = new LinkedHashMap<>();
+        for (DashboardSection section : sections) {
+            Object data = switch (section) {
+                case VOLUME -> getDefaultTotalVolumeData();
+                case LANES -> getDefaultLaneData();
+                case HOURLY -> getDefaultHourlyPattern();
+                case SPEEDS -> getDefaultSpeedData();
+                case SPEED_STATS -> new TreeMap<>();
+                case BOTTLENECKS -> new BottleneckResponse[0];
+                case DOMINANCE -> getDefaultDominanceData();
+                case EVOLUTION -> getDefaultTrafficEvolution();
+                case SPEED_EVOLUTION -> getDefaultSpeedEvolution();
+            };
+            dashboard.put(section.getKey(), data);
+        }
+        return dashboard;
+    }
+
+    private SeriesResponse getDefaultTrafficEvolution() {
+        return new TrafficEvolutionResponse(null, Arrays.asList("08:00", "09:00", "10:00"),
+            new int[3], new int[3], new int[3]);
     }
 
-    private Map<String, Object> getDefaultSpeedEvolution() {
-        Map<String, Object> defaultEvolution = new HashMap<>();
-        defaultEvolution.put("timestamps", Arrays.asList("08:00", "09:00", "10:00"));
-        defaultEvolution.put("lane_1", Arrays.asList(0.0, 0.0, 0.0));
-        defaultEvolution.put("lane_2", Arrays.asList(0.0, 0.0, 0.0));
-        defaultEvolution.put("lane_3", Arrays.asList(0.0, 0.0, 0.0));
-        return defaultEvolution;
+    private SeriesResponse getDefaultSpeedEvolution() {
+        return new SpeedEvolutionResponse(null, Arrays.asList("08:00", "09:00", "10:00"),
+            new double[3], new double[3], new double[3]);
     }
 }
\ No newline at end of file
@@ -0,0 +1,356 @@
+package com.example.demo.service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.entity.Detection;
+import com.example.demo.entity.MaintenanceWatermark;
+import com.example.demo.repository.MaintenanceWatermarkRepository;
+import com.example.demo.service.analytics.DetectionPayload;
+import com.example.demo.service.analytics.TimeRange;
+import com.example.demo.service.event.DetectionsReplacedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Desglose normalizado de las columnas JSON en detection_vehicle_count y detection_lane_speed,
+ * para que los agregados se resuelvan con GROUP BY en la base de datos.
+ * Se escribe junto con cada lote de detecciones y se rellena para las filas previas al esquema.
+ */
+@Service
+@RequiredArgsConstructor
+public class DetectionBreakdownService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectionBreakdownService.class);
+    private static final int BACKFILL_BATCH_SIZE = 1000;
+    private static final String BACKFILL_TASK = "breakdown_backfill";
+
+    private static final String INSERT_COUNT_SQL =
+        "INSERT INTO detection_vehicle_count%s (detection_id, lane, vehicle_type, count) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_SPEED_SQL =
+        "INSERT INTO detection_lane_speed%s (detection_id, lane, speed) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MaintenanceWatermarkRepository watermarkRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final DetectionDatasetLock datasetLock;
+
+    private volatile boolean backfilled;
+    private volatile long lastBackfillRows;
+
+    /** Conteo de un tipo de vehículo; lane = null para objects_total. */
+    public record CountRow(long detectionId, String lane, String vehicleType, int count) {
+    }
+
+    public record SpeedRow(long detectionId, String lane, double speed) {
+    }
+
+    /** Filas hijas de un lote, reutilizables por otros derivados (rollups) sin volver a parsear. */
+    public record Rows(List<CountRow> counts, List<SpeedRow> speeds) {
+        public int size() {
+            return counts.size() + speeds.size();
+        }
+    }
+
+    /**
+     * Inserta el desglose de detecciones ya persistidas (con id asignado) y devuelve sus filas.
+     */
+    public Rows writeFor(List<Detection> detections) {
+        return writeFor(detections, "");
+    }
+
+    /**
+     * Igual que writeFor, pero en las tablas con el sufijo indicado (p. ej. las de staging de una recarga).
+     */
+    public Rows writeFor(List<Detection> detections, String tableSuffix) {
+        List<CountRow> counts = new ArrayList<>();
+        List<SpeedRow> speeds = new ArrayList<>();
+        for (Detection detection : detections) {
+            if (detection.getId() != null) {
+                collectRows(detection, counts, speeds);
+            }
+        }
+        insertCounts(counts, tableSuffix);
+        insertSpeeds(speeds, tableSuffix);
+        return new Rows(counts, speeds);
+    }
+
+    /**
+     * Migración de filas existentes: completa event_time_ms y payload y, si hay detecciones pero el desglose
+     * está vacío, lo rellena. Un relleno interrumpido (queda su marca de agua) se retoma donde quedó.
+     * Corre antes que los rollups y los agregados en memoria, que leen de aquí, y con el lock de escritura
+     * del conjunto: la ingesta no arranca hasta que termina.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onApplicationReady() {
+        datasetLock.writeLock().lock();
+        try {
+            backfillEventTimes();
+            backfillPayloads();
+            MaintenanceWatermark watermark = watermarkRepository.findById(BACKFILL_TASK).orElse(null);
+            if (watermark != null) {
+                logger.info("🧩 Retomando el relleno del desglose desde el id {} (hasta {})",
+                    watermark.getLastId(), watermark.getTargetId());
+                backfill(watermark);
+            } else if (hasRows("detections") && !hasRows("detection_vehicle_count") && !hasRows("detection_lane_speed")) {
+                logger.info("🧩 Desglose normalizado vacío, rellenando desde las columnas JSON...");
+                backfill(startBackfill(false));
+            }
+            backfilled = true;
+        } catch (DataAccessException e) {
+            logger.warn("Error de acceso a datos rellenando el desglose (no crítico): {}", e.getMessage());
+        } catch (RuntimeException e) {
+            logger.warn("Error de runtime rellenando el desglose (no crítico): {}", e.getMessage());
+        } finally {
+            datasetLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Regenera el desglose completo. Mientras dura, los agregados se calculan recorriendo detections.
+     * Toma el lock de escritura del conjunto: ninguna ingesta escribe desglose a la vez.
+     */
+    public long rebuild() {
+        datasetLock.writeLock().lock();
+        try {
+            // Si falla a mitad de camino queda en false y se sigue agregando sin el desglose;
+            // la marca de agua hace que el próximo arranque lo complete
+            backfilled = false;
+            long rows = backfill(startBackfill(true));
+            backfilled = true;
+            eventPublisher.publishEvent(new DetectionsReplacedEvent("desglose regenerado"));
+            return rows;
+        } finally {
+            datasetLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * true cuando el desglose refleja todas las detecciones y puede usarse para agregar en SQL.
+     */
+    public boolean isBackfilled() {
+        return backfilled;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("backfilled", backfilled);
+        status.put("lastBackfillRows", lastBackfillRows);
+        return status;
+    }
+
+    /**
+     * Fija el alcance de un relleno: hasta el MAX(id) actual. Las detecciones posteriores ya se escriben
+     * con su desglose. Con clear también vacía el desglose, en la misma transacción que la marca de agua.
+     */
+    private MaintenanceWatermark startBackfill(boolean clear) {
+        return transactionTemplate.execute(status -> {
+            if (clear) {
+                jdbcTemplate.update("DELETE FROM detection_vehicle_count");
+                jdbcTemplate.update("DELETE FROM detection_lane_speed");
+            }
+            Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM detections", Long.class);
+            return watermarkRepository.save(MaintenanceWatermark.builder()
+                .task(BACKFILL_TASK)
+                .lastId(0L)
+                .targetId(maxId != null ? maxId : 0L)
+                .updatedAt(LocalDateTime.now())
+                .build());
+        });
+    }
+
+    /**
+     * Recorre detections por páginas de id (keyset) dentro del alcance de la marca de agua y escribe el
+     * desglose de cada página en la misma transacción que el avance, así una caída nunca deja páginas
+     * escritas sin registrar ni registradas sin escribir. Al terminar borra la marca.
+     */
+    private long backfill(MaintenanceWatermark watermark) {
+        long start = System.nanoTime();
+        long lastId = watermark.getLastId();
+        long targetId = watermark.getTargetId();
+        long detections = 0;
+        long rows = 0;
+        while (true) {
+            List<Detection> page = jdbcTemplate.query(
+                "SELECT id, objects_total, objects_by_lane, avg_speed_by_lane, payload FROM detections "
+                    + "WHERE id > ? AND id <= ? ORDER BY id LIMIT ?",
+                (rs, rowNum) -> Detection.builder()
+                    .id(rs.getLong("id"))
+                    .objectsTotal(rs.getString("objects_total"))
+                    .objectsByLane(rs.getString("objects_by_lane"))
+                    .avgSpeedByLane(rs.getString("avg_speed_by_lane"))
+                    .payload(rs.getBytes("payload"))
+                    .build(),
+                lastId, targetId, BACKFILL_BATCH_SIZE);
+            if (page.isEmpty()) {
+                break;
+            }
+            long pageEnd = page.get(page.size() - 1).getId();
+            Integer written = transactionTemplate.execute(status -> {
+                int pageRows = writeFor(page).size();
+                watermark.setLastId(pageEnd);
+                watermark.setUpdatedAt(LocalDateTime.now());
+                watermarkRepository.save(watermark);
+                return pageRows;
+            });
+            rows += written != null ? written : 0;
+            detections += page.size();
+            lastId = pageEnd;
+        }
+        watermarkRepository.deleteById(BACKFILL_TASK);
+        lastBackfillRows = rows;
+        logger.info("✅ Desglose rellenado: {} detecciones, {} filas en {} ms",
+            detections, rows, (System.nanoTime() - start) / 1_000_000);
+        return rows;
+    }
+
+    /**
+     * Calcula event_time_ms para las filas anteriores a la columna (solo las que tienen fecha válida).
+     */
+    private void backfillEventTimes() {
+        long lastId = 0;
+        long updated = 0;
+        while (true) {
+            List<Object[]> page = jdbcTemplate.query(
+                "SELECT id, date FROM detections WHERE id > ? AND event_time_ms IS NULL AND LENGTH(date) >= 19 "
+                    + "ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new Object[] {TimeRange.toEpochMs(rs.getString("date")), rs.getLong("id")},
+                lastId, BACKFILL_BATCH_SIZE);
+            if (page.isEmpty()) {
+                break;
+            }
+            jdbcTemplate.batchUpdate("UPDATE detections SET event_time_ms = ? WHERE id = ?", page);
+            updated += page.size();
+            lastId = (Long) page.get(page.size() - 1)[1];
+        }
+        if (updated > 0) {
+            logger.info("🕒 event_time_ms calculado para {} detecciones existentes", updated);
+        }
+    }
+
+    /**
+     * Decodifica una vez las columnas JSON de las filas anteriores a la columna payload.
+     */
+    private void backfillPayloads() {
+        long lastId = 0;
+        long updated = 0;
+        while (true) {
+            List<Detection> page = jdbcTemplate.query(
+                "SELECT id, objects_total, objects_by_lane, avg_speed_by_lane FROM detections "
+                    + "WHERE id > ? AND payload IS NULL ORDER BY id LIMIT ?",
+                (rs, rowNum) -> Detection.builder()
+                    .id(rs.getLong("id"))
+                    .objectsTotal(rs.getString("objects_total"))
+                    .objectsByLane(rs.getString("objects_by_lane"))
+                    .avgSpeedByLane(rs.getString("avg_speed_by_lane"))
+                    .build(),
+                lastId, BACKFILL_BATCH_SIZE);
+            if (page.isEmpty()) {
+                break;
+            }
+            jdbcTemplate.batchUpdate("UPDATE detections SET payload = ? WHERE id = ?", page.stream()
+                .map(detection -> new Object[] {DetectionPayload.of(objectMapper, detection).encode(), detection.getId()})
+                .toList());
+            updated += page.size();
+            lastId = page.get(page.size() - 1).getId();
+        }
+        if (updated > 0) {
+            logger.info("📦 Payload binario calculado para {} detecciones existentes", updated);
+        }
+    }
+
+    private void collectRows(Detection detection, List<CountRow> counts, List<SpeedRow> speeds) {
+        long detectionId = detection.getId();
+        DetectionPayload payload = DetectionPayload.of(objectMapper, detection);
+
+        for (int type = 0; type < payload.vehicleTypeCount(); type++) {
+            int total = payload.total(type);
+            if (total != DetectionPayload.ABSENT) {
+                counts.add(new CountRow(detectionId, null, payload.vehicleType(type), total));
+            }
+        }
+
+        for (int lane = 0; lane < payload.laneCount(); lane++) {
+            if (payload.hasLaneCounts(lane)) {
+                for (int type = 0; type < payload.vehicleTypeCount(); type++) {
+                    int count = payload.laneVehicleCount(lane, type);
+                    if (count != DetectionPayload.ABSENT) {
+                        counts.add(new CountRow(detectionId, payload.lane(lane), payload.vehicleType(type), count));
+                    }
+                }
+            }
+            double speed = payload.laneSpeed(lane);
+            if (!Double.isNaN(speed)) {
+                speeds.add(new SpeedRow(detectionId, payload.lane(lane), speed));
+            }
+        }
+    }
+
+    private void insertCounts(List<CountRow> rows, String tableSuffix) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_COUNT_SQL.formatted(tableSuffix), new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(@NonNull PreparedStatement ps, int i) throws SQLException {
+                CountRow row = rows.get(i);
+                ps.setLong(1, row.detectionId());
+                ps.setString(2, row.lane());
+                ps.setString(3, row.vehicleType());
+                ps.setInt(4, row.count());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+    }
+
+    private void insertSpeeds(List<SpeedRow> rows, String tableSuffix) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SPEED_SQL.formatted(tableSuffix), new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(@NonNull PreparedStatement ps, int i) throws SQLException {
+                SpeedRow row = rows.get(i);
+                ps.setLong(1, row.detectionId());
+                ps.setString(2, row.lane());
+                ps.setDouble(3, row.speed());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+    }
+
+    private boolean hasRows(String table) {
+        return !jdbcTemplate.queryForList("SELECT 1 FROM " + table + " LIMIT 1").isEmpty();
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.demo.service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.entity.Detection;
+import com.example.demo.repository.DetectionLaneSpeedRepository;
+import com.example.demo.repository.DetectionRepository;
+import com.example.demo.repository.DetectionVehicleCountRepository;
+import com.example.demo.service.analytics.RollupGranularity;
+import com.example.demo.service.analytics.TimeRange;
+import com.example.demo.service.event.DetectionsReplacedEvent;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Ciclo de vida de los datos de detecciones: borrado para recargas y retención.
+ * Todas las operaciones son sentencias SQL masivas; nunca se cargan entidades en memoria.
+ */
+@Service
+@RequiredArgsConstructor
+public class DetectionDataLifecycleService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectionDataLifecycleService.class);
+    private static final String[] CHILD_TABLES = {"detection_vehicle_count", "detection_lane_speed"};
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final DetectionRepository detectionRepository;
+    private final DetectionVehicleCountRepository vehicleCountRepository;
+    private final DetectionLaneSpeedRepository laneSpeedRepository;
+    private final TrafficRollupService rollupService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DetectionDatasetLock datasetLock;
+
+    @Value("${app.detections.retention.enabled:false}")
+    private boolean retentionEnabled;
+
+    @Value("${app.detections.retention.days:30}")
+    private int retentionDays;
+
+    @Value("${app.detections.retention.chunk-size:10000}")
+    private int chunkSize;
+
+    private volatile LocalDateTime lastRetentionRun;
+    private volatile long lastRetentionDeleted;
+
+    /**
+     * Borra todas las detecciones con un único DELETE. Participa en la transacción actual,
+     * de modo que una recarga completa sigue siendo atómica para los lectores.
+     */
+    public void deleteAllInBatch() {
+        vehicleCountRepository.deleteAllInBatch();
+        laneSpeedRepository.deleteAllInBatch();
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            jdbcTemplate.update("DELETE FROM " + granularity.getTable());
+        }
+        detectionRepository.deleteAllInBatch();
+    }
+
+    /**
+     * Indica si hay detecciones de otras fuentes además de sourceId; si no las hay, una recarga
+     * de la fuente puede reemplazar el conjunto completo.
+     */
+    public boolean hasOtherSources(String sourceId) {
+        return !jdbcTemplate.queryForList("SELECT id FROM detections WHERE " + sourcePredicate(sourceId, true) + " LIMIT 1",
+            Long.class, sourceId).isEmpty();
+    }
+
+    /**
+     * Borra las detecciones de una fuente (y su desglose) antes de recargarla, sin tocar las de las demás
+     * cámaras. Participa en la transacción actual, igual que deleteAllInBatch.
+     */
+    public long deleteSource(String sourceId) {
+        return deleteInChunks(sourcePredicate(sourceId, false), sourceId);
+    }
+
+    /** Detecciones y rango de fechas de cada fuente (cámara). */
+    public List<Map<String, Object>> summarizeSources() {
+        List<Map<String, Object>> summary = new ArrayList<>();
+        for (Object[] row : detectionRepository.summarizeBySource()) {
+            Map<String, Object> source = new LinkedHashMap<>();
+            source.put("sourceId", row[0]);
+            source.put("detections", ((Number) row[1]).longValue());
+            source.put("firstDate", row[2]);
+            source.put("lastDate", row[3]);
+            summary.add(source);
+        }
+        return summary;
+    }
+
+    /**
+     * Condición SQL (con un parámetro, el id de la fuente) sobre las filas de la fuente o, con others,
+     * sobre las de todas las demás. Las filas sin source_id, anteriores a la columna, son de la fuente por defecto.
+     */
+    static String sourcePredicate(String sourceId, boolean others) {
+        boolean defaultSource = Detection.DEFAULT_SOURCE.equals(sourceId);
+        if (others) {
+            return defaultSource ? "source_id <> ?" : "(source_id IS NULL OR source_id <> ?)";
+        }
+        return defaultSource ? "(source_id = ? OR source_id IS NULL)" : "source_id = ?";
+    }
+
+    /**
+     * Borra las detecciones cuya fecha es anterior al corte indicado. Filtra por event_time_ms (indexada,
+     * misma conversión que la ingesta); las filas sin fecha válida no tienen event_time_ms y se conservan.
+     */
+    private long deleteOlderThan(LocalDateTime cutoff) {
+        Long cutoffMs = TimeRange.toEpochMs(cutoff.format(DATE_FORMAT));
+        return publishIfDeleted(deleteInChunks("event_time_ms < ?", cutoffMs), "retención");
+    }
+
+    /**
+     * Política de retención: conserva solo los últimos N días de filas crudas. Corre con el lock de escritura
+     * del conjunto: el borrado por bloques y la regeneración de rollups no se cruzan con los upserts de una ingesta.
+     */
+    @Scheduled(cron = "${app.detections.retention.cron:0 30 3 * * *}")
+    public void applyRetentionPolicy() {
+        if (!retentionEnabled) {
+            return;
+        }
+        datasetLock.writeLock().lock();
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+            logger.info("🗓️ Aplicando retención: se eliminan detecciones anteriores a {}", cutoff.format(DATE_FORMAT));
+            long deleted = deleteOlderThan(cutoff);
+            lastRetentionRun = LocalDateTime.now();
+            lastRetentionDeleted = deleted;
+            logger.info("✅ Retención completada: {} detecciones eliminadas", deleted);
+        } catch (DataAccessException e) {
+            logger.error("Error de acceso a datos aplicando retención: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Error de runtime aplicando retención: {}", e.getMessage());
+        } finally {
+            datasetLock.writeLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("retentionEnabled", retentionEnabled);
+        status.put("retentionDays", retentionDays);
+        status.put("chunkSize", chunkSize);
+        status.put("lastRetentionRun", lastRetentionRun != null ? lastRetentionRun.toString() : null);
+        status.put("lastRetentionDeleted", lastRetentionDeleted);
+        return status;
+    }
+
+    private long publishIfDeleted(long deleted, String reason) {
+        if (deleted > 0) {
+            eventPublisher.publishEvent(new DetectionsReplacedEvent(reason));
+        }
+        return deleted;
+    }
+
+    private long deleteInChunks(String predicate, Object... args) {
+        Map<String, Object> bounds = jdbcTemplate.queryForMap(
+            "SELECT MIN(id) AS min_id, MAX(id) AS max_id, MIN(date) AS min_date, MAX(date) AS max_date "
+                + "FROM detections WHERE " + predicate, args);
+        Number minId = (Number) bounds.get("min_id");
+        Number maxId = (Number) bounds.get("max_id");
+        if (minId == null || maxId == null) {
+            return 0;
+        }
+
+        int step = Math.max(1, chunkSize);
+        long deleted = 0;
+        for (long low = minId.longValue(); low <= maxId.longValue(); low += step) {
+            Object[] params = new Object[args.length + 2];
+            params[0] = low;
+            params[1] = low + step;
+            System.arraycopy(args, 0, params, 2, args.length);
+            // Primero el desglose normalizado: no hay FK que lo borre en cascada
+            for (String childTable : CHILD_TABLES) {
+                jdbcTemplate.update("DELETE FROM " + childTable + " WHERE detection_id IN "
+                    + "(SELECT id FROM detections WHERE id >= ? AND id < ? AND " + predicate + ")", params);
+            }
+            deleted += jdbcTemplate.update(
+                "DELETE FROM detections WHERE id >= ? AND id < ? AND " + predicate, params);
+        }
+        logger.debug("Borrado por bloques ({}): {} filas", predicate, deleted);
+        if (deleted > 0) {
+            // Los días afectados se recalculan con las filas que quedan
+            rollupService.rebuildRange((String) bounds.get("min_date"), (String) bounds.get("max_date"));
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.demo.service;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Lock del conjunto de detecciones compartido por la ingesta y los recálculos.
+ * Las ingestas incrementales toman el de lectura y corren en paralelo; confirman su transacción y
+ * publican sus eventos con el lock tomado. Las recargas completas y los recálculos desde la base de datos
+ * (agregados en memoria, desglose) toman el de escritura: mientras lo tienen no hay ninguna ingesta
+ * a medio confirmar ni eventos pendientes. Es reentrante; el de lectura no se puede promover a escritura.
+ */
+@Component
+public class DetectionDatasetLock {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public Lock readLock() {
+        return lock.readLock();
+    }
+
+    public Lock writeLock() {
+        return lock.writeLock();
+    }
+}
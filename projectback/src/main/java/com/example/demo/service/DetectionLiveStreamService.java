@@ -0,0 +1,343 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.demo.entity.Detection;
+import com.example.demo.service.analytics.DataVersionTracker;
+import com.example.demo.service.analytics.DetectionFilter;
+import com.example.demo.service.analytics.DetectionPayload;
+import com.example.demo.service.analytics.LiveDelta;
+import com.example.demo.service.event.DetectionsIngestedEvent;
+import com.example.demo.service.event.DetectionsReplacedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Stream SSE de /stream: envía cada detección nueva (evento "detection") y el incremento de los
+ * agregados de cada ingesta (evento "delta"), filtrados por carril y tipo de cada suscriptor.
+ * Cada cliente tiene un buffer acotado; si se atrasa se descartan las detecciones más viejas
+ * y los incrementos pendientes se combinan en uno solo, así el costo por ingesta es O(delta).
+ * Una recarga completa se avisa con "reset" para que el cliente vuelva a pedir los agregados.
+ */
+@Service
+public class DetectionLiveStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectionLiveStreamService.class);
+
+    private final ObjectMapper objectMapper;
+    private final DataVersionTracker dataVersion;
+    private final Executor streamExecutor;
+
+    @Value("${app.detections.stream.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${app.detections.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong totalSubscriptions = new AtomicLong();
+    private final AtomicLong sentEvents = new AtomicLong();
+    private final AtomicLong droppedDetections = new AtomicLong();
+    private final AtomicLong coalescedDeltas = new AtomicLong();
+
+    public DetectionLiveStreamService(ObjectMapper objectMapper, DataVersionTracker dataVersion,
+            @Qualifier("streamExecutor") Executor streamExecutor) {
+        this.objectMapper = objectMapper;
+        this.dataVersion = dataVersion;
+        this.streamExecutor = streamExecutor;
+    }
+
+    public SseEmitter subscribe(DetectionFilter filter) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(filter, emitter);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+        subscribers.add(subscriber);
+        totalSubscriptions.incrementAndGet();
+
+        Map<String, Object> ready = new LinkedHashMap<>();
+        ready.put("dataVersion", dataVersion.getVersion());
+        ready.put("lane", filter.lane());
+        ready.put("type", filter.vehicleType());
+        ready.put("source", filter.source());
+        ready.put("bufferSize", bufferSize);
+        subscriber.offer(new Message("ready", ready));
+        scheduleDrain(subscriber);
+
+        logger.info("📡 Nuevo suscriptor de /stream ({} activos)", subscribers.size());
+        return emitter;
+    }
+
+    /**
+     * Solo encola: el envío corre en streamExecutor para no bloquear el hilo de la ingesta.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDetectionsIngested(DetectionsIngestedEvent event) {
+        if (subscribers.isEmpty() || event.detections() == null || event.detections().isEmpty()) {
+            return;
+        }
+        List<Detection> detections = event.detections();
+        List<DetectionPayload> payloads = new ArrayList<>(detections.size());
+        for (Detection detection : detections) {
+            payloads.add(DetectionPayload.of(objectMapper, detection));
+        }
+
+        for (Subscriber subscriber : subscribers) {
+            LiveDelta delta = new LiveDelta();
+            for (int i = 0; i < detections.size(); i++) {
+                Detection detection = detections.get(i);
+                if (!subscriber.filter.matchesSource(detection.getSourceId())) {
+                    continue;
+                }
+                long id = detection.getId() != null ? detection.getId() : 0L;
+                if (delta.add(id, payloads.get(i), subscriber.filter)) {
+                    subscriber.offer(new Message("detection", detectionEvent(detection, payloads.get(i), subscriber.filter)));
+                }
+            }
+            if (!delta.isEmpty()) {
+                subscriber.offerDelta(delta);
+            }
+            scheduleDrain(subscriber);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDetectionsReplaced(DetectionsReplacedEvent event) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.reset(new Message("reset", Map.of("reason", event.reason())));
+            scheduleDrain(subscriber);
+        }
+    }
+
+    /** Mantiene viva la conexión y detecta clientes que se fueron sin cerrar. */
+    @Scheduled(fixedDelayString = "${app.detections.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.offerHeartbeat()) {
+                scheduleDrain(subscriber);
+            }
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("subscribers", subscribers.size());
+        status.put("totalSubscriptions", totalSubscriptions.get());
+        status.put("bufferSize", bufferSize);
+        status.put("sentEvents", sentEvents.get());
+        status.put("droppedDetections", droppedDetections.get());
+        status.put("coalescedDeltas", coalescedDeltas.get());
+        return status;
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            logger.info("📡 Suscriptor de /stream desconectado ({} activos)", subscribers.size());
+        }
+    }
+
+    private void scheduleDrain(Subscriber subscriber) {
+        if (!subscriber.startDrain()) {
+            return;
+        }
+        try {
+            streamExecutor.execute(() -> drain(subscriber));
+        } catch (RejectedExecutionException e) {
+            // Se reintenta con el próximo evento o latido
+            subscriber.stopDrain();
+            logger.debug("Executor de /stream saturado: {}", e.getMessage());
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        SseEmitter.SseEventBuilder event;
+        while ((event = subscriber.poll()) != null) {
+            try {
+                subscriber.emitter.send(event);
+                sentEvents.incrementAndGet();
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Error enviando a suscriptor de /stream: {}", e.getMessage());
+                subscriber.emitter.completeWithError(e);
+                unsubscribe(subscriber);
+                return;
+            }
+        }
+    }
+
+    /**
+     * La detección proyectada al filtro: con carril, objects_total son los conteos de ese carril.
+     */
+    private Map<String, Object> detectionEvent(Detection detection, DetectionPayload payload, DetectionFilter filter) {
+        Map<String, Long> totals = new TreeMap<>();
+        Map<String, Map<String, Integer>> byLane = new TreeMap<>();
+        Map<String, Double> speeds = new TreeMap<>();
+        for (int l = 0; l < payload.laneCount(); l++) {
+            String lane = payload.lane(l);
+            if (filter.lane() != null && !filter.lane().equals(lane)) {
+                continue;
+            }
+            if (payload.hasLaneCounts(l)) {
+                Map<String, Integer> counts = new TreeMap<>();
+                for (int t = 0; t < payload.vehicleTypeCount(); t++) {
+                    int count = payload.laneVehicleCount(l, t);
+                    String type = payload.vehicleType(t);
+                    if (count != DetectionPayload.ABSENT && (filter.vehicleType() == null || filter.vehicleType().equals(type))) {
+                        counts.put(type, count);
+                        if (filter.lane() != null) {
+                            totals.merge(type, (long) count, Long::sum);
+                        }
+                    }
+                }
+                byLane.put(lane, counts);
+            }
+            if (!Double.isNaN(payload.laneSpeed(l))) {
+                speeds.put(lane, Math.round(payload.laneSpeed(l) * 100.0) / 100.0);
+            }
+        }
+        if (filter.lane() == null) {
+            for (int t = 0; t < payload.vehicleTypeCount(); t++) {
+                String type = payload.vehicleType(t);
+                if (payload.total(t) != DetectionPayload.ABSENT && (filter.vehicleType() == null || filter.vehicleType().equals(type))) {
+                    totals.put(type, (long) payload.total(t));
+                }
+            }
+        }
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", detection.getId());
+        data.put("date", detection.getDate());
+        data.put("timestampMs", detection.getTimestampMs());
+        data.put("objectsTotal", totals);
+        data.put("objectsByLane", byLane);
+        data.put("avgSpeedByLane", speeds);
+        return data;
+    }
+
+    private record Message(String name, Object data) {
+    }
+
+    /**
+     * Buffer de un cliente. El delta encolado y aún no enviado se guarda aparte para combinar
+     * los siguientes con él; se convierte a mapa recién al enviarse.
+     */
+    private final class Subscriber {
+
+        private final DetectionFilter filter;
+        private final SseEmitter emitter;
+        private final ArrayDeque<Object> queue = new ArrayDeque<>();
+        private LiveDelta queuedDelta;
+        private boolean draining;
+
+        Subscriber(DetectionFilter filter, SseEmitter emitter) {
+            this.filter = filter;
+            this.emitter = emitter;
+        }
+
+        synchronized void offer(Message message) {
+            makeRoom();
+            queue.addLast(message);
+        }
+
+        synchronized void offerDelta(LiveDelta delta) {
+            if (queuedDelta != null) {
+                queuedDelta.merge(delta);
+                coalescedDeltas.incrementAndGet();
+                return;
+            }
+            makeRoom();
+            queuedDelta = delta;
+            queue.addLast(delta);
+        }
+
+        synchronized boolean offerHeartbeat() {
+            if (!queue.isEmpty()) {
+                return false;
+            }
+            queue.addLast(Heartbeat.INSTANCE);
+            return true;
+        }
+
+        /** Tras una recarga lo pendiente ya no sirve: queda solo el aviso. */
+        synchronized void reset(Message message) {
+            for (Object pending : queue) {
+                if (pending instanceof Message m && "detection".equals(m.name())) {
+                    droppedDetections.incrementAndGet();
+                }
+            }
+            queue.clear();
+            queuedDelta = null;
+            queue.addLast(message);
+        }
+
+        // Descarta la detección más vieja; los deltas, avisos y latidos se conservan
+        private void makeRoom() {
+            if (queue.size() < Math.max(1, bufferSize)) {
+                return;
+            }
+            Iterator<Object> pending = queue.iterator();
+            while (pending.hasNext()) {
+                if (pending.next() instanceof Message m && "detection".equals(m.name())) {
+                    pending.remove();
+                    droppedDetections.incrementAndGet();
+                    return;
+                }
+            }
+        }
+
+        synchronized boolean startDrain() {
+            if (draining || queue.isEmpty()) {
+                return false;
+            }
+            draining = true;
+            return true;
+        }
+
+        synchronized void stopDrain() {
+            draining = false;
+        }
+
+        /** Siguiente evento a enviar, o null (y deja de vaciar) si no queda nada. */
+        synchronized SseEmitter.SseEventBuilder poll() {
+            Object next = queue.pollFirst();
+            if (next == null) {
+                draining = false;
+                return null;
+            }
+            if (next == Heartbeat.INSTANCE) {
+                return SseEmitter.event().comment("ping");
+            }
+            if (next instanceof LiveDelta delta) {
+                queuedDelta = null;
+                return SseEmitter.event().name("delta").data(delta.toMap());
+            }
+            Message message = (Message) next;
+            return SseEmitter.event().name(message.name()).data(message.data());
+        }
+    }
+
+    private enum Heartbeat {
+        INSTANCE
+    }
+}
@@ -0,0 +1,379 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.entity.Detection;
+import com.example.demo.service.analytics.RollupGranularity;
+import com.example.demo.service.analytics.TrafficAggregator;
+import com.example.demo.service.event.DetectionsReplacedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Recarga completa sin cortes para los lectores. El conjunto nuevo se escribe en copias "_staging"
+ * de las tablas de detecciones, desglose y rollups, con sus mismos índices. Mientras tanto se calculan
+ * los agregados en memoria. Al final las tablas se intercambian de una vez: en MySQL con un único
+ * RENAME TABLE atómico y en H2 en modo exclusivo, que pausa las demás conexiones durante los renombres.
+ * Hasta el intercambio los lectores consultan el conjunto anterior sin esperar y sin competir con la carga.
+ * Si la recarga falla, las tablas vivas no se tocan.
+ */
+@Service
+@RequiredArgsConstructor
+public class DetectionStagingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectionStagingService.class);
+
+    public static final String STAGING_SUFFIX = "_staging";
+    private static final String OLD_SUFFIX = "_old";
+    // En H2 los nombres de índices y restricciones son únicos por esquema: la copia usa uno temporal
+    private static final String NAME_SUFFIX = "_STG";
+    private static final Pattern RESTART_WITH = Pattern.compile(" RESTART WITH \\d+");
+    private static final Pattern NAMED_OBJECT = Pattern.compile("(CONSTRAINT|INDEX) \"PUBLIC\"\\.\"([^\"]+)\"");
+
+    private static final String INSERT_SQL = "INSERT INTO detections" + STAGING_SUFFIX
+        + " (id, timestamp_ms, date, event_time_ms, objects_total, objects_by_lane, avg_speed_by_lane, payload, source_id)"
+        + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DETECTION_COLUMNS =
+        "id, timestamp_ms, date, event_time_ms, objects_total, objects_by_lane, avg_speed_by_lane, payload, source_id";
+    private static final String[][] BREAKDOWN_COLUMNS = {
+        {"detection_vehicle_count", "detection_id, lane, vehicle_type, count"},
+        {"detection_lane_speed", "detection_id, lane, speed"}
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DetectionBreakdownService breakdownService;
+    private final TrafficRollupService rollupService;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.detections.reload.staging:true}")
+    private boolean enabled;
+
+    private volatile Boolean mysql;
+
+    private volatile long reloads;
+    private volatile long failures;
+    private volatile LocalDateTime lastReload;
+    private volatile long lastRows;
+    private volatile long lastLoadMillis;
+    private volatile long lastSwapMillis;
+
+    /**
+     * Lee el conjunto completo y lo entrega en lotes a sink; devuelve lo que el llamador necesite.
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load(Consumer<List<Detection>> sink) throws IOException;
+    }
+
+    /** Resultado de copiar una tabla en H2: sentencias de creación y renombres a aplicar tras el intercambio. */
+    record H2Clone(List<String> create, List<String> restoreNames) {
+    }
+
+    /** Estado de una carga en curso; los ids siguen a los del conjunto vivo. */
+    private final class Load {
+        long nextId;
+        long rows;
+        long kept;
+        final TrafficAggregator aggregator = new TrafficAggregator(objectMapper, false);
+
+        Load(long nextId) {
+            this.nextId = nextId;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Carga en staging lo que entregue loader y, si escribió al menos una detección, lo publica.
+     * Corre fuera de cualquier transacción: cada lote se confirma al escribirse, sin lectores que lo vean.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public <T> T reload(String reason, Loader<T> loader) throws IOException {
+        return reload(reason, null, loader);
+    }
+
+    /**
+     * Recarga solo la fuente sourceId: las detecciones de las demás fuentes (y su desglose) se copian
+     * tal cual al staging antes de cargar, así el intercambio reemplaza únicamente las de esta cámara.
+     * Con sourceId null se reemplaza el conjunto completo.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public <T> T reload(String reason, String sourceId, Loader<T> loader) throws IOException {
+        List<String> tables = datasetTables();
+        long start = System.nanoTime();
+        List<String> restoreNames;
+        Load load;
+        T result;
+        try {
+            dropAll(tables, STAGING_SUFFIX);
+            dropAll(tables, OLD_SUFFIX);
+            restoreNames = createStaging(tables);
+
+            load = new Load(nextId());
+            load.kept = sourceId != null ? copyOtherSources(sourceId) : 0;
+            result = loader.load(batch -> write(batch, load));
+            if (load.rows == 0) {
+                logger.info("Recarga sin detecciones válidas: se conservan los datos actuales");
+                dropAll(tables, STAGING_SUFFIX);
+                return result;
+            }
+            rollupService.buildInto(STAGING_SUFFIX);
+            restartIdentity(load.nextId);
+        } catch (IOException e) {
+            discard(tables, e);
+            throw e;
+        } catch (DataAccessException e) {
+            discard(tables, e);
+            throw e;
+        } catch (RuntimeException e) {
+            discard(tables, e);
+            throw e;
+        }
+
+        long swapStart = System.nanoTime();
+        swap(tables);
+        lastSwapMillis = (System.nanoTime() - swapStart) / 1_000_000;
+        lastLoadMillis = (swapStart - start) / 1_000_000;
+        lastRows = load.rows;
+        lastReload = LocalDateTime.now();
+        reloads++;
+        logger.info("🔀 Recarga en staging publicada: {} detecciones, carga {} ms, intercambio {} ms",
+            load.rows, lastLoadMillis, lastSwapMillis);
+
+        try {
+            dropAll(tables, OLD_SUFFIX);
+            restoreNames.forEach(jdbcTemplate::execute);
+        } catch (DataAccessException e) {
+            logger.warn("Error de acceso a datos limpiando tras el intercambio (no crítico): {}", e.getMessage());
+        } catch (RuntimeException e) {
+            logger.warn("Error de runtime limpiando tras el intercambio (no crítico): {}", e.getMessage());
+        }
+        // Los agregados en memoria solo cubren lo recién cargado: con otras fuentes conservadas se recalculan
+        eventPublisher.publishEvent(load.kept > 0
+            ? new DetectionsReplacedEvent(reason)
+            : new DetectionsReplacedEvent(reason, load.aggregator));
+        return result;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("reloads", reloads);
+        status.put("failures", failures);
+        status.put("lastReload", lastReload != null ? lastReload.toString() : null);
+        status.put("lastRows", lastRows);
+        status.put("lastLoadMillis", lastLoadMillis);
+        status.put("lastSwapMillis", lastSwapMillis);
+        return status;
+    }
+
+    /**
+     * Copia la estructura de una tabla de H2 a partir de su SCRIPT NODATA: cambia el nombre de la tabla,
+     * reinicia la identidad y pone un nombre temporal a índices y restricciones.
+     */
+    static H2Clone h2Clone(List<String> script, String table) {
+        String live = "\"PUBLIC\".\"" + table.toUpperCase(Locale.ROOT) + "\"";
+        String staging = "\"PUBLIC\".\"" + (table + STAGING_SUFFIX).toUpperCase(Locale.ROOT) + "\"";
+        List<String> create = new ArrayList<>();
+        List<String> restoreNames = new ArrayList<>();
+        for (String statement : script) {
+            if (statement.startsWith("--") || !statement.contains(live)) {
+                continue;
+            }
+            String copy = RESTART_WITH.matcher(statement.replace(live, staging)).replaceAll("");
+            Matcher names = NAMED_OBJECT.matcher(copy);
+            StringBuilder renamed = new StringBuilder();
+            while (names.find()) {
+                String kind = names.group(1);
+                String name = names.group(2);
+                names.appendReplacement(renamed,
+                    Matcher.quoteReplacement(kind + " \"PUBLIC\".\"" + name + NAME_SUFFIX + "\""));
+                restoreNames.add("INDEX".equals(kind)
+                    ? "ALTER INDEX \"PUBLIC\".\"" + name + NAME_SUFFIX + "\" RENAME TO \"" + name + "\""
+                    : "ALTER TABLE " + live + " RENAME CONSTRAINT \"PUBLIC\".\"" + name + NAME_SUFFIX + "\" TO \"" + name + "\"");
+            }
+            names.appendTail(renamed);
+            create.add(renamed.toString());
+        }
+        return new H2Clone(create, restoreNames);
+    }
+
+    private void write(List<Detection> batch, Load load) {
+        for (Detection detection : batch) {
+            detection.setId(load.nextId++);
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(@NonNull PreparedStatement ps, int i) throws SQLException {
+                Detection detection = batch.get(i);
+                ps.setLong(1, detection.getId());
+                ps.setLong(2, detection.getTimestampMs());
+                ps.setString(3, detection.getDate());
+                ps.setObject(4, detection.getEventTimeMs(), Types.BIGINT);
+                ps.setString(5, detection.getObjectsTotal());
+                ps.setString(6, detection.getObjectsByLane());
+                ps.setString(7, detection.getAvgSpeedByLane());
+                ps.setBytes(8, detection.getPayload());
+                ps.setString(9, detection.getSourceId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        });
+        breakdownService.writeFor(batch, STAGING_SUFFIX);
+        batch.forEach(load.aggregator::accept);
+        load.rows += batch.size();
+    }
+
+    /** Copia al staging las detecciones de las fuentes distintas de sourceId con sus ids y su desglose. */
+    private long copyOtherSources(String sourceId) {
+        String others = DetectionDataLifecycleService.sourcePredicate(sourceId, true);
+        long kept = jdbcTemplate.update("INSERT INTO detections" + STAGING_SUFFIX + " (" + DETECTION_COLUMNS + ") SELECT "
+            + DETECTION_COLUMNS + " FROM detections WHERE " + others, sourceId);
+        if (kept == 0) {
+            return 0;
+        }
+        for (String[] breakdown : BREAKDOWN_COLUMNS) {
+            String table = breakdown[0];
+            String columns = breakdown[1];
+            jdbcTemplate.update("INSERT INTO " + table + STAGING_SUFFIX + " (" + columns + ") SELECT "
+                + qualify(columns, "b") + " FROM " + table + " b JOIN detections" + STAGING_SUFFIX
+                + " d ON d.id = b.detection_id");
+        }
+        logger.info("Recarga de la fuente {}: se conservan {} detecciones de otras fuentes", sourceId, kept);
+        return kept;
+    }
+
+    private static String qualify(String columns, String alias) {
+        return alias + "." + columns.replace(", ", ", " + alias + ".");
+    }
+
+    private List<String> createStaging(List<String> tables) {
+        List<String> restoreNames = new ArrayList<>();
+        for (String table : tables) {
+            if (isMySql()) {
+                jdbcTemplate.execute("CREATE TABLE " + table + STAGING_SUFFIX + " LIKE " + table);
+            } else {
+                H2Clone clone = h2Clone(jdbcTemplate.queryForList("SCRIPT NODATA TABLE " + table, String.class), table);
+                clone.create().forEach(jdbcTemplate::execute);
+                restoreNames.addAll(clone.restoreNames());
+            }
+        }
+        return restoreNames;
+    }
+
+    /** Los ids nuevos continúan los del conjunto vivo, así nunca retroceden para los clientes de /stream. */
+    private long nextId() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM detections", Long.class);
+        return (maxId != null ? maxId : 0L) + 1;
+    }
+
+    // Los ids se escribieron explícitos: la identidad debe seguir después del último
+    private void restartIdentity(long nextId) {
+        if (isMySql()) {
+            jdbcTemplate.execute("ALTER TABLE detections" + STAGING_SUFFIX + " AUTO_INCREMENT = " + nextId);
+        } else {
+            jdbcTemplate.execute("ALTER TABLE detections" + STAGING_SUFFIX + " ALTER COLUMN id RESTART WITH " + nextId);
+        }
+    }
+
+    private void swap(List<String> tables) {
+        if (isMySql()) {
+            List<String> renames = new ArrayList<>();
+            for (String table : tables) {
+                renames.add(table + " TO " + table + OLD_SUFFIX);
+                renames.add(table + STAGING_SUFFIX + " TO " + table);
+            }
+            jdbcTemplate.execute("RENAME TABLE " + String.join(", ", renames));
+            return;
+        }
+        // Una sola conexión: el modo exclusivo solo deja avanzar a la que lo activó
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET EXCLUSIVE 1");
+                List<String> undo = new ArrayList<>();
+                try {
+                    for (String table : tables) {
+                        statement.execute("ALTER TABLE " + table + " RENAME TO " + table + OLD_SUFFIX);
+                        undo.add(0, "ALTER TABLE " + table + OLD_SUFFIX + " RENAME TO " + table);
+                        statement.execute("ALTER TABLE " + table + STAGING_SUFFIX + " RENAME TO " + table);
+                        undo.add(0, "ALTER TABLE " + table + " RENAME TO " + table + STAGING_SUFFIX);
+                    }
+                } catch (SQLException e) {
+                    for (String sql : undo) {
+                        statement.execute(sql);
+                    }
+                    throw e;
+                } finally {
+                    statement.execute("SET EXCLUSIVE 0");
+                }
+            }
+            return null;
+        });
+    }
+
+    private void discard(List<String> tables, Exception cause) {
+        failures++;
+        logger.error("Recarga en staging descartada, se conservan los datos actuales: {}", cause.getMessage());
+        try {
+            dropAll(tables, STAGING_SUFFIX);
+        } catch (DataAccessException e) {
+            logger.warn("No se pudieron borrar las tablas de staging: {}", e.getMessage());
+        }
+    }
+
+    private void dropAll(List<String> tables, String suffix) {
+        for (String table : tables) {
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + table + suffix);
+        }
+    }
+
+    private static List<String> datasetTables() {
+        List<String> tables = new ArrayList<>(List.of("detections", "detection_vehicle_count", "detection_lane_speed"));
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            tables.add(granularity.getTable());
+        }
+        return tables;
+    }
+
+    private boolean isMySql() {
+        if (mysql == null) {
+            String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            mysql = product != null && product.toLowerCase(Locale.ROOT).contains("mysql");
+        }
+        return mysql;
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.demo.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.service.DTO.DetectionJson;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Lector en streaming del archivo de detecciones.
+ * Recorre el arreglo "detections" con el JsonParser de Jackson, un elemento a la vez,
+ * de modo que la memoria usada no depende del tamaño del archivo.
+ * También sigue archivos JSON-lines (.ndjson) desde un offset, línea a línea.
+ */
+@Component
+@RequiredArgsConstructor
+public class DetectionStreamReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectionStreamReader.class);
+    private static final String DETECTIONS_FIELD = "detections";
+    private static final int LINE_BUFFER_SIZE = 64 * 1024;
+
+    /** Valor devuelto por readTail cuando el contenido tras el offset no es una continuación del arreglo. */
+    public static final long NOT_A_TAIL = -1L;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Recibe cada detección junto con el offset (en bytes, absoluto en el archivo)
+     * inmediatamente posterior al cierre del elemento.
+     */
+    @FunctionalInterface
+    public interface DetectionHandler {
+        void handle(DetectionJson detection, long endOffset);
+    }
+
+    /**
+     * Lee un documento {"detections": [...]} y entrega cada elemento al consumidor.
+     * Devuelve la cantidad de elementos leídos.
+     */
+    public long readDocument(InputStream inputStream, Consumer<DetectionJson> consumer) throws IOException {
+        return readDocument(inputStream, (detection, endOffset) -> consumer.accept(detection));
+    }
+
+    public long readDocument(InputStream inputStream, DetectionHandler handler) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            if (!moveToDetectionsArray(parser)) {
+                logger.warn("El documento no contiene el arreglo '{}'", DETECTIONS_FIELD);
+                return 0;
+            }
+            return readArrayElements(parser, 0L, handler);
+        }
+    }
+
+    /**
+     * Lee los elementos agregados al arreglo después de startOffset.
+     * El stream debe estar posicionado en startOffset, que corresponde al final de un elemento
+     * ya ingerido. Tolera un último elemento incompleto (archivo aún en escritura): solo un error
+     * de sintaxis al final de los bytes disponibles se considera cola incompleta. Un elemento con
+     * JSON válido que no se puede mapear se omite; un error de sintaxis antes del final se propaga.
+     * Devuelve la cantidad de elementos leídos o NOT_A_TAIL si el archivo fue reescrito.
+     */
+    public long readTail(InputStream inputStream, long startOffset, DetectionHandler handler) throws IOException {
+        PushbackInputStream input = new PushbackInputStream(inputStream, 1);
+        long skipped = 0;
+        int next;
+        while ((next = input.read()) != -1 && (next == ',' || Character.isWhitespace(next))) {
+            skipped++;
+        }
+        if (next == -1 || next == ']') {
+            return 0;
+        }
+        if (next != '{') {
+            return NOT_A_TAIL;
+        }
+        input.unread(next);
+
+        // Se antepone "[" para que Jackson lea los elementos restantes como un arreglo raíz
+        CountingInputStream arrayStream = new CountingInputStream(new SequenceInputStream(
+            new ByteArrayInputStream("[".getBytes(StandardCharsets.US_ASCII)), input));
+        long baseOffset = startOffset + skipped - 1;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(arrayStream)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return NOT_A_TAIL;
+            }
+            long[] count = new long[1];
+            try {
+                readArrayElements(parser, baseOffset, (detection, endOffset) -> {
+                    handler.handle(detection, endOffset);
+                    count[0]++;
+                });
+            } catch (StreamReadException e) {
+                if (!isTruncated(e, arrayStream.isExhausted() ? arrayStream.getCount() : Long.MAX_VALUE)) {
+                    logger.warn("JSON mal formado en el offset {} tras {} elementos de la cola: {}",
+                        baseOffset + e.getLocation().getByteOffset(), count[0], e.getOriginalMessage());
+                    throw e;
+                }
+                logger.debug("Cola del archivo incompleta tras {} elementos: {}", count[0], e.getOriginalMessage());
+            }
+            return count[0];
+        }
+    }
+
+    /**
+     * Indica si el error se debe a un elemento cortado al final de los bytes disponibles para el parser
+     * (el detector aún lo está escribiendo, o el borde de una ventana mapeada): fin de entrada inesperado,
+     * o un token truncado justo al final ("tru", "12."), que Jackson informa en el último byte leído.
+     * Cualquier otro error de lectura es JSON mal formado.
+     */
+    static boolean isTruncated(StreamReadException e, long availableBytes) {
+        if (e instanceof JsonEOFException) {
+            return true;
+        }
+        return e.getLocation() != null && e.getLocation().getByteOffset() >= availableBytes - 1;
+    }
+
+    /**
+     * Lee un archivo JSON-lines (una detección por línea) desde startOffset, que debe ser el inicio
+     * de una línea. Solo se consumen líneas terminadas en salto de línea: una última línea incompleta
+     * (el detector aún la está escribiendo) queda para la próxima lectura. Las líneas vacías o mal
+     * formadas se saltean. Devuelve el offset siguiente a la última línea completa consumida.
+     */
+    public long readLines(FileChannel channel, long startOffset, DetectionHandler handler) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(LINE_BUFFER_SIZE);
+        byte[] line = new byte[256];
+        int lineLength = 0;
+        long position = startOffset;
+        long lineStart = startOffset;
+
+        int read;
+        while ((read = channel.read(buffer, position)) > 0) {
+            byte[] chunk = buffer.array();
+            for (int i = 0; i < read; i++) {
+                byte b = chunk[i];
+                if (b != '\n') {
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, line.length * 2);
+                    }
+                    line[lineLength++] = b;
+                    continue;
+                }
+                long endOffset = position + i + 1;
+                parseLine(line, lineLength, lineStart, endOffset, handler);
+                lineLength = 0;
+                lineStart = endOffset;
+            }
+            position += read;
+            buffer.clear();
+        }
+        if (lineLength > 0) {
+            logger.debug("Línea incompleta de {} bytes en el offset {}, se leerá cuando termine", lineLength, lineStart);
+        }
+        return lineStart;
+    }
+
+    private void parseLine(byte[] line, int length, long startOffset, long endOffset, DetectionHandler handler) {
+        int start = 0;
+        int end = length;
+        while (start < end && Character.isWhitespace(line[start])) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(line[end - 1])) {
+            end--;
+        }
+        if (start == end) {
+            return;
+        }
+        DetectionJson detection;
+        try {
+            detection = objectMapper.readValue(line, start, end - start, DetectionJson.class);
+        } catch (IOException e) {
+            logger.warn("Línea mal formada en el offset {}, se omite: {}", startOffset, e.getMessage());
+            return;
+        }
+        handler.handle(detection, endOffset);
+    }
+
+    private long readArrayElements(JsonParser parser, long baseOffset, DetectionHandler handler) throws IOException {
+        long count = 0;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            DetectionJson detection = readElement(objectMapper, parser, baseOffset);
+            if (detection == null) {
+                continue;
+            }
+            handler.handle(detection, baseOffset + parser.currentLocation().getByteOffset());
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Lee el elemento en el que está posicionado el parser (START_OBJECT). Un elemento con JSON válido que
+     * no se puede mapear a DetectionJson se omite, igual que una línea mal formada en readLines: devuelve null
+     * y el parser queda en el cierre del elemento. Los errores de lectura (sintaxis, fin de entrada) se
+     * propagan como StreamReadException.
+     */
+    static DetectionJson readElement(ObjectMapper objectMapper, JsonParser parser, long baseOffset) throws IOException {
+        JsonStreamContext array = parser.getParsingContext().getParent();
+        try {
+            return objectMapper.readValue(parser, DetectionJson.class);
+        } catch (DatabindException e) {
+            // Jackson envuelve los errores de lectura ocurridos dentro de una propiedad
+            if (e.getCause() instanceof StreamReadException readError) {
+                throw readError;
+            }
+            logger.warn("Elemento inválido en el offset {}, se omite: {}",
+                baseOffset + parser.currentTokenLocation().getByteOffset(), e.getOriginalMessage());
+            while (parser.getParsingContext() != array) {
+                if (parser.nextToken() == null) {
+                    throw e;
+                }
+            }
+            return null;
+        }
+    }
+
+    private boolean moveToDetectionsArray(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (DETECTIONS_FIELD.equals(fieldName) && value == JsonToken.START_ARRAY) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    /** Cuenta los bytes entregados al parser y recuerda si la fuente se agotó. */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+        private boolean exhausted;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                exhausted = true;
+            } else {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read == -1) {
+                exhausted = true;
+            } else {
+                count += read;
+            }
+            return read;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        boolean isExhausted() {
+            return exhausted;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Huella de un archivo de detecciones tal como quedó tras la última ingesta: tamaño, fecha de
+ * modificación y hash del contenido completo, para omitir archivos sin cambios.
+ * Lo ya ingerido se identifica con Identity, que se guarda en el checkpoint: es la única referencia
+ * tanto para decidir entre ingesta incremental y recarga completa como para detectar rotaciones.
+ * El hash es FNV-1a de 64 bits, que se puede continuar: el hash de un prefijo más largo se obtiene
+ * leyendo solo los bytes agregados a partir del anterior.
+ */
+public record FileFingerprint(long size, long modifiedMs, long contentHash) {
+
+    public static final long EMPTY_HASH = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Hashes del archivo en una sola pasada: el del prefijo [0, prefixLength) y el del contenido completo.
+     * prefixHash es null si el archivo es más corto que el prefijo.
+     */
+    public record Scan(Long prefixHash, long contentHash) {
+    }
+
+    /**
+     * Identidad de lo ingerido de un archivo: clave del sistema de archivos (dispositivo e inodo donde existe),
+     * offset del checkpoint, hash de la cabecera [0, min(HEAD_BYTES, offset)) y hash del prefijo [0, offset).
+     * Un renombrado y recreado cambia la clave; un truncado y reescrito cambia la cabecera; una edición de
+     * lo ya ingerido cambia el prefijo. sameHead es la comprobación barata (ingesta de cada agregado) y
+     * matches la completa (el watcher, que ya recorre el archivo); la segunda implica la primera.
+     */
+    public record Identity(String fileKey, long offset, long headHash, long prefixHash) {
+
+        static final int HEAD_BYTES = 256;
+
+        /** Lee el prefijo [0, offset) completo. */
+        public static Identity of(Path file, long offset) throws IOException {
+            long headHash = FileFingerprint.extend(file, 0, Math.min(HEAD_BYTES, offset), EMPTY_HASH);
+            long prefixHash = FileFingerprint.extend(file, Math.min(HEAD_BYTES, offset), offset, headHash);
+            return new Identity(fileKeyOf(file), offset, headHash, prefixHash);
+        }
+
+        /** Identidad tras ingerir hasta newOffset: solo se leen los bytes agregados a partir de offset. */
+        public Identity extend(Path file, long newOffset) throws IOException {
+            if (newOffset < offset) {
+                return of(file, newOffset);
+            }
+            // Mientras la cabecera no está completa coincide con el prefijo y se continúa igual que él
+            long newHeadHash = offset < HEAD_BYTES
+                ? FileFingerprint.extend(file, offset, Math.min(HEAD_BYTES, newOffset), headHash)
+                : headHash;
+            return new Identity(fileKeyOf(file), newOffset, newHeadHash, FileFingerprint.extend(file, offset, newOffset, prefixHash));
+        }
+
+        /** Misma clave y misma cabecera: el archivo no se rotó ni se reescribió desde el principio. */
+        public boolean sameHead(Path file) throws IOException {
+            return fileKey.equals(fileKeyOf(file)) && Files.size(file) >= offset
+                && headHash == FileFingerprint.extend(file, 0, Math.min(HEAD_BYTES, offset), EMPTY_HASH);
+        }
+
+        /** Además, lo ya ingerido sigue igual; scan es el recorrido del archivo con prefixLength = offset. */
+        public boolean matches(Path file, Scan scan) throws IOException {
+            return fileKey.equals(fileKeyOf(file)) && scan.prefixHash() != null && scan.prefixHash() == prefixHash;
+        }
+
+        public String encode() {
+            return fileKey + "|" + offset + "|" + Long.toHexString(headHash) + "|" + Long.toHexString(prefixHash);
+        }
+
+        /** null si el valor no tiene este formato (checkpoints anteriores a la identidad completa). */
+        public static Identity decode(String value) {
+            if (value == null) {
+                return null;
+            }
+            String[] parts = value.split("\\|", -1);
+            if (parts.length != 4) {
+                return null;
+            }
+            try {
+                return new Identity(parts[0], Long.parseLong(parts[1]),
+                    Long.parseUnsignedLong(parts[2], 16), Long.parseUnsignedLong(parts[3], 16));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static String fileKeyOf(Path file) throws IOException {
+            Object fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+            return fileKey != null ? fileKey.toString() : "";
+        }
+    }
+
+    public static Scan scan(Path file, long prefixLength) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (prefixLength > size) {
+                return new Scan(null, hash(channel, 0, size, EMPTY_HASH));
+            }
+            long prefixHash = hash(channel, 0, prefixLength, EMPTY_HASH);
+            return new Scan(prefixHash, hash(channel, prefixLength, size, prefixHash));
+        }
+    }
+
+    /** Continúa hash sobre los bytes [from, to) del archivo. */
+    public static long extend(Path file, long from, long to, long hash) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return hash(channel, from, Math.min(to, channel.size()), hash);
+        }
+    }
+
+    public FileFingerprint withModified(long modifiedMs) {
+        return new FileFingerprint(size, modifiedMs, contentHash);
+    }
+
+    private static long hash(FileChannel channel, long from, long to, long hash) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long position = from;
+        while (position < to) {
+            buffer.clear().limit((int) Math.min(BUFFER_SIZE, to - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < read; i++) {
+                hash = (hash ^ (bytes[i] & 0xff)) * PRIME;
+            }
+            position += read;
+        }
+        return hash;
+    }
+}
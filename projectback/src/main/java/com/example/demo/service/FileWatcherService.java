@@ -2,6 +2,7 @@ package com.example.demo.service;
 
 import java.io.IOException;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardWatchEventKinds;
@@ -9,43 +10,137 @@ import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import com.example.demo.entity.Detection;
+
 import jakarta.annotation.PreDestroy;
-import lombok.RequiredArgsConstructor;
 
+/**
+ * Vigila uno o más directorios raíz (y sus subdirectorios) y trata cada archivo que coincide con
+ * app.detections.watch.patterns como una fuente independiente: una cámara o sitio con su propio
+ * checkpoint, su debounce y su huella. Las ingestas de fuentes distintas corren en paralelo en
+ * ingestExecutor; las de una misma fuente nunca se solapan (los eventos que llegan mientras corre
+ * programan una vuelta más).
+ */
 @Service
-@RequiredArgsConstructor
 public class FileWatcherService {
 
     private static final Logger logger = LoggerFactory.getLogger(FileWatcherService.class);
     private final JsonLoader jsonLoader;
+    private final Executor ingestExecutor;
 
-    private static final String DIRECTORY_PATH = "../detections";  
     private static final String FILE_NAME = "detections.json";
+    private static final String NDJSON_FILE_NAME = "detections.ndjson";
+    // Un archivo con este nombre toma el id de su directorio (cam1/detections.json -> cam1)
+    private static final String DEFAULT_BASE_NAME = "detections";
     private static final long FILE_PROCESSING_DELAY_MS = 1000;
-    
+    // JSON-lines solo se agrega: basta agrupar las escrituras cercanas, sin esperar a que el archivo se calme
+    private static final long NDJSON_PROCESSING_DELAY_MS = 50;
+
+    @Value("${app.detections.watch.roots:../detections}")
+    private List<String> rootPaths;
+
+    // "*" no cruza separadores: "**/" cubre cualquier profundidad (cam1/, sitio/norte/) y no incluye la raíz
+    static final String DEFAULT_PATTERNS = "detections.json,detections.ndjson,**/detections.json,**/detections.ndjson";
+
+    @Value("${app.detections.watch.patterns:" + DEFAULT_PATTERNS + "}")
+    private List<String> patterns;
+
+    @Value("${app.detections.watch.max-concurrency:4}")
+    private int maxConcurrency;
+
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
     private final Map<String, LocalDateTime> pendingFiles = new ConcurrentHashMap<>();
+    private final Map<Path, Source> sources = new ConcurrentHashMap<>();
+    private final Map<WatchKey, WatchedDirectory> watchedDirectories = new ConcurrentHashMap<>();
+    private final AtomicLong skippedUnchanged = new AtomicLong();
+    private final AtomicLong skippedIdentical = new AtomicLong();
+    private final AtomicLong incrementalRuns = new AtomicLong();
+    private final AtomicLong fullReloads = new AtomicLong();
+    private final AtomicLong failedIngests = new AtomicLong();
     private volatile boolean isWatching = false;
 
-   
+    /** Directorio registrado en el WatchService y la raíz configurada a la que pertenece. */
+    private record WatchedDirectory(Path root, Path directory) {
+    }
+
+    /**
+     * Pipeline de un archivo vigilado. running asegura una sola ingesta a la vez por fuente;
+     * dirty registra que llegaron cambios mientras corría.
+     */
+    private static final class Source {
+        final String id;
+        final Path path;
+        final boolean lines;
+        final AtomicBoolean tailScheduled = new AtomicBoolean();
+        final AtomicBoolean running = new AtomicBoolean();
+        final AtomicBoolean dirty = new AtomicBoolean();
+        final AtomicLong runs = new AtomicLong();
+        volatile boolean force;
+        volatile FileFingerprint fingerprint;
+        volatile LocalDateTime lastRun;
+
+        Source(String id, Path path) {
+            this.id = id;
+            this.path = path;
+            this.lines = path.getFileName().toString().endsWith(".ndjson");
+        }
+    }
+
+    public FileWatcherService(JsonLoader jsonLoader, @Qualifier("ingestExecutor") Executor ingestExecutor) {
+        this.jsonLoader = jsonLoader;
+        this.ingestExecutor = ingestExecutor;
+    }
+
+    /**
+     * Id de la fuente a partir de la ruta relativa a su raíz: un archivo llamado detections.* toma el
+     * nombre de su directorio (cam1/detections.json -> cam1, sitio/norte/detections.ndjson -> sitio/norte)
+     * y cualquier otro, su ruta sin extensión (cam2.json -> cam2). El de la raíz es la fuente por defecto.
+     */
+    static String sourceIdOf(Path root, Path file) {
+        Path relative = root.toAbsolutePath().normalize().relativize(file.toAbsolutePath().normalize());
+        String name = relative.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String baseName = dot > 0 ? name.substring(0, dot) : name;
+
+        List<String> parts = new ArrayList<>();
+        Path parent = relative.getParent();
+        if (parent != null) {
+            parent.forEach(part -> parts.add(part.toString()));
+        }
+        if (!DEFAULT_BASE_NAME.equals(baseName)) {
+            parts.add(baseName);
+        }
+        return parts.isEmpty() ? Detection.DEFAULT_SOURCE : String.join("/", parts);
+    }
+
     @EventListener(ApplicationReadyEvent.class)
     public void onApplicationReady() {
         logger.info("Aplicación completamente iniciada");
-        
-  
+
+
         scheduler.schedule(() -> {
             try {
                 startFileWatching();
@@ -77,27 +172,39 @@ public class FileWatcherService {
             loadInitialDataSafely();
 
             startWatchingAsync();
-            
+
             logger.info("FileWatcherService iniciado correctamente");
         } catch (Exception e) {
             logger.warn("Error en startFileWatching: {}", e.getMessage());
         }
     }
 
+    /**
+     * Carga inicial de todas las fuentes existentes; cada una va al executor, así las cámaras
+     * arrancan en paralelo. Los archivos JSON se procesan forzados, como antes el de la raíz.
+     */
     private void loadInitialDataSafely() {
-        try {
-            String fullPath = DIRECTORY_PATH + "/" + FILE_NAME;
-            java.io.File file = new java.io.File(fullPath);
-            
-            if (file.exists() && file.canRead() && file.length() > 0) {
-                logger.info("Cargando datos iniciales desde: {}", fullPath);
-                jsonLoader.loadJsonAndSaveToDbSafely(fullPath);
-                logger.info("Datos iniciales cargados exitosamente");
-            } else {
-                logger.info("No se encontraron datos iniciales en: {}", fullPath);
+        for (String rootPath : rootPaths) {
+            Path root = Paths.get(rootPath.trim());
+            if (!Files.isDirectory(root)) {
+                logger.info("No se encontraron datos iniciales en: {}", root);
+                continue;
+            }
+            try (Stream<Path> files = Files.walk(root)) {
+                files.filter(Files::isRegularFile).forEach(file -> {
+                    Source source = sourceFor(root, file);
+                    if (source == null || !Files.isReadable(file)) {
+                        return;
+                    }
+                    logger.info("Cargando datos iniciales de la fuente {} desde: {}", source.id, file);
+                    source.force = !source.lines;
+                    submit(source);
+                });
+            } catch (IOException e) {
+                logger.warn("Error cargando datos iniciales de {}: {}", root, e.getMessage());
+            } catch (RuntimeException e) {
+                logger.warn("Error cargando datos iniciales: {}", e.getMessage());
             }
-        } catch (Exception e) {
-            logger.warn("Error cargando datos iniciales: {}", e.getMessage());
         }
     }
 
@@ -112,20 +219,18 @@ public class FileWatcherService {
         logger.info("🔍 Iniciando monitoreo de archivos...");
 
         try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
-            Path path = Paths.get(DIRECTORY_PATH);
-            
-            // Crear directorio si no existe
-            if (!path.toFile().exists()) {
-                logger.info("📁 Creando directorio: {}", path.toAbsolutePath());
-                path.toFile().mkdirs();
+            watchedDirectories.clear();
+            for (String rootPath : rootPaths) {
+                Path root = Paths.get(rootPath.trim());
+
+                // Crear directorio si no existe
+                if (!root.toFile().exists()) {
+                    logger.info("📁 Creando directorio: {}", root.toAbsolutePath());
+                    root.toFile().mkdirs();
+                }
+                registerTree(watchService, root, root);
+                logger.info("🔍 Monitoreando: {}", root.toAbsolutePath());
             }
-            
-            // Registrar eventos de watch
-            path.register(watchService, 
-                         StandardWatchEventKinds.ENTRY_CREATE, 
-                         StandardWatchEventKinds.ENTRY_MODIFY);
-
-            logger.info("🔍 Monitoreando: {}", path.toAbsolutePath());
 
             // Loop principal de monitoreo
             watchLoop(watchService);
@@ -136,10 +241,23 @@ public class FileWatcherService {
             logger.error("❌ Error inesperado en monitoreo: {}", e.getMessage());
         } finally {
             isWatching = false;
+            watchedDirectories.clear();
             logger.info("🔍 Monitoreo de archivos finalizado");
         }
     }
 
+    // WatchService no es recursivo: se registra cada subdirectorio (las cámaras van en carpetas propias)
+    private void registerTree(WatchService watchService, Path root, Path directory) throws IOException {
+        try (Stream<Path> directories = Files.walk(directory)) {
+            for (Path dir : (Iterable<Path>) directories.filter(Files::isDirectory)::iterator) {
+                WatchKey key = dir.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirectories.put(key, new WatchedDirectory(root, dir));
+            }
+        }
+    }
+
     private void watchLoop(WatchService watchService) {
         while (isWatching) {
             WatchKey key;
@@ -147,7 +265,7 @@ public class FileWatcherService {
 
                 key = watchService.poll(2, TimeUnit.SECONDS);
                 if (key == null) {
-                    continue; 
+                    continue;
                 }
             } catch (InterruptedException e) {
                 logger.info("⏸️ Monitoreo interrumpido");
@@ -155,36 +273,107 @@ public class FileWatcherService {
                 break;
             }
 
-            processWatchEvents(key);
+            processWatchEvents(watchService, key);
 
             boolean valid = key.reset();
             if (!valid) {
-                logger.warn("⚠️ WatchKey inválido. Finalizando monitoreo.");
-                break;
+                WatchedDirectory removed = watchedDirectories.remove(key);
+                logger.warn("⚠️ WatchKey inválido: {}", removed != null ? removed.directory() : "?");
+                if (watchedDirectories.isEmpty()) {
+                    logger.warn("⚠️ No quedan directorios vigilados. Finalizando monitoreo.");
+                    break;
+                }
             }
         }
     }
 
-    private void processWatchEvents(WatchKey key) {
+    private void processWatchEvents(WatchService watchService, WatchKey key) {
+        WatchedDirectory watched = watchedDirectories.get(key);
         for (WatchEvent<?> event : key.pollEvents()) {
             WatchEvent.Kind<?> kind = event.kind();
-            
-            if (kind == StandardWatchEventKinds.OVERFLOW) {
+
+            if (kind == StandardWatchEventKinds.OVERFLOW || watched == null) {
+                continue;
+            }
+
+            Path changedFile = watched.directory().resolve((Path) event.context());
+
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changedFile)) {
+                onDirectoryCreated(watchService, watched.root(), changedFile);
                 continue;
             }
-            
-            Path changedFile = (Path) event.context();
 
-            if (changedFile.toString().equals(FILE_NAME)) {
+            Source source = sourceFor(watched.root(), changedFile);
+            if (source == null) {
+                continue;
+            }
+            if (source.lines) {
+                scheduleTail(source);
+            } else {
                 String eventType = (kind == StandardWatchEventKinds.ENTRY_MODIFY) ? "modificado" : "creado";
-                logger.info("Archivo {} {}", FILE_NAME, eventType);
+                logger.info("Archivo {} {} (fuente {})", changedFile, eventType, source.id);
+                scheduleFileProcessing(source);
+            }
+        }
+    }
 
-                scheduleFileProcessing(DIRECTORY_PATH + "/" + FILE_NAME);
+    /**
+     * Una cámara nueva: se vigila su carpeta y se procesan los archivos que ya tenga,
+     * escritos antes de que el registro estuviera activo.
+     */
+    private void onDirectoryCreated(WatchService watchService, Path root, Path directory) {
+        try {
+            registerTree(watchService, root, directory);
+            logger.info("📁 Nuevo directorio vigilado: {}", directory);
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.filter(Files::isRegularFile).forEach(file -> {
+                    Source source = sourceFor(root, file);
+                    if (source != null) {
+                        submit(source);
+                    }
+                });
             }
+        } catch (IOException e) {
+            logger.warn("No se pudo vigilar el directorio {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /** Fuente del archivo si coincide con algún patrón; se crea la primera vez que aparece. */
+    private Source sourceFor(Path root, Path file) {
+        if (!matchesAny(patterns, root, file)) {
+            return null;
+        }
+        return sources.computeIfAbsent(file.toAbsolutePath().normalize(), path -> {
+            Source source = new Source(sourceIdOf(root, path), path);
+            logger.info("📷 Nueva fuente {}: {}", source.id, path);
+            return source;
+        });
+    }
+
+    /** Indica si la ruta del archivo relativa a su raíz coincide con alguno de los globs. */
+    static boolean matchesAny(List<String> patterns, Path root, Path file) {
+        Path relative = root.toAbsolutePath().normalize().relativize(file.toAbsolutePath().normalize());
+        return patterns.stream()
+            .map(pattern -> FileSystems.getDefault().getPathMatcher("glob:" + pattern.trim()))
+            .anyMatch(matcher -> matcher.matches(relative));
+    }
+
+    /**
+     * A diferencia del debounce de detections.json, una escritura continua no posterga la lectura:
+     * a lo sumo hay una lectura pendiente y los eventos que llegan mientras corre programan la siguiente.
+     */
+    private void scheduleTail(Source source) {
+        if (!source.tailScheduled.compareAndSet(false, true)) {
+            return;
         }
+        scheduler.schedule(() -> {
+            source.tailScheduled.set(false);
+            submit(source);
+        }, NDJSON_PROCESSING_DELAY_MS, TimeUnit.MILLISECONDS);
     }
 
-    private void scheduleFileProcessing(String filePath) {
+    private void scheduleFileProcessing(Source source) {
+        String filePath = source.path.toString();
         LocalDateTime now = LocalDateTime.now();
         pendingFiles.put(filePath, now);
 
@@ -192,8 +381,8 @@ public class FileWatcherService {
             try {
                 LocalDateTime eventTime = pendingFiles.get(filePath);
                 if (eventTime != null && eventTime.equals(now)) {
-                    processFile(filePath);
                     pendingFiles.remove(filePath);
+                    submit(source);
                 }
             } catch (Exception e) {
                 logger.error("Error en procesamiento programado: {}", e.getMessage());
@@ -202,33 +391,133 @@ public class FileWatcherService {
         }, FILE_PROCESSING_DELAY_MS, TimeUnit.MILLISECONDS);
     }
 
-    private void processFile(String filePath) {
+    /**
+     * Encola la ingesta de la fuente en el executor acotado. Si ya está corriendo solo se marca,
+     * y la tarea en curso da una vuelta más al terminar.
+     */
+    private void submit(Source source) {
+        if (!source.running.compareAndSet(false, true)) {
+            source.dirty.set(true);
+            return;
+        }
         try {
-            logger.info("Procesando archivo: {}", filePath);
-            
-            java.io.File file = new java.io.File(filePath);
+            ingestExecutor.execute(() -> run(source));
+        } catch (RejectedExecutionException e) {
+            source.running.set(false);
+            logger.warn("Executor de ingesta saturado, se omite la fuente {}: {}", source.id, e.getMessage());
+        }
+    }
+
+    private void run(Source source) {
+        try {
+            do {
+                if (source.lines) {
+                    jsonLoader.ingestLinesSafely(source.path.toString(), source.id);
+                } else {
+                    boolean force = source.force;
+                    source.force = false;
+                    processFile(source, force);
+                }
+                source.runs.incrementAndGet();
+                source.lastRun = LocalDateTime.now();
+            } while (source.dirty.getAndSet(false));
+        } catch (RuntimeException e) {
+            logger.error("Error procesando la fuente {}: {}", source.id, e.getMessage());
+        } finally {
+            source.running.set(false);
+        }
+        // Un evento que llegó entre la última vuelta y la liberación
+        if (source.dirty.getAndSet(false)) {
+            submit(source);
+        }
+    }
+
+    /**
+     * Antes de ingerir compara el archivo con su huella: si el tamaño y la fecha no cambiaron se omite
+     * sin leerlo; si cambió la fecha pero el contenido es idéntico (touch, guardado del editor, reescritura
+     * de detector.py) también. Si el prefijo ya ingerido sigue igual se hace la ingesta incremental;
+     * si cambió, una recarga completa de la fuente. force (procesamiento manual) ignora la huella.
+     * La huella solo se actualiza si la ingesta terminó bien.
+     */
+    private void processFile(Source source, boolean force) {
+        String filePath = source.path.toString();
+        try {
+            java.io.File file = source.path.toFile();
             if (!file.exists() || !file.canRead()) {
                 logger.warn("Archivo no disponible: {}", filePath);
                 return;
             }
-            
+
             if (file.length() == 0) {
                 logger.warn("Archivo vacío: {}", filePath);
                 return;
             }
-            
-            jsonLoader.loadJsonAndSaveToDbSafely(filePath);
+
+            long size = file.length();
+            long modified = file.lastModified();
+            FileFingerprint previous = force ? null : source.fingerprint;
+            if (previous != null && previous.size() == size && previous.modifiedMs() == modified) {
+                skippedUnchanged.incrementAndGet();
+                logger.debug("Archivo sin cambios (tamaño y fecha), se omite: {}", filePath);
+                return;
+            }
+
+            FileFingerprint.Scan scan = null;
+            boolean prefixChanged = false;
+            if (previous != null) {
+                // Lo ya ingerido sale del checkpoint: la misma identidad con la que JsonLoader detecta rotaciones
+                FileFingerprint.Identity checkpoint = jsonLoader.checkpointIdentity(filePath);
+                scan = FileFingerprint.scan(file.toPath(), checkpoint != null ? checkpoint.offset() : 0L);
+                if (previous.size() == size && previous.contentHash() == scan.contentHash()) {
+                    skippedIdentical.incrementAndGet();
+                    source.fingerprint = previous.withModified(modified);
+                    logger.info("Archivo {} con contenido idéntico, se omite", filePath);
+                    return;
+                }
+                prefixChanged = checkpoint != null && !checkpoint.matches(file.toPath(), scan);
+            }
+
+            logger.info("Procesando archivo: {} (fuente {})", filePath, source.id);
+            boolean ingested;
+            if (prefixChanged) {
+                logger.info("📄 Cambió el contenido ya ingerido de {}, recarga completa de la fuente {}", filePath, source.id);
+                ingested = jsonLoader.loadJsonAndSaveToDbSafely(filePath, source.id);
+                fullReloads.incrementAndGet();
+            } else {
+                ingested = jsonLoader.ingestIncrementallySafely(filePath, source.id);
+                incrementalRuns.incrementAndGet();
+            }
+            if (!ingested) {
+                // Se conserva la huella anterior: el próximo evento (aunque sea un touch) vuelve a intentar
+                failedIngests.incrementAndGet();
+                logger.warn("Ingesta fallida de {}, la huella no se actualiza", filePath);
+                return;
+            }
+            // Tras un agregado vale el recorrido previo; en otro caso el archivo se vuelve a recorrer
+            long contentHash = scan != null && !prefixChanged
+                ? scan.contentHash()
+                : FileFingerprint.scan(file.toPath(), 0L).contentHash();
+            source.fingerprint = new FileFingerprint(size, modified, contentHash);
             logger.info("Archivo procesado exitosamente: {}", filePath);
-            
+
         } catch (Exception e) {
             logger.error("Error procesando archivo {}: {}", filePath, e.getMessage());
         }
     }
 
+    /**
+     * Procesamiento manual del detections.json de la primera raíz (fuente por defecto). Pasa por el
+     * pipeline de la fuente, así nunca se solapa con una ingesta en curso del mismo archivo.
+     */
     public void forceProcessFile() {
-        String fullPath = DIRECTORY_PATH + "/" + FILE_NAME;
+        Path root = Paths.get(rootPaths.get(0).trim());
+        Path fullPath = root.resolve(FILE_NAME);
         logger.info("Procesamiento manual de: {}", fullPath);
-        processFile(fullPath);
+        Source source = sourceFor(root, fullPath);
+        if (source != null) {
+            source.force = true;
+            submit(source);
+        }
     }
 
     public boolean isWatching() {
@@ -238,14 +527,39 @@ public class FileWatcherService {
     public Map<String, Object> getStatus() {
         Map<String, Object> status = new ConcurrentHashMap<>();
         status.put("isWatching", isWatching());
-        status.put("directoryPath", DIRECTORY_PATH);
+        status.put("roots", rootPaths);
+        status.put("patterns", patterns);
+        status.put("watchedDirectories", watchedDirectories.size());
+        status.put("maxConcurrency", maxConcurrency);
         status.put("fileName", FILE_NAME);
+        status.put("ndjsonFileName", NDJSON_FILE_NAME);
         status.put("pendingFiles", pendingFiles.size());
+        status.put("processedFiles", incrementalRuns.get() + fullReloads.get());
+        status.put("incrementalRuns", incrementalRuns.get());
+        status.put("fullReloads", fullReloads.get());
+        status.put("skippedUnchanged", skippedUnchanged.get());
+        status.put("skippedIdenticalContent", skippedIdentical.get());
+        status.put("failedIngests", failedIngests.get());
+        status.put("sources", sources.values().stream()
+            .sorted((a, b) -> a.path.compareTo(b.path))
+            .map(this::sourceStatus)
+            .toList());
         status.put("schedulerActive", !scheduler.isShutdown());
         status.put("lastCheck", LocalDateTime.now().toString());
         return status;
     }
 
+    private Map<String, Object> sourceStatus(Source source) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("sourceId", source.id);
+        status.put("path", source.path.toString());
+        status.put("format", source.lines ? "ndjson" : "json");
+        status.put("running", source.running.get());
+        status.put("runs", source.runs.get());
+        status.put("lastRun", source.lastRun != null ? source.lastRun.toString() : null);
+        return status;
+    }
+
     public void restartWatching() {
         logger.info("Reiniciando FileWatcher");
         if (isWatching) {
@@ -255,4 +569,4 @@ public class FileWatcherService {
             startWatchingAsync();
         }
     }
-}
\ No newline at end of file
+}
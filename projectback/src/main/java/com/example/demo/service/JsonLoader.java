@@ -1,21 +1,42 @@
 package com.example.demo.service;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.example.demo.entity.Detection;
+import com.example.demo.entity.IngestCheckpoint;
 import com.example.demo.repository.DetectionRepository;
+import com.example.demo.repository.IngestCheckpointRepository;
 import com.example.demo.service.DTO.DetectionJson;
 import com.example.demo.service.DTO.DetectionsWrapper;
+import com.example.demo.service.analytics.DetectionPayload;
+import com.example.demo.service.analytics.TimeRange;
+import com.example.demo.service.event.DetectionsIngestedEvent;
+import com.example.demo.service.event.DetectionsReplacedEvent;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -28,27 +49,65 @@ public class JsonLoader {
     private static final Logger logger = LoggerFactory.getLogger(JsonLoader.class);
 
     private final DetectionRepository detectionRepository;
+    private final IngestCheckpointRepository checkpointRepository;
     private final ObjectMapper objectMapper;
+    private final DetectionStreamReader detectionStreamReader;
+    private final MappedDetectionReader mappedDetectionReader;
+    private final DetectionBulkWriter detectionBulkWriter;
+    private final DetectionDataLifecycleService lifecycleService;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DetectionStagingService stagingService;
+    // Las ingestas incrementales de distintas fuentes corren en paralelo (lectura); una recarga completa
+    // las excluye (escritura), porque el intercambio de staging reemplaza las tablas enteras
+    private final DetectionDatasetLock datasetLock;
+
+    // Un archivo nunca se recarga y se agrega a la vez: un lock por checkpoint
+    private final Map<String, ReentrantLock> fileLocks = new ConcurrentHashMap<>();
 
     @Value("${app.detections.file-path:../detections/detections.json}")
     private String filePath;
 
-    @Transactional
+    @Value("${app.detections.ingest.streaming:true}")
+    private boolean streamingEnabled;
+
+    @Value("${app.detections.ingest.batch-size:500}")
+    private int ingestBatchSize;
+
+    @Value("${app.detections.ingest.mapped-threshold-mb:256}")
+    private long mappedThresholdMb;
+
     public void loadJsonAndSaveToDb() throws IOException, DataAccessException {
         loadJsonAndSaveToDb(filePath);
     }
 
-    @Transactional
     public void loadJsonAndSaveToDb(String customFilePath) throws IOException, DataAccessException {
+        loadJsonAndSaveToDb(customFilePath, Detection.DEFAULT_SOURCE);
+    }
+
+    /**
+     * Recarga completa de una fuente: reemplaza solo sus detecciones y conserva las de las demás cámaras.
+     * Sin @Transactional: la escritura corre en transacciones propias (inTransaction o staging) que se
+     * confirman con el lock de escritura tomado. Una transacción externa se confirmaría después de soltarlo.
+     */
+    public void loadJsonAndSaveToDb(String customFilePath, String sourceId) throws IOException, DataAccessException {
         File jsonFile = new File(customFilePath);
         if (!jsonFile.exists()) {
             logger.error(" El archivo JSON no existe: {}", customFilePath);
             throw new IllegalArgumentException("El archivo JSON no existe: " + customFilePath);
         }
+        ReentrantLock fileLock = fileLock(jsonFile);
+        fileLock.lock();
+        datasetLock.writeLock().lock();
         try {
             logger.info("Leyendo el archivo JSON desde: {}", customFilePath);
             logger.info("Tamaño del archivo: {} bytes", jsonFile.length());
 
+            if (streamingEnabled) {
+                loadStreaming(jsonFile, sourceId);
+                return;
+            }
+
             DetectionsWrapper wrapper = objectMapper.readValue(jsonFile, DetectionsWrapper.class);
             logger.info("  Archivo JSON cargado exitosamente.");
 
@@ -59,18 +118,9 @@ public class JsonLoader {
             }
 
             logger.info("📊 Se encontraron {} detecciones en el JSON", detectionsJson.size());
-            long existingCount = detectionRepository.count();
-            logger.info("📊 Registros existentes en BD: {}", existingCount);
-
-            // Limpiar datos existentes para evitar duplicados
-            if (existingCount > 0) {
-                logger.info("🧹 Limpiando {} registros existentes...", existingCount);
-                detectionRepository.deleteAll();
-                logger.info("  Base de datos limpiada");
-            }
             List<Detection> detections = detectionsJson.stream()
                 .filter(d -> d.getTimestamp_ms() != null)
-                .map(this::convertToEntity)
+                .map(d -> convertToEntity(d, sourceId))
                 .filter(d -> d != null)
                 .collect(Collectors.toList());
 
@@ -79,10 +129,21 @@ public class JsonLoader {
                 return;
             }
 
-            logger.info("💾 Guardando {} detecciones válidas en la base de datos...", detections.size());
-            
-            // Guardar en lotes para mejor rendimiento
-            saveInBatches(detections);
+            // Borrado y escritura en una sola transacción (loadJsonAndSaveToDbSafely llama sin proxy):
+            // si falla un lote no queda la fuente borrada a medias
+            inTransaction(() -> {
+                // Limpiar datos existentes para evitar duplicados
+                clearExistingDetections(sourceId);
+                // Esta ruta no conoce offsets: la próxima ingesta incremental hará una recarga completa
+                checkpointRepository.deleteById(checkpointIdOf(jsonFile));
+
+                logger.info("💾 Guardando {} detecciones válidas en la base de datos...", detections.size());
+
+                // Guardar en lotes para mejor rendimiento
+                saveInBatches(detections);
+                eventPublisher.publishEvent(new DetectionsReplacedEvent("recarga completa"));
+                return null;
+            });
 
             // Verificar que se guardaron correctamente
             long finalCount = detectionRepository.count();
@@ -103,31 +164,540 @@ public class JsonLoader {
         } catch (RuntimeException e) {
             logger.error(" Error de runtime al cargar JSON: {}", e.getMessage(), e);
             throw e;
+        } finally {
+            datasetLock.writeLock().unlock();
+            fileLock.unlock();
+        }
+    }
+
+    /**
+     * Carga en streaming: cada detección se convierte al vuelo y se persiste en lotes
+     * de tamaño fijo, limpiando el contexto de persistencia tras cada lote.
+     * Se ejecuta en una transacción propia porque loadJsonAndSaveToDbSafely llama sin proxy;
+     * así el borrado y la recarga se publican juntos y los lectores nunca ven la tabla vacía.
+     * Con staging habilitado la carga va a tablas aparte y los lectores tampoco esperan a la transacción.
+     * Se llama con el lock de escritura de datasetLock tomado.
+     */
+    private void loadStreaming(File jsonFile, String sourceId) throws IOException {
+        if (stagingService.isEnabled()) {
+            streamIntoStaging(jsonFile, sourceId);
+            return;
+        }
+        inTransaction(() -> {
+            streamIntoDatabase(jsonFile, sourceId);
+            return null;
+        });
+    }
+
+    private void streamIntoDatabase(File jsonFile, String sourceId) throws IOException {
+        int batchSize = Math.max(1, ingestBatchSize);
+        List<Detection> batch = new ArrayList<>(batchSize);
+        long[] processed = new long[1];
+        boolean[] cleared = new boolean[1];
+        long[] lastOffset = new long[1];
+        Long[] lastTimestamp = new Long[1];
+
+        long readCount = readDocument(jsonFile, (detectionJson, endOffset) -> {
+            lastOffset[0] = endOffset;
+            if (detectionJson.getTimestamp_ms() == null) {
+                return;
+            }
+            Detection detection = convertToEntity(detectionJson, sourceId);
+            if (detection == null) {
+                return;
+            }
+            // Limpiar datos existentes solo cuando aparece la primera detección válida
+            if (!cleared[0]) {
+                clearExistingDetections(sourceId);
+                cleared[0] = true;
+            }
+            lastTimestamp[0] = detection.getTimestampMs();
+            batch.add(detection);
+            if (batch.size() >= batchSize) {
+                processed[0] += flushBatch(batch);
+            }
+        });
+        processed[0] += flushBatch(batch);
+        if (cleared[0]) {
+            eventPublisher.publishEvent(new DetectionsReplacedEvent("recarga completa"));
+        }
+
+        if (readCount == 0) {
+            logger.warn("No se encontraron detecciones en el archivo JSON.");
+            return;
+        }
+
+        saveCheckpoint(jsonFile, lastTimestamp[0], lastOffset[0], jsonFile.length(), processed[0], true);
+
+        long finalCount = detectionRepository.count();
+        logger.info("🎉 Proceso completado (streaming):");
+        logger.info("   📥 Detecciones en JSON: {}", readCount);
+        logger.info("     Detecciones procesadas: {}", processed[0]);
+        logger.info("   💾 Registros en BD: {}", finalCount);
+        logger.info("   ⚡ Escritura ({}): {} filas/s", detectionBulkWriter.getMode(),
+            Math.round(detectionBulkWriter.getRowsPerSecond()));
+    }
+
+    private void streamIntoStaging(File jsonFile, String sourceId) throws IOException {
+        int batchSize = Math.max(1, ingestBatchSize);
+        long[] processed = new long[1];
+        long[] lastOffset = new long[1];
+        Long[] lastTimestamp = new Long[1];
+
+        long readCount = stagingService.reload("recarga completa", sourceId, sink -> {
+            List<Detection> batch = new ArrayList<>(batchSize);
+            long count = readDocument(jsonFile, (detectionJson, endOffset) -> {
+                lastOffset[0] = endOffset;
+                if (detectionJson.getTimestamp_ms() == null) {
+                    return;
+                }
+                Detection detection = convertToEntity(detectionJson, sourceId);
+                if (detection == null) {
+                    return;
+                }
+                lastTimestamp[0] = detection.getTimestampMs();
+                batch.add(detection);
+                if (batch.size() >= batchSize) {
+                    processed[0] += batch.size();
+                    sink.accept(new ArrayList<>(batch));
+                    batch.clear();
+                }
+            });
+            if (!batch.isEmpty()) {
+                processed[0] += batch.size();
+                sink.accept(batch);
+            }
+            return count;
+        });
+
+        if (readCount == 0) {
+            logger.warn("No se encontraron detecciones en el archivo JSON.");
+            return;
+        }
+
+        saveCheckpoint(jsonFile, lastTimestamp[0], lastOffset[0], jsonFile.length(), processed[0], true);
+
+        logger.info("🎉 Proceso completado (staging):");
+        logger.info("   📥 Detecciones en JSON: {}", readCount);
+        logger.info("     Detecciones procesadas: {}", processed[0]);
+    }
+
+    /**
+     * Lee el documento completo; los archivos grandes (volcados archivados) se mapean en memoria por ventanas.
+     */
+    private long readDocument(File jsonFile, DetectionStreamReader.DetectionHandler handler) throws IOException {
+        if (jsonFile.length() >= mappedThresholdMb * 1024 * 1024) {
+            long start = System.nanoTime();
+            long count = mappedDetectionReader.readDocument(jsonFile.toPath(), handler);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            logger.info("🗺️ Archivo mapeado en memoria: {} MB en {} s ({} MB/s)", jsonFile.length() / (1024 * 1024),
+                Math.round(seconds * 10) / 10.0, Math.round(jsonFile.length() / (1024.0 * 1024.0) / seconds));
+            return count;
+        }
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(jsonFile))) {
+            return detectionStreamReader.readDocument(inputStream, handler);
+        }
+    }
+
+    /**
+     * Ingesta incremental: solo lee los bytes agregados después del último checkpoint de la fuente
+     * e inserta las detecciones nuevas, sin borrar la tabla. Si no hay checkpoint, o el archivo
+     * fue truncado o reescrito (timestamps que no avanzan), se hace una recarga completa.
+     * Devuelve la cantidad de detecciones insertadas.
+     */
+    public long ingestIncrementally(String customFilePath) throws IOException, DataAccessException {
+        return ingestIncrementally(customFilePath, Detection.DEFAULT_SOURCE);
+    }
+
+    public long ingestIncrementally(String customFilePath, String sourceId) throws IOException, DataAccessException {
+        File jsonFile = new File(customFilePath);
+        if (!jsonFile.exists()) {
+            logger.error(" El archivo JSON no existe: {}", customFilePath);
+            throw new IllegalArgumentException("El archivo JSON no existe: " + customFilePath);
+        }
+
+        ReentrantLock fileLock = fileLock(jsonFile);
+        fileLock.lock();
+        try {
+            String checkpointId = checkpointIdOf(jsonFile);
+            IngestCheckpoint checkpoint = checkpointRepository.findById(checkpointId).orElse(null);
+
+            if (checkpoint == null || checkpoint.getFileOffset() == null || jsonFile.length() < checkpoint.getFileOffset()
+                || !sameFile(jsonFile, checkpoint)) {
+                logger.info("Sin checkpoint válido para {}, recarga completa", checkpointId);
+                return reloadSource(jsonFile, sourceId);
+            }
+
+            // El lock de lectura no se puede promover: se suelta antes de pasar a la recarga completa
+            long appended = locked(appendLock(), () -> inTransaction(() -> appendFromCheckpoint(jsonFile, checkpoint, sourceId)));
+            if (appended == DetectionStreamReader.NOT_A_TAIL) {
+                logger.info("📄 El archivo {} fue reescrito, recarga completa", checkpointId);
+                return reloadSource(jsonFile, sourceId);
+            }
+            return appended;
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    private long reloadSource(File jsonFile, String sourceId) throws IOException {
+        return locked(datasetLock.writeLock(), () -> {
+            loadStreaming(jsonFile, sourceId);
+            return detectionRepository.count();
+        });
+    }
+
+    /**
+     * Sigue un archivo JSON-lines: lee con FileChannel desde el offset del checkpoint solo las líneas
+     * completas agregadas y las inserta, sin recargar nunca lo anterior. Si el archivo se truncó o rotó
+     * (es más corto que el offset o el offset ya no cae tras un salto de línea) se vuelve a leer desde
+     * el principio como un archivo nuevo. Devuelve la cantidad de detecciones insertadas.
+     */
+    public long ingestLines(String customFilePath) throws IOException, DataAccessException {
+        return ingestLines(customFilePath, Detection.DEFAULT_SOURCE);
+    }
+
+    public long ingestLines(String customFilePath, String sourceId) throws IOException, DataAccessException {
+        File linesFile = new File(customFilePath);
+        if (!linesFile.exists()) {
+            logger.error(" El archivo JSON-lines no existe: {}", customFilePath);
+            throw new IllegalArgumentException("El archivo JSON-lines no existe: " + customFilePath);
+        }
+
+        ReentrantLock fileLock = fileLock(linesFile);
+        fileLock.lock();
+        try {
+            String checkpointId = checkpointIdOf(linesFile);
+            IngestCheckpoint checkpoint = checkpointRepository.findById(checkpointId).orElse(null);
+            return locked(appendLock(), () -> inTransaction(() -> appendLines(linesFile, checkpointId, sourceId, checkpoint)));
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    public boolean ingestLinesSafely(String customFilePath) {
+        return ingestLinesSafely(customFilePath, Detection.DEFAULT_SOURCE);
+    }
+
+    public boolean ingestLinesSafely(String customFilePath, String sourceId) {
+        try {
+            ingestLines(customFilePath, sourceId);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Error en ingesta JSON-lines (no crítico): {}", e.getMessage());
+            return false;
+        } catch (DataAccessException e) {
+            logger.warn("Error de acceso a datos en ingesta JSON-lines (no crítico): {}", e.getMessage());
+            return false;
+        } catch (RuntimeException e) {
+            logger.warn("Error de runtime en ingesta JSON-lines (no crítico): {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private long appendLines(File linesFile, String checkpointId, String sourceId, IngestCheckpoint checkpoint) throws IOException {
+        int batchSize = Math.max(1, ingestBatchSize);
+        List<Detection> batch = new ArrayList<>(batchSize);
+        List<Detection> appended = new ArrayList<>();
+        long[] processed = new long[1];
+        Long[] lastTimestamp = {checkpoint != null ? checkpoint.getLastTimestampMs() : null};
+
+        long nextOffset;
+        long fileSize;
+        boolean rotated;
+        try (FileChannel channel = FileChannel.open(linesFile.toPath(), StandardOpenOption.READ)) {
+            fileSize = channel.size();
+            long startOffset = checkpoint != null && checkpoint.getFileOffset() != null ? checkpoint.getFileOffset() : 0L;
+            rotated = startOffset > 0 && (!sameFile(linesFile, checkpoint) || !startsLine(channel, startOffset));
+            if (rotated) {
+                logger.info("📄 El archivo {} fue truncado o rotado, se lee desde el principio", checkpointId);
+                startOffset = 0L;
+            }
+            if (startOffset == fileSize) {
+                return 0;
+            }
+            nextOffset = detectionStreamReader.readLines(channel, startOffset, (detectionJson, endOffset) -> {
+                if (detectionJson.getTimestamp_ms() == null) {
+                    return;
+                }
+                Detection detection = convertToEntity(detectionJson, sourceId);
+                if (detection == null) {
+                    return;
+                }
+                lastTimestamp[0] = detection.getTimestampMs();
+                batch.add(detection);
+                if (batch.size() >= batchSize) {
+                    processed[0] += flushBatch(batch, appended);
+                }
+            });
+        }
+        processed[0] += flushBatch(batch, appended);
+
+        if (!appended.isEmpty()) {
+            eventPublisher.publishEvent(new DetectionsIngestedEvent(checkpointId, appended));
+        }
+        saveCheckpoint(linesFile, lastTimestamp[0], nextOffset, fileSize, processed[0], checkpoint == null || rotated);
+        if (processed[0] > 0) {
+            logger.info("📥 Ingesta JSON-lines de {}: {} detecciones nuevas (offset {})", checkpointId, processed[0], nextOffset);
+        }
+        return processed[0];
+    }
+
+    // Un offset válido siempre queda justo después de un salto de línea dentro del archivo
+    private static boolean startsLine(FileChannel channel, long offset) throws IOException {
+        if (offset > channel.size()) {
+            return false;
+        }
+        ByteBuffer previous = ByteBuffer.allocate(1);
+        return channel.read(previous, offset - 1) == 1 && previous.get(0) == '\n';
+    }
+
+    public boolean ingestIncrementallySafely(String customFilePath) {
+        return ingestIncrementallySafely(customFilePath, Detection.DEFAULT_SOURCE);
+    }
+
+    public boolean ingestIncrementallySafely(String customFilePath, String sourceId) {
+        try {
+            ingestIncrementally(customFilePath, sourceId);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Error en ingesta incremental (no crítico): {}", e.getMessage());
+            return false;
+        } catch (DataAccessException e) {
+            logger.warn("Error de acceso a datos en ingesta incremental (no crítico): {}", e.getMessage());
+            return false;
+        } catch (RuntimeException e) {
+            logger.warn("Error de runtime en ingesta incremental (no crítico): {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private long appendFromCheckpoint(File jsonFile, IngestCheckpoint checkpoint, String sourceId) throws IOException {
+        int batchSize = Math.max(1, ingestBatchSize);
+        List<Detection> batch = new ArrayList<>(batchSize);
+        List<Detection> appended = new ArrayList<>();
+        long[] processed = new long[1];
+        long[] lastOffset = {checkpoint.getFileOffset()};
+        Long[] lastTimestamp = {checkpoint.getLastTimestampMs()};
+        boolean[] rewritten = new boolean[1];
+        boolean[] first = {true};
+
+        long readCount;
+        try (FileChannel channel = FileChannel.open(jsonFile.toPath(), StandardOpenOption.READ)) {
+            channel.position(checkpoint.getFileOffset());
+            InputStream inputStream = new BufferedInputStream(Channels.newInputStream(channel));
+            readCount = detectionStreamReader.readTail(inputStream, checkpoint.getFileOffset(), (detectionJson, endOffset) -> {
+                Long timestamp = detectionJson.getTimestamp_ms();
+                boolean behindHighWaterMark = timestamp != null && lastTimestamp[0] != null && timestamp <= lastTimestamp[0];
+                if (first[0]) {
+                    first[0] = false;
+                    // detector.py solo agrega: un primer elemento "viejo" indica que el archivo cambió por completo
+                    rewritten[0] = behindHighWaterMark;
+                }
+                if (rewritten[0]) {
+                    return;
+                }
+                lastOffset[0] = endOffset;
+                if (timestamp == null || behindHighWaterMark) {
+                    return;
+                }
+                Detection detection = convertToEntity(detectionJson, sourceId);
+                if (detection == null) {
+                    return;
+                }
+                lastTimestamp[0] = timestamp;
+                batch.add(detection);
+                if (batch.size() >= batchSize) {
+                    processed[0] += flushBatch(batch, appended);
+                }
+            });
+        }
+        processed[0] += flushBatch(batch, appended);
+
+        if (readCount == DetectionStreamReader.NOT_A_TAIL || rewritten[0]) {
+            return DetectionStreamReader.NOT_A_TAIL;
+        }
+        if (!appended.isEmpty()) {
+            // Los listeners transaccionales lo reciben tras el commit
+            eventPublisher.publishEvent(new DetectionsIngestedEvent(checkpoint.getSourceId(), appended));
+        }
+
+        saveCheckpoint(jsonFile, lastTimestamp[0], lastOffset[0], jsonFile.length(), processed[0], false);
+        if (processed[0] > 0) {
+            logger.info("📥 Ingesta incremental de {}: {} detecciones nuevas (offset {})",
+                checkpoint.getSourceId(), processed[0], lastOffset[0]);
+        } else {
+            logger.debug("Sin detecciones nuevas en {}", checkpoint.getSourceId());
+        }
+        return processed[0];
+    }
+
+    private void saveCheckpoint(File file, Long lastTimestampMs, long fileOffset, long fileSize,
+                                long ingested, boolean reset) throws IOException {
+        String sourceId = checkpointIdOf(file);
+        IngestCheckpoint checkpoint = reset ? null : checkpointRepository.findById(sourceId).orElse(null);
+        if (checkpoint == null) {
+            checkpoint = IngestCheckpoint.builder().sourceId(sourceId).detectionsIngested(0L).build();
+        }
+        checkpoint.setLastTimestampMs(lastTimestampMs != null ? lastTimestampMs : checkpoint.getLastTimestampMs());
+        checkpoint.setFileOffset(fileOffset);
+        checkpoint.setFileSize(fileSize);
+        // Tras un agregado la identidad se continúa leyendo solo los bytes nuevos
+        FileFingerprint.Identity previous = FileFingerprint.Identity.decode(checkpoint.getFileIdentity());
+        FileFingerprint.Identity identity = previous != null
+            ? previous.extend(file.toPath(), fileOffset)
+            : FileFingerprint.Identity.of(file.toPath(), fileOffset);
+        checkpoint.setFileIdentity(identity.encode());
+        checkpoint.setDetectionsIngested(checkpoint.getDetectionsIngested() + ingested);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointRepository.save(checkpoint);
+    }
+
+    /**
+     * Comprobación barata de cada ingesta (clave del archivo y cabecera, ver FileFingerprint.Identity).
+     * Los checkpoints sin identidad o con el formato anterior se validan solo por offset.
+     */
+    private static boolean sameFile(File file, IngestCheckpoint checkpoint) throws IOException {
+        FileFingerprint.Identity identity = FileFingerprint.Identity.decode(checkpoint.getFileIdentity());
+        return identity == null || identity.sameHead(file.toPath());
+    }
+
+    /** Identidad de lo ya ingerido del archivo según su checkpoint, o null si no tiene. */
+    public FileFingerprint.Identity checkpointIdentity(String customFilePath) {
+        return checkpointRepository.findById(checkpointIdOf(new File(customFilePath)))
+            .map(checkpoint -> FileFingerprint.Identity.decode(checkpoint.getFileIdentity()))
+            .orElse(null);
+    }
+
+    // El checkpoint es por archivo: una cámara puede tener detections.json y detections.ndjson
+    private String checkpointIdOf(File file) {
+        return file.toPath().toAbsolutePath().normalize().toString();
+    }
+
+    private ReentrantLock fileLock(File file) {
+        return fileLocks.computeIfAbsent(checkpointIdOf(file), id -> new ReentrantLock());
+    }
+
+    private Lock appendLock() {
+        return detectionBulkWriter.supportsConcurrentWriters() ? datasetLock.readLock() : datasetLock.writeLock();
+    }
+
+    private <T> T locked(Lock lock, IoWork<T> work) throws IOException {
+        lock.lock();
+        try {
+            return work.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @FunctionalInterface
+    private interface IoWork<T> {
+        T run() throws IOException;
+    }
+
+    private <T> T inTransaction(IoWork<T> work) throws IOException {
+        try {
+            return transactionTemplate.execute(status -> {
+                try {
+                    return work.run();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Borra las detecciones de la fuente. Si no hay otras fuentes se borra todo con un único DELETE;
+     * si las hay, solo las filas de esta fuente, por bloques.
+     */
+    private void clearExistingDetections(String sourceId) {
+        long existingCount = detectionRepository.count();
+        logger.info("📊 Registros existentes en BD: {}", existingCount);
+
+        if (existingCount == 0) {
+            return;
+        }
+        if (lifecycleService.hasOtherSources(sourceId)) {
+            long deleted = lifecycleService.deleteSource(sourceId);
+            logger.info("🧹 Limpiados {} registros de la fuente {}", deleted, sourceId);
+            return;
+        }
+        logger.info("🧹 Limpiando {} registros existentes...", existingCount);
+        lifecycleService.deleteAllInBatch();
+        logger.info("  Base de datos limpiada");
+    }
+
+    private int flushBatch(List<Detection> batch) {
+        return flushBatch(batch, null);
+    }
+
+    /**
+     * Escribe el lote y, si se indica, copia las detecciones persistidas (ya con id) en writtenSink.
+     * Un error se propaga: la transacción de la ingesta se revierte y el checkpoint no avanza
+     * sobre detecciones que no se escribieron.
+     */
+    private int flushBatch(List<Detection> batch, List<Detection> writtenSink) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int size = batch.size();
+        try {
+            int written = detectionBulkWriter.write(batch);
+            logger.debug("💾 Lote guardado ({} registros)", written);
+            if (writtenSink != null) {
+                writtenSink.addAll(batch);
+            }
+            return written;
+        } catch (DataAccessException e) {
+            logger.error(" Error de acceso a datos guardando lote de {} registros: {}", size, e.getMessage());
+            throw e;
+        } catch (RuntimeException e) {
+            logger.error(" Error de runtime guardando lote de {} registros: {}", size, e.getMessage());
+            throw e;
+        } finally {
+            batch.clear();
         }
     }
 
-    public void loadJsonAndSaveToDbSafely(String customFilePath) {
+    /** Igual que loadJsonAndSaveToDb, pero registra los errores en lugar de propagarlos; devuelve si terminó bien. */
+    public boolean loadJsonAndSaveToDbSafely(String customFilePath) {
+        return loadJsonAndSaveToDbSafely(customFilePath, Detection.DEFAULT_SOURCE);
+    }
+
+    public boolean loadJsonAndSaveToDbSafely(String customFilePath, String sourceId) {
         try {
-            loadJsonAndSaveToDb(customFilePath);
+            loadJsonAndSaveToDb(customFilePath, sourceId);
+            return true;
         } catch (IOException e) {
             logger.warn("Error cargando JSON (no crítico): {}", e.getMessage());
+            return false;
         } catch (DataAccessException e) {
             logger.warn("Error de acceso a datos cargando JSON (no crítico): {}", e.getMessage());
+            return false;
         } catch (RuntimeException e) {
             logger.warn("Error de runtime cargando JSON (no crítico): {}", e.getMessage());
+            return false;
         }
     }
 
-    private Detection convertToEntity(DetectionJson detectionJson) {
+    private Detection convertToEntity(DetectionJson detectionJson, String sourceId) {
         try {
             logger.debug("Procesando detección con timestamp_ms: {}", detectionJson.getTimestamp_ms());
             
             return Detection.builder()
                 .timestampMs(detectionJson.getTimestamp_ms())
                 .date(detectionJson.getDate() != null ? detectionJson.getDate() : "")
+                .eventTimeMs(TimeRange.toEpochMs(detectionJson.getDate()))
                 .objectsTotal(safeWriteValueAsString(detectionJson.getObjects_total()))
                 .objectsByLane(safeWriteValueAsString(detectionJson.getObjects_by_lane()))
                 .avgSpeedByLane(safeWriteValueAsString(detectionJson.getAvg_speed_by_lane()))
+                .payload(DetectionPayload.fromMaps(detectionJson.getObjects_total(),
+                    detectionJson.getObjects_by_lane(), detectionJson.getAvg_speed_by_lane()).encode())
+                .sourceId(sourceId)
                 .build();
                 
         } catch (RuntimeException e) {
@@ -138,7 +708,7 @@ public class JsonLoader {
     }
 
     private void saveInBatches(List<Detection> detections) {
-        int batchSize = 20;
+        int batchSize = Math.max(1, ingestBatchSize);
         int processedCount = 0;
         
         for (int i = 0; i < detections.size(); i += batchSize) {
@@ -146,13 +716,14 @@ public class JsonLoader {
             List<Detection> batch = detections.subList(i, endIndex);
             
             try {
-                detectionRepository.saveAll(batch);
-                processedCount += batch.size();
+                processedCount += detectionBulkWriter.write(batch);
                 logger.debug("💾 Lote guardado: {} - {} ({} registros)", i + 1, endIndex, batch.size());
             } catch (DataAccessException e) {
                 logger.error(" Error de acceso a datos guardando lote {}-{}: {}", i + 1, endIndex, e.getMessage());
+                throw e;
             } catch (RuntimeException e) {
                 logger.error(" Error de runtime guardando lote {}-{}: {}", i + 1, endIndex, e.getMessage());
+                throw e;
             }
         }
         
@@ -196,35 +767,36 @@ public class JsonLoader {
         }
     }
 
-    @Transactional
-    public void clearDatabase() {
-        try {
-            long countBefore = detectionRepository.count();
-            logger.info("Limpiando base de datos... ({} registros)", countBefore);
-            
-            detectionRepository.deleteAll();
-            
-            long countAfter = detectionRepository.count();
-            logger.info("Base de datos limpia. Registros restantes: {}", countAfter);
-            
-        } catch (DataAccessException e) {
-            logger.error(" Error de acceso a datos limpiando base de datos: {}", e.getMessage());
-            throw new RuntimeException("Error limpiando base de datos", e);
-        } catch (RuntimeException e) {
-            logger.error(" Error de runtime limpiando base de datos: {}", e.getMessage());
-            throw e;
-        }
-    }
-
-    @Transactional
+    /**
+     * Borra la fuente por defecto y la recarga desde filePath. Todo ocurre con el lock de escritura del
+     * conjunto de datos tomado y la transacción se confirma antes de soltarlo: ninguna ingesta de otra cámara
+     * puede confirmarse entre la comprobación de otras fuentes y el borrado, ni ver la fuente a medio recargar.
+     */
     public void forceReload() throws IOException, DataAccessException {
         logger.info("Iniciando recarga forzada de datos...");
-        
+
+        File jsonFile = new File(filePath);
+        // Mismo orden que las ingestas (archivo y después conjunto de datos) para no bloquearse entre sí
+        ReentrantLock fileLock = fileLock(jsonFile);
+        fileLock.lock();
+        datasetLock.writeLock().lock();
         try {
-            clearDatabase();
-            loadJsonAndSaveToDb();
+            // Solo se recarga la fuente por defecto: las demás cámaras conservan sus detecciones y checkpoints
+            if (streamingEnabled && stagingService.isEnabled()) {
+                // El intercambio de staging ya reemplaza la fuente y maneja sus propias transacciones
+                checkpointRepository.deleteById(checkpointIdOf(jsonFile));
+                loadJsonAndSaveToDb();
+            } else {
+                // Borrado y recarga en la misma transacción, confirmada antes de soltar los locks
+                inTransaction(() -> {
+                    clearExistingDetections(Detection.DEFAULT_SOURCE);
+                    checkpointRepository.deleteById(checkpointIdOf(jsonFile));
+                    loadJsonAndSaveToDb();
+                    return null;
+                });
+            }
             verifyDataIntegrity();
-            
+
             logger.info("Recarga forzada completada");
         } catch (DataAccessException e) {
             logger.error("Error de acceso a datos en recarga forzada: {}", e.getMessage());
@@ -235,6 +807,9 @@ public class JsonLoader {
         } catch (RuntimeException e) {
             logger.error("Error de runtime en recarga forzada: {}", e.getMessage());
             throw e;
+        } finally {
+            datasetLock.writeLock().unlock();
+            fileLock.unlock();
         }
     }
-}
\ No newline at end of file
+}
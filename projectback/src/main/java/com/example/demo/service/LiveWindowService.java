@@ -0,0 +1,137 @@
+package com.example.demo.service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.entity.Detection;
+import com.example.demo.service.analytics.DetectionPayload;
+import com.example.demo.service.analytics.RingWindowMetrics;
+import com.example.demo.service.analytics.TimeBucketDownsampler;
+import com.example.demo.service.analytics.TimeRange;
+import com.example.demo.service.event.DetectionsIngestedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Métricas "en vivo" de /live/window: volúmenes y velocidades por carril de los últimos
+ * 1/5/15 minutos (configurable), alimentadas solo por las ingestas confirmadas.
+ * Las detecciones se ubican por su hora de evento y las ventanas terminan en el reloj del servidor,
+ * así una ingesta de datos históricos no aparece como tráfico actual. Una hora de evento posterior al
+ * reloj (cámara adelantada) se cuenta en el segundo actual: si adelantara el anillo, vaciaría las ventanas.
+ * No consulta la base de datos.
+ */
+@Service
+@RequiredArgsConstructor
+public class LiveWindowService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LiveWindowService.class);
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.detections.live.windows:1m,5m,15m}")
+    private String windowsProperty;
+
+    // Protegido por synchronized(this)
+    private RingWindowMetrics metrics;
+    private List<String> windowNames;
+    private long futureDetections;
+
+    @PostConstruct
+    void init() {
+        windowNames = new ArrayList<>();
+        List<Long> seconds = new ArrayList<>();
+        for (String window : windowsProperty.split(",")) {
+            String name = window.trim();
+            if (!name.isEmpty()) {
+                windowNames.add(name);
+                seconds.add(TimeBucketDownsampler.parseBucket(name).toSeconds());
+            }
+        }
+        metrics = new RingWindowMetrics(seconds.stream().mapToLong(Long::longValue).toArray(), nowSecond());
+        logger.info("⏱️ Ventanas en vivo configuradas: {}", windowNames);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDetectionsIngested(DetectionsIngestedEvent event) {
+        if (event.detections() == null || event.detections().isEmpty()) {
+            return;
+        }
+        List<DetectionPayload> payloads = new ArrayList<>(event.detections().size());
+        for (Detection detection : event.detections()) {
+            payloads.add(DetectionPayload.of(objectMapper, detection));
+        }
+        synchronized (this) {
+            long now = nowSecond();
+            metrics.advance(now);
+            for (int i = 0; i < payloads.size(); i++) {
+                long second = eventSecond(event.detections().get(i));
+                if (second > now) {
+                    futureDetections++;
+                    second = now;
+                }
+                metrics.add(second, payloads.get(i));
+            }
+        }
+    }
+
+    /**
+     * Resumen de la ventana pedida ("1m", "5m", "900s"...), que debe ser una de las configuradas.
+     */
+    public Map<String, Object> getWindow(String size) {
+        long seconds = TimeBucketDownsampler.parseBucket(size).toSeconds();
+        Map<String, Object> result;
+        long head;
+        synchronized (this) {
+            int index = indexOf(seconds, size);
+            metrics.advance(nowSecond());
+            head = metrics.getHeadSecond();
+            result = metrics.window(index);
+            result.put("lateDetections", metrics.getLateDetections());
+            result.put("futureDetections", futureDetections);
+        }
+        result.put("size", size.trim());
+        result.put("from", format(head - seconds + 1));
+        result.put("to", format(head + 1));
+        return result;
+    }
+
+    private int indexOf(long seconds, String size) {
+        long[] windowSeconds = metrics.getWindowSeconds();
+        for (int i = 0; i < windowSeconds.length; i++) {
+            if (windowSeconds[i] == seconds) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Ventana no soportada: " + size
+            + " (configuradas: " + String.join(", ", windowNames) + ")");
+    }
+
+    private static long eventSecond(Detection detection) {
+        Long eventTime = detection.getEventTimeMs();
+        if (eventTime == null) {
+            eventTime = TimeRange.toEpochMs(detection.getDate());
+        }
+        return eventTime != null ? Math.floorDiv(eventTime, 1000L) : nowSecond();
+    }
+
+    private static long nowSecond() {
+        return Math.floorDiv(System.currentTimeMillis(), 1000L);
+    }
+
+    private static String format(long second) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(second), ZoneId.systemDefault())
+            .format(TimeRange.DATE_FORMAT);
+    }
+}
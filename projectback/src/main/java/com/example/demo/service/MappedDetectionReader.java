@@ -0,0 +1,154 @@
+package com.example.demo.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.service.DTO.DetectionJson;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Lector de archivos de detecciones muy grandes (volcados archivados de varios GB).
+ * Mapea el archivo en ventanas con FileChannel.map y entrega cada ventana a un único parser de Jackson.
+ * El archivo no pasa por read() del canal: el parser copia la memoria mapeada a su propio buffer
+ * (ByteBufferBackedInputStream) de a tramos pequeños, así que el heap usado no depende del tamaño del
+ * archivo ni de la ventana. Los límites de cada elemento salen de las posiciones de los tokens
+ * (getTokenLocation/currentLocation): el elemento que queda cortado por el borde de una ventana se
+ * vuelve a leer completo desde su inicio al comienzo de la siguiente. Produce los mismos elementos y
+ * offsets que DetectionStreamReader.readDocument.
+ */
+@Component
+@RequiredArgsConstructor
+public class MappedDetectionReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedDetectionReader.class);
+    private static final String DETECTIONS_FIELD = "detections";
+    private static final byte[] ARRAY_START = "[".getBytes(StandardCharsets.US_ASCII);
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.detections.ingest.mapped-window-mb:256}")
+    private long windowMb;
+
+    public long readDocument(Path file, DetectionStreamReader.DetectionHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readDocument(channel, Math.max(1, windowMb) * 1024 * 1024, handler);
+        }
+    }
+
+    long readDocument(FileChannel channel, long windowBytes, DetectionStreamReader.DetectionHandler handler) throws IOException {
+        long arrayStart = locateDetectionsArray(channel);
+        if (arrayStart < 0) {
+            logger.warn("El documento no contiene el arreglo '{}'", DETECTIONS_FIELD);
+            return 0;
+        }
+        long size = channel.size();
+        long count = 0;
+
+        long windowStart = arrayStart;
+        while (windowStart < size) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(windowBytes, size - windowStart));
+            boolean lastWindow = windowStart + window.limit() == size;
+            // Cada ventana arranca en un elemento: se saltean la coma y los espacios que lo separan del anterior
+            while (window.hasRemaining() && isSeparator(window.get(window.position()))) {
+                window.get();
+            }
+            // Offset en el archivo del byte 0 que ve el parser, que es el "[" agregado delante
+            long base = windowStart + window.position() - 1;
+            // Bytes que puede leer el parser: un error de lectura desde acá es un elemento cortado por el borde
+            long available = ARRAY_START.length + window.remaining();
+
+            InputStream input = new SequenceInputStream(
+                new ByteArrayInputStream(ARRAY_START), new ByteBufferBackedInputStream(window));
+            long resumeAt;
+            try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+                parser.nextToken();
+                while (true) {
+                    // Inicio del próximo elemento: el byte siguiente al cierre del anterior, o el propio elemento
+                    // una vez leído su START_OBJECT. Jackson lee por adelantado, así que la posición de la
+                    // ventana no indica dónde quedó el último elemento completo
+                    long elementStart = base + parser.currentLocation().getByteOffset();
+                    DetectionJson detection;
+                    try {
+                        if (parser.nextToken() != JsonToken.START_OBJECT) {
+                            // Fin del arreglo "detections"
+                            return count;
+                        }
+                        elementStart = base + parser.currentTokenLocation().getByteOffset();
+                        detection = DetectionStreamReader.readElement(objectMapper, parser, base);
+                    } catch (StreamReadException e) {
+                        if (!DetectionStreamReader.isTruncated(e, available)) {
+                            logger.warn("JSON mal formado en el offset {} tras {} elementos: {}",
+                                base + e.getLocation().getByteOffset(), count, e.getOriginalMessage());
+                            throw e;
+                        }
+                        if (lastWindow) {
+                            logger.debug("Último elemento incompleto tras {} elementos: {}", count, e.getOriginalMessage());
+                            return count;
+                        }
+                        // Cortado por el borde de la ventana: se retoma desde su inicio en la siguiente
+                        resumeAt = elementStart;
+                        break;
+                    }
+                    if (detection == null) {
+                        continue;
+                    }
+                    handler.handle(detection, base + parser.currentLocation().getByteOffset());
+                    count++;
+                }
+            }
+            if (resumeAt <= windowStart) {
+                throw new IOException("Un elemento de " + DETECTIONS_FIELD + " supera la ventana de "
+                    + windowBytes + " bytes (offset " + windowStart + ")");
+            }
+            windowStart = resumeAt;
+        }
+        return count;
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == ',' || b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /**
+     * Offset del primer byte dentro del arreglo "detections"; lo ubica el parser de Jackson,
+     * que solo lee el comienzo del documento.
+     */
+    private long locateDetectionsArray(FileChannel channel) throws IOException {
+        channel.position(0);
+        try (JsonParser parser = objectMapper.getFactory().createParser(Channels.newInputStream(channel))) {
+            // Cerrar el parser no debe cerrar el canal, que se sigue usando para mapear
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return -1;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (DETECTIONS_FIELD.equals(fieldName) && value == JsonToken.START_ARRAY) {
+                    return parser.currentLocation().getByteOffset();
+                }
+                parser.skipChildren();
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.example.demo.service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.entity.Detection;
+import com.example.demo.entity.TrafficRollup;
+import com.example.demo.service.analytics.RollupGranularity;
+import com.example.demo.service.analytics.TimeRange;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Rollups temporales (minuto, hora, día) por carril y tipo de vehículo.
+ * Se actualizan con cada lote escrito (upsert de deltas) y se pueden regenerar en SQL
+ * a partir del desglose normalizado. Las series temporales largas se leen de aquí.
+ */
+@Service
+@RequiredArgsConstructor
+public class TrafficRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrafficRollupService.class);
+    private static final String ALL = TrafficRollup.ALL;
+    private static final int DATE_LENGTH = 19;
+    private static final Comparator<Key> KEY_ORDER =
+        Comparator.comparing(Key::bucket).thenComparing(Key::lane).thenComparing(Key::vehicleType);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DetectionBreakdownService breakdownService;
+
+    @Value("${app.detections.rollup.max-points:500}")
+    private int maxPoints;
+
+    private volatile LocalDateTime lastRebuild;
+    private volatile Boolean mysql;
+
+    private record Key(String bucket, String lane, String vehicleType) {
+    }
+
+    private static final class Cell {
+        long count;
+        double speedSum;
+        long speedCount;
+    }
+
+    /** Un bucket leído del rollup: totales por tipo y velocidad promedio por carril. */
+    public record Bucket(String start, long detections, Map<String, Long> totals, Map<String, Double> laneSpeeds) {
+    }
+
+    /**
+     * Suma a los rollups las detecciones recién escritas, reutilizando las filas del desglose.
+     * Corre en la transacción de la ingesta.
+     */
+    public void apply(List<Detection> detections, DetectionBreakdownService.Rows rows) {
+        Map<Long, String> dates = new HashMap<>();
+        for (Detection detection : detections) {
+            if (detection.getId() != null && hasValidDate(detection.getDate())) {
+                dates.put(detection.getId(), detection.getDate());
+            }
+        }
+        if (dates.isEmpty()) {
+            return;
+        }
+
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            Map<Key, Cell> deltas = new LinkedHashMap<>();
+            dates.values().forEach(date -> cell(deltas, granularity.bucketOf(date), ALL, ALL).count++);
+            for (DetectionBreakdownService.CountRow row : rows.counts()) {
+                String date = dates.get(row.detectionId());
+                if (date != null) {
+                    String lane = row.lane() != null ? row.lane() : ALL;
+                    cell(deltas, granularity.bucketOf(date), lane, row.vehicleType()).count += row.count();
+                }
+            }
+            for (DetectionBreakdownService.SpeedRow row : rows.speeds()) {
+                String date = dates.get(row.detectionId());
+                if (date != null && row.speed() > 0) {
+                    Cell cell = cell(deltas, granularity.bucketOf(date), row.lane(), ALL);
+                    cell.speedSum += row.speed();
+                    cell.speedCount++;
+                }
+            }
+            upsert(granularity, deltas);
+        }
+    }
+
+    /**
+     * Primera puesta en marcha: si hay detecciones y los rollups están vacíos, se generan.
+     * Corre después del relleno del desglose, del que se alimenta.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public void onApplicationReady() {
+        try {
+            if (hasRows("detections") && !hasRows(RollupGranularity.DAY.getTable())) {
+                logger.info("🗂️ Rollups vacíos, generándolos desde el desglose normalizado...");
+                rebuild();
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Error de acceso a datos generando rollups (no crítico): {}", e.getMessage());
+        } catch (RuntimeException e) {
+            logger.warn("Error de runtime generando rollups (no crítico): {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Regenera todos los rollups con INSERT ... SELECT ... GROUP BY sobre el desglose normalizado.
+     */
+    @Transactional
+    public void rebuild() {
+        requireBreakdown();
+        long start = System.nanoTime();
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            jdbcTemplate.update("DELETE FROM " + granularity.getTable());
+            insertFromBreakdown(granularity, "", "", new Object[0]);
+        }
+        lastRebuild = LocalDateTime.now();
+        logger.info("✅ Rollups regenerados en {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Genera los rollups de las tablas de staging (vacías) a partir del desglose de staging.
+     * No toca las tablas vivas; la recarga las intercambia después.
+     */
+    public void buildInto(String tableSuffix) {
+        long start = System.nanoTime();
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            insertFromBreakdown(granularity, tableSuffix, "", new Object[0]);
+        }
+        lastRebuild = LocalDateTime.now();
+        logger.info("🗂️ Rollups de staging generados en {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Regenera los días que cubren [fromDate, toDate] (p. ej. tras un borrado por retención).
+     */
+    @Transactional
+    public void rebuildRange(String fromDate, String toDate) {
+        if (!hasValidDate(fromDate) || !hasValidDate(toDate)) {
+            return;
+        }
+        requireBreakdown();
+        String from = RollupGranularity.DAY.bucketOf(fromDate);
+        String to = LocalDate.parse(toDate.substring(0, 10)).plusDays(1).atStartOfDay().format(TimeRange.DATE_FORMAT);
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            jdbcTemplate.update("DELETE FROM " + granularity.getTable() + " WHERE bucket_start >= ? AND bucket_start < ?",
+                from, to);
+            insertFromBreakdown(granularity, "", " AND d.date >= ? AND d.date < ?", new Object[] {from, to});
+        }
+        logger.debug("Rollups regenerados para [{}, {})", from, to);
+    }
+
+    /**
+     * Granularidad más fina cuyo número de buckets en el rango no supera max-points:
+     * los rangos largos se leen de los rollups por hora o por día.
+     */
+    public RollupGranularity chooseGranularity(TimeRange range) {
+        TimeRange bounded = boundedRange(range);
+        if (bounded == null) {
+            return RollupGranularity.MINUTE;
+        }
+        LocalDateTime from = LocalDateTime.parse(bounded.from(), TimeRange.DATE_FORMAT);
+        LocalDateTime to = LocalDateTime.parse(bounded.to(), TimeRange.DATE_FORMAT);
+        long spanMillis = Duration.between(from, to).toMillis();
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            long buckets = (spanMillis + granularity.getDuration().toMillis() - 1) / granularity.getDuration().toMillis();
+            if (buckets <= Math.max(1, maxPoints)) {
+                return granularity;
+            }
+        }
+        return RollupGranularity.DAY;
+    }
+
+    /**
+     * Lee los buckets del rango en orden cronológico. Sin carril, los totales salen de objects_total;
+     * con carril, de los conteos y la velocidad de ese carril.
+     */
+    public List<Bucket> readBuckets(TimeRange range, RollupGranularity granularity, String laneFilter) {
+        StringBuilder sql = new StringBuilder("SELECT bucket_start, lane, vehicle_type, count, speed_sum, speed_count FROM ")
+            .append(granularity.getTable());
+        List<Object> args = new ArrayList<>();
+        if (laneFilter == null) {
+            sql.append(" WHERE (lane = '").append(ALL).append("' OR vehicle_type = '").append(ALL).append("')");
+        } else {
+            sql.append(" WHERE (lane = ? OR (lane = '").append(ALL).append("' AND vehicle_type = '").append(ALL).append("'))");
+            args.add(laneFilter);
+        }
+        if (range.from() != null) {
+            sql.append(" AND bucket_start >= ?");
+            args.add(granularity.bucketOf(range.from()));
+        }
+        if (range.to() != null) {
+            sql.append(" AND bucket_start < ?");
+            args.add(range.to());
+        }
+        sql.append(" ORDER BY bucket_start");
+
+        Map<String, long[]> detections = new LinkedHashMap<>();
+        Map<String, Map<String, Long>> totals = new HashMap<>();
+        Map<String, Map<String, Double>> speeds = new HashMap<>();
+        jdbcTemplate.query(sql.toString(), rs -> {
+            String bucket = rs.getString("bucket_start");
+            String lane = rs.getString("lane");
+            String vehicleType = rs.getString("vehicle_type");
+            detections.computeIfAbsent(bucket, k -> new long[1]);
+            if (ALL.equals(lane) && ALL.equals(vehicleType)) {
+                detections.get(bucket)[0] += rs.getLong("count");
+            } else if (!ALL.equals(vehicleType)) {
+                totals.computeIfAbsent(bucket, k -> new HashMap<>()).merge(vehicleType, rs.getLong("count"), Long::sum);
+            } else {
+                long speedCount = rs.getLong("speed_count");
+                if (speedCount > 0) {
+                    double avg = Math.round(rs.getDouble("speed_sum") / speedCount * 100.0) / 100.0;
+                    speeds.computeIfAbsent(bucket, k -> new HashMap<>()).put(lane, avg);
+                }
+            }
+        }, args.toArray());
+
+        List<Bucket> buckets = new ArrayList<>(detections.size());
+        detections.forEach((bucket, count) -> buckets.add(new Bucket(bucket, count[0],
+            totals.getOrDefault(bucket, Map.of()), speeds.getOrDefault(bucket, Map.of()))));
+        return buckets;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            status.put(granularity.name().toLowerCase(Locale.ROOT) + "Rows",
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + granularity.getTable(), Long.class));
+        }
+        status.put("maxPoints", maxPoints);
+        status.put("lastRebuild", lastRebuild != null ? lastRebuild.toString() : null);
+        return status;
+    }
+
+    private TimeRange boundedRange(TimeRange range) {
+        if (range.from() != null && range.to() != null) {
+            return range;
+        }
+        Map<String, Object> bounds = jdbcTemplate.queryForMap(
+            "SELECT MIN(bucket_start) AS min_bucket, MAX(bucket_start) AS max_bucket FROM " + RollupGranularity.DAY.getTable());
+        if (bounds.get("min_bucket") == null) {
+            return null;
+        }
+        String from = range.from() != null ? range.from() : (String) bounds.get("min_bucket");
+        String to = range.to() != null ? range.to()
+            : LocalDate.parse(((String) bounds.get("max_bucket")).substring(0, 10)).plusDays(1)
+                .atStartOfDay().format(TimeRange.DATE_FORMAT);
+        return from.compareTo(to) < 0 ? new TimeRange(from, to) : null;
+    }
+
+    private void insertFromBreakdown(RollupGranularity granularity, String tableSuffix, String dateFilter, Object[] args) {
+        String table = granularity.getTable() + tableSuffix;
+        String bucket = granularity.sqlBucket("d.date");
+        String columns = " (bucket_start, lane, vehicle_type, count, speed_sum, speed_count) ";
+        String validDate = " WHERE LENGTH(d.date) >= " + DATE_LENGTH + dateFilter;
+
+        jdbcTemplate.update("INSERT INTO " + table + columns
+            + "SELECT " + bucket + ", '" + ALL + "', '" + ALL + "', COUNT(*), 0, 0 FROM detections" + tableSuffix + " d"
+            + validDate + " GROUP BY " + bucket, args);
+        jdbcTemplate.update("INSERT INTO " + table + columns
+            + "SELECT " + bucket + ", COALESCE(c.lane, '" + ALL + "'), c.vehicle_type, SUM(c.count), 0, 0 "
+            + "FROM detection_vehicle_count" + tableSuffix + " c JOIN detections" + tableSuffix + " d ON d.id = c.detection_id"
+            + validDate + " GROUP BY " + bucket + ", COALESCE(c.lane, '" + ALL + "'), c.vehicle_type", args);
+        jdbcTemplate.update("INSERT INTO " + table + columns
+            + "SELECT " + bucket + ", s.lane, '" + ALL + "', 0, SUM(s.speed), COUNT(*) "
+            + "FROM detection_lane_speed" + tableSuffix + " s JOIN detections" + tableSuffix + " d ON d.id = s.detection_id"
+            + validDate + " AND s.speed > 0 GROUP BY " + bucket + ", s.lane", args);
+    }
+
+    private void upsert(RollupGranularity granularity, Map<Key, Cell> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        // Orden fijo de filas: dos fuentes que escriben a la vez bloquean los mismos buckets en el mismo orden
+        List<Map.Entry<Key, Cell>> entries = new ArrayList<>(deltas.entrySet());
+        entries.sort(Map.Entry.comparingByKey(KEY_ORDER));
+        jdbcTemplate.batchUpdate(upsertSql(granularity.getTable()),
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(@NonNull PreparedStatement ps, int i) throws SQLException {
+                    Key key = entries.get(i).getKey();
+                    Cell cell = entries.get(i).getValue();
+                    ps.setString(1, key.bucket());
+                    ps.setString(2, key.lane());
+                    ps.setString(3, key.vehicleType());
+                    ps.setLong(4, cell.count);
+                    ps.setDouble(5, cell.speedSum);
+                    ps.setLong(6, cell.speedCount);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return entries.size();
+                }
+            });
+    }
+
+    /**
+     * MySQL: alias de fila (8.0.19+), VALUES(col) en ON DUPLICATE KEY UPDATE está obsoleto.
+     * H2: MERGE estándar sobre la misma clave única. Ambos reciben los mismos seis parámetros.
+     */
+    private String upsertSql(String table) {
+        if (isMySql()) {
+            return "INSERT INTO " + table
+                + " (bucket_start, lane, vehicle_type, count, speed_sum, speed_count) VALUES (?, ?, ?, ?, ?, ?) AS new"
+                + " ON DUPLICATE KEY UPDATE count = " + table + ".count + new.count,"
+                + " speed_sum = " + table + ".speed_sum + new.speed_sum,"
+                + " speed_count = " + table + ".speed_count + new.speed_count";
+        }
+        return "MERGE INTO " + table + " t USING (VALUES (CAST(? AS VARCHAR(19)), CAST(? AS VARCHAR(20)),"
+            + " CAST(? AS VARCHAR(30)), CAST(? AS BIGINT), CAST(? AS DOUBLE PRECISION), CAST(? AS BIGINT)))"
+            + " AS new (bucket_start, lane, vehicle_type, count, speed_sum, speed_count)"
+            + " ON t.bucket_start = new.bucket_start AND t.lane = new.lane AND t.vehicle_type = new.vehicle_type"
+            + " WHEN MATCHED THEN UPDATE SET count = t.count + new.count, speed_sum = t.speed_sum + new.speed_sum,"
+            + " speed_count = t.speed_count + new.speed_count"
+            + " WHEN NOT MATCHED THEN INSERT (bucket_start, lane, vehicle_type, count, speed_sum, speed_count)"
+            + " VALUES (new.bucket_start, new.lane, new.vehicle_type, new.count, new.speed_sum, new.speed_count)";
+    }
+
+    private boolean isMySql() {
+        if (mysql == null) {
+            String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            mysql = product != null && product.toLowerCase(Locale.ROOT).contains("mysql");
+        }
+        return mysql;
+    }
+
+    private Cell cell(Map<Key, Cell> deltas, String bucket, String lane, String vehicleType) {
+        return deltas.computeIfAbsent(new Key(bucket, lane, vehicleType), k -> new Cell());
+    }
+
+    private void requireBreakdown() {
+        if (!breakdownService.isBackfilled()) {
+            throw new IllegalStateException("El desglose normalizado aún no está completo");
+        }
+    }
+
+    private boolean hasValidDate(String date) {
+        return date != null && date.length() >= DATE_LENGTH;
+    }
+
+    private boolean hasRows(String table) {
+        return !jdbcTemplate.queryForList("SELECT 1 FROM " + table + " LIMIT 1").isEmpty();
+    }
+}
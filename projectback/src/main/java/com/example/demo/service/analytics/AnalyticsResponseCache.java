@@ -0,0 +1,157 @@
+package com.example.demo.service.analytics;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.service.event.DetectionsIngestedEvent;
+import com.example.demo.service.event.DetectionsReplacedEvent;
+
+/**
+ * Caché de respuestas de los endpoints de análisis, compartida por todos los clientes.
+ * Las entradas se identifican por método y parámetros, tienen TTL y un máximo de entradas (LRU),
+ * y se descartan completas cuando una ingesta o recarga confirma datos nuevos.
+ * Las consultas concurrentes sin entrada para la misma clave comparten un único cálculo (RequestCoalescer).
+ * Los resultados cacheados se comparten entre peticiones: no deben modificarse.
+ */
+@Component
+public class AnalyticsResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalyticsResponseCache.class);
+
+    @Value("${app.detections.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.detections.cache.max-entries:256}")
+    private int maxEntries;
+
+    @Value("${app.detections.cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    // Orden de acceso: el primero es el menos usado recientemente. Protegido por synchronized(entries)
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    // Cambia con cada invalidación; un cálculo iniciado antes no se guarda
+    private final AtomicLong dataVersion = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+
+    private record Key(String method, List<Object> params) {
+    }
+
+    private record Entry(Object value, long version, long expiresAtNanos) {
+    }
+
+    // Un cálculo solo se comparte con llamadas que ven la misma versión de los datos
+    private record Flight(Key key, long version) {
+    }
+
+    /**
+     * Devuelve el valor cacheado para método y parámetros o lo calcula con loader.
+     * Las llamadas simultáneas que no encuentran entrada comparten un solo cálculo.
+     * Si loader lanza una excepción no se guarda nada y la excepción se propaga.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String method, Supplier<T> loader, Object... params) {
+        Key key = new Key(method, Arrays.asList(params));
+        long version = dataVersion.get();
+        if (!enabled) {
+            return coalescer.execute(method, new Flight(key, version), loader);
+        }
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.version() == version && now - entry.expiresAtNanos() < 0) {
+                hits.incrementAndGet();
+                return (T) entry.value();
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+        }
+
+        misses.incrementAndGet();
+        return coalescer.execute(method, new Flight(key, version), () -> {
+            T value = loader.get();
+            store(key, value, version);
+            return value;
+        });
+    }
+
+    private void store(Key key, Object value, long version) {
+        synchronized (entries) {
+            // Los datos cambiaron mientras se calculaba: el resultado ya nació viejo
+            if (dataVersion.get() != version) {
+                return;
+            }
+            entries.put(key, new Entry(value, version, System.nanoTime() + ttlSeconds * 1_000_000_000L));
+            while (entries.size() > Math.max(1, maxEntries)) {
+                var eldest = entries.entrySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Se ejecuta después de que DetectionAggregateStore aplicó el cambio, así lo que se
+     * calcule a partir de aquí ya ve los datos nuevos, y antes de DataVersionTracker.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE - 1)
+    public void onDetectionsIngested(DetectionsIngestedEvent event) {
+        invalidate("ingesta de " + event.detections().size() + " detecciones");
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE - 1)
+    public void onDetectionsReplaced(DetectionsReplacedEvent event) {
+        invalidate(event.reason());
+    }
+
+    public void invalidate(String reason) {
+        int dropped;
+        synchronized (entries) {
+            dataVersion.incrementAndGet();
+            dropped = entries.size();
+            entries.clear();
+        }
+        invalidations.incrementAndGet();
+        logger.debug("Caché de análisis invalidada ({}): {} entradas descartadas", reason, dropped);
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        synchronized (entries) {
+            status.put("entries", entries.size());
+        }
+        status.put("maxEntries", maxEntries);
+        status.put("ttlSeconds", ttlSeconds);
+        status.put("dataVersion", dataVersion.get());
+        status.put("hits", hits.get());
+        status.put("misses", misses.get());
+        status.put("evictions", evictions.get());
+        status.put("invalidations", invalidations.get());
+        status.put("inFlight", coalescer.getInFlight());
+        status.put("coalescing", coalescer.getStats());
+        return status;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.demo.service.analytics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Asigna códigos enteros densos (0, 1, 2...) a valores repetidos como carriles, tipos de vehículo
+ * u horas, para acumular en arreglos primitivos indexados por código.
+ * No es thread-safe: pertenece a un único acumulador.
+ */
+public final class CodeDictionary {
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    public int intern(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+
+    public String value(int code) {
+        return values.get(code);
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.demo.service.analytics;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Secciones del endpoint /dashboard. Las de agregados comparten un único snapshot;
+ * las de evolución leen las series temporales. Solo se calculan las pedidas en fields.
+ */
+public enum DashboardSection {
+
+    VOLUME("volume", true),
+    LANES("lanes", true),
+    HOURLY("hourly", true),
+    SPEEDS("speeds", true),
+    SPEED_STATS("speedStats", true),
+    BOTTLENECKS("bottlenecks", true),
+    DOMINANCE("dominance", true),
+    EVOLUTION("evolution", false),
+    SPEED_EVOLUTION("speedEvolution", false);
+
+    private final String key;
+    private final boolean aggregate;
+
+    DashboardSection(String key, boolean aggregate) {
+        this.key = key;
+        this.aggregate = aggregate;
+    }
+
+    /** Nombre de la sección en fields y en la respuesta. */
+    public String getKey() {
+        return key;
+    }
+
+    public boolean isAggregate() {
+        return aggregate;
+    }
+
+    /**
+     * Parsea "volume,lanes,evolution"; vacío o null equivale a todas las secciones.
+     */
+    public static Set<DashboardSection> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return EnumSet.allOf(DashboardSection.class);
+        }
+        Set<DashboardSection> sections = EnumSet.noneOf(DashboardSection.class);
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!name.isEmpty()) {
+                sections.add(fromKey(name));
+            }
+        }
+        if (sections.isEmpty()) {
+            throw new IllegalArgumentException("fields no contiene ninguna sección");
+        }
+        return sections;
+    }
+
+    public static DashboardSection fromKey(String key) {
+        for (DashboardSection section : values()) {
+            if (section.key.equalsIgnoreCase(key)) {
+                return section;
+            }
+        }
+        throw new IllegalArgumentException("Sección no soportada: " + key
+            + " (volume, lanes, hourly, speeds, speedStats, bottlenecks, dominance, evolution, speedEvolution)");
+    }
+}
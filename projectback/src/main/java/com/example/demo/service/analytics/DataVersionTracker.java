@@ -0,0 +1,62 @@
+package com.example.demo.service.analytics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.service.event.DetectionsIngestedEvent;
+import com.example.demo.service.event.DetectionsReplacedEvent;
+
+/**
+ * Versión monótona de los datos de detecciones, incrementada con cada ingesta o recarga confirmada.
+ * Se consulta en memoria (sin tocar la base de datos) para responder GET condicionales.
+ * El epoch distingue arranques: tras reiniciar, una versión repetida no coincide con un ETag viejo.
+ */
+@Component
+public class DataVersionTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataVersionTracker.class);
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong();
+    private volatile long lastModifiedMillis = System.currentTimeMillis();
+
+    /**
+     * Último listener: cuando la versión cambia, los agregados y la caché de respuestas
+     * ya reflejan los datos nuevos, así un ETag nuevo nunca acompaña a un cuerpo viejo.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onDetectionsIngested(DetectionsIngestedEvent event) {
+        bump();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onDetectionsReplaced(DetectionsReplacedEvent event) {
+        bump();
+    }
+
+    private void bump() {
+        lastModifiedMillis = System.currentTimeMillis();
+        long current = version.incrementAndGet();
+        logger.debug("Versión de datos: {}", current);
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public String getEpoch() {
+        return epoch;
+    }
+
+    public long getLastModifiedMillis() {
+        return lastModifiedMillis;
+    }
+}
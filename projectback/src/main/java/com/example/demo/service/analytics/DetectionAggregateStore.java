@@ -0,0 +1,202 @@
+package com.example.demo.service.analytics;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.entity.Detection;
+import com.example.demo.service.DetectionDatasetLock;
+import com.example.demo.service.event.DetectionsIngestedEvent;
+import com.example.demo.service.event.DetectionsReplacedEvent;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Agregados materializados en memoria: totales por tipo, conteos por carril y tipo,
+ * sumas/conteos de velocidad por carril y buckets por hora.
+ * Se construye desde la base de datos al arrancar, se actualiza con cada ingesta confirmada
+ * y se reconstruye cuando el conjunto de datos cambia en bloque.
+ * Las lecturas cuestan O(carriles × tipos), independientes del número de filas.
+ */
+@Component
+@RequiredArgsConstructor
+public class DetectionAggregateStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectionAggregateStore.class);
+
+    private final TrafficAnalyticsEngine analyticsEngine;
+    private final DetectionDatasetLock datasetLock;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    // Protegido por lock
+    private TrafficAggregator aggregator;
+
+    private volatile boolean ready;
+    private volatile LocalDateTime lastRebuild;
+    private volatile long lastRebuildMillis;
+    private volatile long rebuildCount;
+    private volatile long appliedDetections;
+
+    /** Después del relleno del desglose normalizado (DetectionBreakdownService). */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onApplicationReady() {
+        rebuildSafely();
+    }
+
+    // Antes que AnalyticsResponseCache, que invalida cuando los agregados ya están al día
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onDetectionsIngested(DetectionsIngestedEvent event) {
+        apply(event.detections());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onDetectionsReplaced(DetectionsReplacedEvent event) {
+        if (event.aggregates() != null) {
+            install(event.aggregates());
+            logger.info("🔄 Agregados en memoria reemplazados ({}): {} detecciones",
+                event.reason(), event.aggregates().getDetectionCount());
+            return;
+        }
+        logger.info("🔄 Reconstruyendo agregados en memoria ({})", event.reason());
+        // Hasta terminar la reconstrucción las lecturas vuelven al recorrido completo
+        ready = false;
+        rebuildSafely();
+    }
+
+    /**
+     * Suma detecciones recién confirmadas. Cada evento llega una sola vez, después del commit y con el
+     * lock de lectura del conjunto tomado; rebuild toma el de escritura, así que nunca se cruza con
+     * una ingesta a medio confirmar y no hace falta descartar ids ya contados (que con varias fuentes
+     * escribiendo a la vez no se confirman en orden).
+     */
+    public void apply(List<Detection> detections) {
+        if (detections == null || detections.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (aggregator != null) {
+                detections.forEach(aggregator::accept);
+                appliedDetections += detections.size();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Recalcula desde la base de datos y reemplaza los agregados de forma atómica para los lectores.
+     * Corre con el lock de escritura del conjunto: lo leído incluye exactamente las ingestas ya aplicadas.
+     */
+    public void rebuild() {
+        // Primero el lock del conjunto: una recarga que ya lo tiene dispara rebuild desde su propio hilo
+        datasetLock.writeLock().lock();
+        rebuildLock.lock();
+        try {
+            long start = System.nanoTime();
+            TrafficAggregator fresh = analyticsEngine.aggregateTotals();
+            lock.writeLock().lock();
+            try {
+                aggregator = fresh;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            lastRebuild = LocalDateTime.now();
+            lastRebuildMillis = (System.nanoTime() - start) / 1_000_000;
+            rebuildCount++;
+            logger.info("✅ Agregados en memoria listos: {} detecciones en {} ms",
+                fresh.getDetectionCount(), lastRebuildMillis);
+        } finally {
+            rebuildLock.unlock();
+            datasetLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reemplaza los agregados por otros ya calculados, sin recorrer la base de datos.
+     * Los lectores pasan del conjunto anterior al nuevo sin ver un estado intermedio.
+     */
+    public void install(TrafficAggregator fresh) {
+        rebuildLock.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                aggregator = fresh;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            lastRebuild = LocalDateTime.now();
+            lastRebuildMillis = 0;
+            rebuildCount++;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    public void rebuildSafely() {
+        try {
+            rebuild();
+        } catch (DataAccessException e) {
+            logger.warn("Error de acceso a datos reconstruyendo agregados (no crítico): {}", e.getMessage());
+        } catch (RuntimeException e) {
+            logger.warn("Error de runtime reconstruyendo agregados (no crítico): {}", e.getMessage());
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Copia consistente de los agregados (sin series temporales).
+     */
+    public TrafficSnapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            if (aggregator == null) {
+                throw new IllegalStateException("Los agregados en memoria aún no están construidos");
+            }
+            return aggregator.snapshot();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("ready", ready);
+        lock.readLock().lock();
+        try {
+            status.put("detections", aggregator != null ? aggregator.getDetectionCount() : 0L);
+            status.put("maxDetectionId", aggregator != null ? aggregator.getMaxDetectionId() : 0L);
+        } finally {
+            lock.readLock().unlock();
+        }
+        status.put("appliedDetections", appliedDetections);
+        status.put("rebuildCount", rebuildCount);
+        status.put("lastRebuild", lastRebuild != null ? lastRebuild.toString() : null);
+        status.put("lastRebuildMillis", lastRebuildMillis);
+        return status;
+    }
+}
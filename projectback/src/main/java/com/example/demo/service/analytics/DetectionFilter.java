@@ -0,0 +1,33 @@
+package com.example.demo.service.analytics;
+
+import com.example.demo.entity.Detection;
+
+/**
+ * Filtros de los endpoints de análisis: rango de tiempo, carril, tipo de vehículo y fuente (cámara).
+ * Todos son opcionales; sin filtros se usan los agregados globales en memoria.
+ */
+public record DetectionFilter(TimeRange range, String lane, String vehicleType, String source) {
+
+    public static final DetectionFilter NONE = new DetectionFilter(new TimeRange(null, null), null, null, null);
+
+    /**
+     * Lanza IllegalArgumentException si el rango no es válido.
+     */
+    public static DetectionFilter of(String from, String to, String lane, String vehicleType, String source) {
+        return new DetectionFilter(TimeRange.parse(from, to), blankToNull(lane), blankToNull(vehicleType),
+            blankToNull(source));
+    }
+
+    public boolean isEmpty() {
+        return range.isUnbounded() && lane == null && vehicleType == null && source == null;
+    }
+
+    /** Las detecciones sin source_id, anteriores a la columna, son de la fuente por defecto. */
+    public boolean matchesSource(String sourceId) {
+        return source == null || source.equals(sourceId != null ? sourceId : Detection.DEFAULT_SOURCE);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
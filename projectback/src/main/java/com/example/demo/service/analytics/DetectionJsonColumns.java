@@ -0,0 +1,58 @@
+package com.example.demo.service.analytics;
+
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.demo.entity.Detection;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Lectura tipada de las columnas JSON de una detección.
+ * Devuelve null cuando la columna está vacía ("{}", "null", "") o no se puede parsear.
+ */
+public final class DetectionJsonColumns {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectionJsonColumns.class);
+
+    private static final TypeReference<Map<String, Integer>> COUNTS_TYPE = new TypeReference<>() {};
+    private static final TypeReference<Map<String, Map<String, Integer>>> LANES_TYPE = new TypeReference<>() {};
+    private static final TypeReference<Map<String, Double>> SPEEDS_TYPE = new TypeReference<>() {};
+
+    private DetectionJsonColumns() {
+    }
+
+    public static Map<String, Integer> objectsTotal(ObjectMapper objectMapper, Detection detection) {
+        return parse(objectMapper, detection.getObjectsTotal(), COUNTS_TYPE);
+    }
+
+    public static Map<String, Map<String, Integer>> objectsByLane(ObjectMapper objectMapper, Detection detection) {
+        return parse(objectMapper, detection.getObjectsByLane(), LANES_TYPE);
+    }
+
+    public static Map<String, Double> avgSpeedByLane(ObjectMapper objectMapper, Detection detection) {
+        return parse(objectMapper, detection.getAvgSpeedByLane(), SPEEDS_TYPE);
+    }
+
+    private static <T> T parse(ObjectMapper objectMapper, String json, TypeReference<T> typeRef) {
+        if (!isValidJson(json)) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, typeRef);
+        } catch (JsonProcessingException e) {
+            logger.debug("  Error parsing JSON: {}", e.getMessage());
+            return null;
+        } catch (RuntimeException e) {
+            logger.debug("  Error de runtime parsing JSON: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isValidJson(String json) {
+        return json != null && !json.trim().isEmpty() && !json.equals("{}") && !json.equals("null");
+    }
+}
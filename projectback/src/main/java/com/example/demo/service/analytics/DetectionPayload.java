@@ -0,0 +1,268 @@
+package com.example.demo.service.analytics;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.demo.entity.Detection;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Contenido de una detección decodificado una sola vez: conteos por tipo, conteos por carril y tipo
+ * y velocidad por carril en arreglos primitivos indexados por posición.
+ * Se guarda en detections.payload con un formato binario compacto, así el camino de lectura
+ * recorre valores tipados sin parsear las columnas JSON.
+ * Un conteo ausente vale ABSENT y una velocidad ausente NaN, para distinguirlos de un 0 real.
+ */
+public final class DetectionPayload {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectionPayload.class);
+
+    public static final int ABSENT = -1;
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final int FLAG_COUNTED = 1;
+    private static final int FLAG_SPEED = 2;
+
+    private final String[] vehicleTypes;
+    private final int[] totals;
+    private final String[] lanes;
+    private final boolean[] laneCounted;
+    private final int[] laneCounts;
+    private final double[] laneSpeeds;
+
+    private DetectionPayload(String[] vehicleTypes, int[] totals, String[] lanes,
+            boolean[] laneCounted, int[] laneCounts, double[] laneSpeeds) {
+        this.vehicleTypes = vehicleTypes;
+        this.totals = totals;
+        this.lanes = lanes;
+        this.laneCounted = laneCounted;
+        this.laneCounts = laneCounts;
+        this.laneSpeeds = laneSpeeds;
+    }
+
+    /**
+     * Construye el payload desde los mapas de detector.py (objects_total, objects_by_lane, avg_speed_by_lane).
+     * Cualquiera puede ser null.
+     */
+    public static DetectionPayload fromMaps(Map<String, Integer> objectsTotal,
+            Map<String, Map<String, Integer>> objectsByLane, Map<String, Double> avgSpeedByLane) {
+        Set<String> typeSet = new LinkedHashSet<>();
+        Set<String> laneSet = new LinkedHashSet<>();
+        if (objectsTotal != null) {
+            typeSet.addAll(objectsTotal.keySet());
+        }
+        if (objectsByLane != null) {
+            objectsByLane.forEach((lane, vehicles) -> {
+                laneSet.add(lane);
+                if (vehicles != null) {
+                    typeSet.addAll(vehicles.keySet());
+                }
+            });
+        }
+        if (avgSpeedByLane != null) {
+            laneSet.addAll(avgSpeedByLane.keySet());
+        }
+
+        String[] types = typeSet.toArray(String[]::new);
+        String[] laneIds = laneSet.toArray(String[]::new);
+        int[] totals = new int[types.length];
+        boolean[] counted = new boolean[laneIds.length];
+        int[] counts = new int[laneIds.length * types.length];
+        double[] speeds = new double[laneIds.length];
+        Arrays.fill(totals, ABSENT);
+        Arrays.fill(counts, ABSENT);
+        Arrays.fill(speeds, Double.NaN);
+
+        for (int t = 0; t < types.length; t++) {
+            Integer total = objectsTotal != null ? objectsTotal.get(types[t]) : null;
+            if (total != null) {
+                totals[t] = total;
+            }
+        }
+        for (int l = 0; l < laneIds.length; l++) {
+            Map<String, Integer> vehicles = objectsByLane != null ? objectsByLane.get(laneIds[l]) : null;
+            if (vehicles != null) {
+                counted[l] = true;
+                for (int t = 0; t < types.length; t++) {
+                    Integer count = vehicles.get(types[t]);
+                    if (count != null) {
+                        counts[l * types.length + t] = count;
+                    }
+                }
+            }
+            Double speed = avgSpeedByLane != null ? avgSpeedByLane.get(laneIds[l]) : null;
+            if (speed != null) {
+                speeds[l] = speed;
+            }
+        }
+        return new DetectionPayload(types, totals, laneIds, counted, counts, speeds);
+    }
+
+    /**
+     * Payload de una detección: se decodifica la columna binaria y, si falta (filas previas
+     * al relleno) o es inválida, se parsean las columnas JSON.
+     */
+    public static DetectionPayload of(ObjectMapper objectMapper, Detection detection) {
+        if (detection.getPayload() != null) {
+            try {
+                return decode(detection.getPayload());
+            } catch (IllegalArgumentException e) {
+                logger.debug("Payload inválido en la detección {}: {}", detection.getId(), e.getMessage());
+            }
+        }
+        return fromMaps(DetectionJsonColumns.objectsTotal(objectMapper, detection),
+            DetectionJsonColumns.objectsByLane(objectMapper, detection),
+            DetectionJsonColumns.avgSpeedByLane(objectMapper, detection));
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + 8 * (vehicleTypes.length + lanes.length * 4));
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeShort(vehicleTypes.length);
+            for (String type : vehicleTypes) {
+                out.writeUTF(type);
+            }
+            out.writeShort(lanes.length);
+            for (String lane : lanes) {
+                out.writeUTF(lane);
+            }
+            for (int total : totals) {
+                out.writeInt(total);
+            }
+            for (int l = 0; l < lanes.length; l++) {
+                boolean hasSpeed = !Double.isNaN(laneSpeeds[l]);
+                out.writeByte((laneCounted[l] ? FLAG_COUNTED : 0) | (hasSpeed ? FLAG_SPEED : 0));
+                if (laneCounted[l]) {
+                    for (int t = 0; t < vehicleTypes.length; t++) {
+                        out.writeInt(laneCounts[l * vehicleTypes.length + t]);
+                    }
+                }
+                if (hasSpeed) {
+                    out.writeDouble(laneSpeeds[l]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error codificando payload", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static DetectionPayload decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Versión de payload no soportada: " + version);
+            }
+            String[] types = new String[in.readUnsignedShort()];
+            for (int t = 0; t < types.length; t++) {
+                types[t] = in.readUTF();
+            }
+            String[] laneIds = new String[in.readUnsignedShort()];
+            for (int l = 0; l < laneIds.length; l++) {
+                laneIds[l] = in.readUTF();
+            }
+            int[] totals = new int[types.length];
+            for (int t = 0; t < types.length; t++) {
+                totals[t] = in.readInt();
+            }
+            boolean[] counted = new boolean[laneIds.length];
+            int[] counts = new int[laneIds.length * types.length];
+            double[] speeds = new double[laneIds.length];
+            Arrays.fill(counts, ABSENT);
+            Arrays.fill(speeds, Double.NaN);
+            for (int l = 0; l < laneIds.length; l++) {
+                int flags = in.readUnsignedByte();
+                if ((flags & FLAG_COUNTED) != 0) {
+                    counted[l] = true;
+                    for (int t = 0; t < types.length; t++) {
+                        counts[l * types.length + t] = in.readInt();
+                    }
+                }
+                if ((flags & FLAG_SPEED) != 0) {
+                    speeds[l] = in.readDouble();
+                }
+            }
+            return new DetectionPayload(types, totals, laneIds, counted, counts, speeds);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Payload truncado o corrupto", e);
+        }
+    }
+
+    public int vehicleTypeCount() {
+        return vehicleTypes.length;
+    }
+
+    public String vehicleType(int type) {
+        return vehicleTypes[type];
+    }
+
+    /** Conteo de objects_total para el tipo, o ABSENT. */
+    public int total(int type) {
+        return totals[type];
+    }
+
+    public int total(String vehicleType) {
+        int type = indexOf(vehicleTypes, vehicleType);
+        return type >= 0 ? totals[type] : ABSENT;
+    }
+
+    public int laneCount() {
+        return lanes.length;
+    }
+
+    public String lane(int lane) {
+        return lanes[lane];
+    }
+
+    /** true si el carril aparece en objects_by_lane. */
+    public boolean hasLaneCounts(int lane) {
+        return laneCounted[lane];
+    }
+
+    /** Conteo del tipo en el carril, o ABSENT. */
+    public int laneVehicleCount(int lane, int type) {
+        return laneCounts[lane * vehicleTypes.length + type];
+    }
+
+    public int laneVehicleCount(String laneId, String vehicleType) {
+        int lane = indexOf(lanes, laneId);
+        int type = indexOf(vehicleTypes, vehicleType);
+        return lane >= 0 && type >= 0 ? laneCounts[lane * vehicleTypes.length + type] : ABSENT;
+    }
+
+    /** Velocidad media del carril, o NaN. */
+    public double laneSpeed(int lane) {
+        return laneSpeeds[lane];
+    }
+
+    public double laneSpeed(String laneId) {
+        int lane = indexOf(lanes, laneId);
+        return lane >= 0 ? laneSpeeds[lane] : Double.NaN;
+    }
+
+    public int laneIndex(String laneId) {
+        return indexOf(lanes, laneId);
+    }
+
+    // Hay pocos carriles y tipos: la búsqueda lineal es más barata que un mapa
+    private static int indexOf(String[] values, String value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].equals(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
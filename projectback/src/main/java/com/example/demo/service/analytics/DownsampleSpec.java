@@ -0,0 +1,63 @@
+package com.example.demo.service.analytics;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reducción pedida para las series de evolución: LTTB con maxPoints o buckets de tiempo fijos.
+ * Sin ninguno de los dos las series se devuelven completas.
+ */
+public record DownsampleSpec(Integer maxPoints, Duration bucket, TimeBucketDownsampler.Aggregation aggregation) {
+
+    public static final DownsampleSpec NONE = new DownsampleSpec(null, null, null);
+
+    /**
+     * Lanza IllegalArgumentException si los parámetros no son válidos o se combinan maxPoints y bucket.
+     */
+    public static DownsampleSpec of(Integer maxPoints, String bucket, String aggregation) {
+        boolean hasBucket = bucket != null && !bucket.isBlank();
+        if (maxPoints != null && hasBucket) {
+            throw new IllegalArgumentException("Usar maxPoints o bucket, no ambos");
+        }
+        if (maxPoints != null && maxPoints < 3) {
+            throw new IllegalArgumentException("maxPoints debe ser al menos 3");
+        }
+        if (!hasBucket && aggregation != null) {
+            throw new IllegalArgumentException("agg solo aplica junto con bucket");
+        }
+        return new DownsampleSpec(maxPoints,
+            hasBucket ? TimeBucketDownsampler.parseBucket(bucket) : null,
+            aggregation != null ? TimeBucketDownsampler.Aggregation.fromName(aggregation) : null);
+    }
+
+    public boolean isNone() {
+        return maxPoints == null && bucket == null;
+    }
+
+    /**
+     * @param expectedPoints puntos que tendrá el recorrido (LTTB fija sus buckets con este valor)
+     * @param defaultAggregation agregación si no se indicó (sum para conteos, avg para velocidades)
+     */
+    public SeriesDownsampler create(long expectedPoints, TimeBucketDownsampler.Aggregation defaultAggregation) {
+        if (maxPoints != null) {
+            return new LttbDownsampler(maxPoints, expectedPoints);
+        }
+        return new TimeBucketDownsampler(bucket, aggregation != null ? aggregation : defaultAggregation);
+    }
+
+    /** Descripción que acompaña a la respuesta. */
+    public Map<String, Object> describe(TimeBucketDownsampler.Aggregation defaultAggregation) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        if (maxPoints != null) {
+            description.put("method", "lttb");
+            description.put("maxPoints", maxPoints);
+        } else {
+            description.put("method", "bucket");
+            description.put("bucketSeconds", bucket.toSeconds());
+            description.put("agg", (aggregation != null ? aggregation : defaultAggregation).name().toLowerCase(Locale.ROOT));
+        }
+        return description;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.demo.service.analytics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Incremento compacto de los agregados para un suscriptor de /stream: conteos por tipo,
+ * conteos por carril y tipo, y conteo/suma de velocidades por carril de las detecciones nuevas.
+ * Respeta el filtro de carril y tipo del suscriptor y se puede combinar con el incremento siguiente
+ * cuando el cliente va atrasado. No es thread-safe.
+ */
+public final class LiveDelta {
+
+    private long detections;
+    private long maxDetectionId;
+    private final Map<String, Long> totals = new TreeMap<>();
+    private final Map<String, Map<String, Long>> laneCounts = new TreeMap<>();
+    private final Map<String, double[]> laneSpeeds = new TreeMap<>();
+
+    /**
+     * Suma una detección. Con filtro de carril los totales son los del carril, igual que en
+     * las consultas filtradas. Devuelve false si la detección no aporta nada al filtro.
+     */
+    public boolean add(long detectionId, DetectionPayload payload, DetectionFilter filter) {
+        boolean matched = false;
+        for (int l = 0; l < payload.laneCount(); l++) {
+            String lane = payload.lane(l);
+            if (filter.lane() != null && !filter.lane().equals(lane)) {
+                continue;
+            }
+            if (payload.hasLaneCounts(l)) {
+                for (int t = 0; t < payload.vehicleTypeCount(); t++) {
+                    int count = payload.laneVehicleCount(l, t);
+                    String type = payload.vehicleType(t);
+                    if (count > 0 && matchesType(filter, type)) {
+                        laneCounts.computeIfAbsent(lane, k -> new TreeMap<>()).merge(type, (long) count, Long::sum);
+                        if (filter.lane() != null) {
+                            totals.merge(type, (long) count, Long::sum);
+                        }
+                        matched = true;
+                    }
+                }
+            }
+            double speed = payload.laneSpeed(l);
+            if (speed > 0) {
+                double[] speeds = laneSpeeds.computeIfAbsent(lane, k -> new double[2]);
+                speeds[0]++;
+                speeds[1] += speed;
+                matched = true;
+            }
+        }
+        if (filter.lane() == null) {
+            for (int t = 0; t < payload.vehicleTypeCount(); t++) {
+                int total = payload.total(t);
+                String type = payload.vehicleType(t);
+                if (total > 0 && matchesType(filter, type)) {
+                    totals.merge(type, (long) total, Long::sum);
+                    matched = true;
+                }
+            }
+        }
+        if (matched) {
+            detections++;
+            maxDetectionId = Math.max(maxDetectionId, detectionId);
+        }
+        return matched;
+    }
+
+    public void merge(LiveDelta other) {
+        detections += other.detections;
+        maxDetectionId = Math.max(maxDetectionId, other.maxDetectionId);
+        other.totals.forEach((type, count) -> totals.merge(type, count, Long::sum));
+        other.laneCounts.forEach((lane, counts) -> {
+            Map<String, Long> target = laneCounts.computeIfAbsent(lane, k -> new TreeMap<>());
+            counts.forEach((type, count) -> target.merge(type, count, Long::sum));
+        });
+        other.laneSpeeds.forEach((lane, speeds) -> {
+            double[] target = laneSpeeds.computeIfAbsent(lane, k -> new double[2]);
+            target[0] += speeds[0];
+            target[1] += speeds[1];
+        });
+    }
+
+    public boolean isEmpty() {
+        return detections == 0;
+    }
+
+    public long getDetections() {
+        return detections;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> speeds = new TreeMap<>();
+        laneSpeeds.forEach((lane, values) -> {
+            Map<String, Object> speed = new LinkedHashMap<>();
+            speed.put("count", (long) values[0]);
+            speed.put("sum", Math.round(values[1] * 100.0) / 100.0);
+            speeds.put(lane, speed);
+        });
+        Map<String, Object> delta = new LinkedHashMap<>();
+        delta.put("detections", detections);
+        delta.put("maxDetectionId", maxDetectionId);
+        delta.put("totals", totals);
+        delta.put("laneCounts", laneCounts);
+        delta.put("laneSpeeds", speeds);
+        return delta;
+    }
+
+    private static boolean matchesType(DetectionFilter filter, String type) {
+        return filter.vehicleType() == null || filter.vehicleType().equals(type);
+    }
+}
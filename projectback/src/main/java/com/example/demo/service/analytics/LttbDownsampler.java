@@ -0,0 +1,138 @@
+package com.example.demo.service.analytics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Largest-Triangle-Three-Buckets en streaming: conserva la forma de la línea con maxPoints puntos.
+ * Necesita conocer de antemano la cantidad de puntos para fijar los buckets; solo mantiene en memoria
+ * el bucket a decidir y el siguiente (O(sourcePoints / maxPoints)).
+ * El eje x es la posición del punto (el detector muestrea a intervalo fijo) y el área del triángulo
+ * se suma entre todas las series, así todas comparten los mismos timestamps.
+ */
+public class LttbDownsampler implements SeriesDownsampler {
+
+    private final int maxPoints;
+    private final double bucketSize;
+    private final boolean passThrough;
+
+    private final List<String> timestamps = new ArrayList<>();
+    private final List<double[]> points = new ArrayList<>();
+
+    private long index;
+    private Point selected;
+    private Point last;
+    // deciding solo existe junto a un filling con al menos un punto
+    private List<Point> deciding;
+    private List<Point> filling = new ArrayList<>();
+    private long fillingBucket;
+
+    private record Point(long x, String timestamp, double[] values) {
+    }
+
+    public LttbDownsampler(int maxPoints, long expectedPoints) {
+        if (maxPoints < 3) {
+            throw new IllegalArgumentException("maxPoints debe ser al menos 3");
+        }
+        this.maxPoints = maxPoints;
+        this.passThrough = expectedPoints <= maxPoints;
+        this.bucketSize = passThrough ? 1 : (double) (expectedPoints - 2) / (maxPoints - 2);
+    }
+
+    @Override
+    public void accept(String timestamp, long timeMs, double[] values) {
+        Point point = new Point(index++, timestamp, values.clone());
+        if (passThrough) {
+            emit(point);
+            return;
+        }
+        if (selected == null) {
+            // El primer punto siempre se conserva
+            selected = point;
+            emit(point);
+            return;
+        }
+        // El último punto se decide en finish(); hasta entonces cada punto nuevo empuja al anterior
+        if (last != null) {
+            place(last);
+        }
+        last = point;
+    }
+
+    @Override
+    public Result finish() {
+        if (!passThrough && last != null) {
+            if (deciding != null) {
+                selectFrom(deciding, average(filling), centerX(filling));
+            }
+            if (!filling.isEmpty()) {
+                selectFrom(filling, last.values(), last.x());
+            }
+            emit(last);
+        }
+        return new Result(timestamps, points, index);
+    }
+
+    private void place(Point point) {
+        long bucket = Math.min(maxPoints - 3, (long) ((point.x() - 1) / bucketSize));
+        if (bucket != fillingBucket && !filling.isEmpty()) {
+            if (deciding != null) {
+                selectFrom(deciding, average(filling), centerX(filling));
+            }
+            deciding = filling;
+            filling = new ArrayList<>();
+        }
+        fillingBucket = bucket;
+        filling.add(point);
+    }
+
+    /**
+     * Elige el punto del bucket que forma el triángulo de mayor área con el último elegido
+     * y el promedio del bucket siguiente.
+     */
+    private void selectFrom(List<Point> bucket, double[] nextAverage, double nextX) {
+        Point best = null;
+        double bestArea = -1;
+        for (Point candidate : bucket) {
+            double area = 0;
+            for (int i = 0; i < candidate.values().length; i++) {
+                double ay = valueOf(selected.values()[i]);
+                double by = valueOf(candidate.values()[i]);
+                double cy = valueOf(nextAverage[i]);
+                area += Math.abs((selected.x() - nextX) * (by - ay) - (selected.x() - candidate.x()) * (cy - ay));
+            }
+            if (area > bestArea) {
+                bestArea = area;
+                best = candidate;
+            }
+        }
+        selected = best;
+        emit(best);
+    }
+
+    private double[] average(List<Point> bucket) {
+        double[] sums = new double[bucket.get(0).values().length];
+        for (Point point : bucket) {
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += valueOf(point.values()[i]);
+            }
+        }
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] /= bucket.size();
+        }
+        return sums;
+    }
+
+    private double centerX(List<Point> bucket) {
+        return (bucket.get(0).x() + bucket.get(bucket.size() - 1).x()) / 2.0;
+    }
+
+    private void emit(Point point) {
+        timestamps.add(point.timestamp());
+        points.add(point.values());
+    }
+
+    private static double valueOf(double value) {
+        return Double.isNaN(value) ? 0.0 : value;
+    }
+}
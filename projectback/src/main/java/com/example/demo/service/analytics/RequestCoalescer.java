@@ -0,0 +1,86 @@
+package com.example.demo.service.analytics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight: las llamadas concurrentes con la misma clave comparten un único cálculo en curso
+ * (CompletableFuture). El primero ejecuta el loader en su propio hilo y los demás esperan su resultado,
+ * así N peticiones idénticas simultáneas ocupan una sola conexión del pool.
+ * Las métricas se agrupan por nombre (método) para no crecer con cada combinación de parámetros.
+ */
+public final class RequestCoalescer {
+
+    private final Map<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    private static final class Counters {
+        final LongAdder executions = new LongAdder();
+        final LongAdder coalesced = new LongAdder();
+        final LongAdder failures = new LongAdder();
+    }
+
+    /**
+     * Ejecuta loader o se une al cálculo en curso para la misma clave.
+     * Si el cálculo falla, todos los que esperaban reciben la misma excepción.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String name, Object key, Supplier<T> loader) {
+        Counters stats = counters.computeIfAbsent(name, n -> new Counters());
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            stats.coalesced.increment();
+            return (T) await(existing);
+        }
+
+        stats.executions.increment();
+        try {
+            T value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            stats.failures.increment();
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> byName = new TreeMap<>();
+        counters.forEach((name, stats) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("executions", stats.executions.sum());
+            entry.put("coalesced", stats.coalesced.sum());
+            entry.put("failures", stats.failures.sum());
+            byName.put(name, entry);
+        });
+        return byName;
+    }
+}
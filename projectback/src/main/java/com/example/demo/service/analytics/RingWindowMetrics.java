@@ -0,0 +1,226 @@
+package com.example.demo.service.analytics;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Métricas de ventanas deslizantes sobre un anillo fijo de buckets de un segundo.
+ * Cada ventana configurada (p. ej. 60, 300 y 900 s) mantiene sus sumas corrientes: al avanzar
+ * el reloj se restan los segundos que salen, así agregar una detección y leer una ventana
+ * cuestan O(1) respecto del número de detecciones (O(carriles + tipos) para armar el resultado).
+ * Los segundos se pasan explícitamente; no es thread-safe.
+ */
+public final class RingWindowMetrics {
+
+    private final int ringSeconds;
+    private final long[] windowSeconds;
+
+    private final CodeDictionary vehicleTypes = new CodeDictionary();
+    private final CodeDictionary lanes = new CodeDictionary();
+
+    // Un bucket por segundo: slot = segundo % ringSeconds; bucketSecond dice a qué segundo pertenece
+    private final long[] bucketSecond;
+    private final Bucket[] buckets;
+    private final Bucket[] windows;
+
+    private long headSecond;
+    private long lateDetections;
+
+    /** Sumas de un segundo o de una ventana completa, con arreglos indexados por código. */
+    private static final class Bucket {
+        long detections;
+        long[] typeCounts = new long[0];
+        long[] laneVehicles = new long[0];
+        long[] laneSpeedCount = new long[0];
+        double[] laneSpeedSum = new double[0];
+
+        void clear() {
+            detections = 0;
+            Arrays.fill(typeCounts, 0);
+            Arrays.fill(laneVehicles, 0);
+            Arrays.fill(laneSpeedCount, 0);
+            Arrays.fill(laneSpeedSum, 0);
+        }
+
+        void add(Bucket other, int sign) {
+            detections += sign * other.detections;
+            ensure(other.typeCounts.length, other.laneVehicles.length);
+            for (int t = 0; t < other.typeCounts.length; t++) {
+                typeCounts[t] += sign * other.typeCounts[t];
+            }
+            for (int l = 0; l < other.laneVehicles.length; l++) {
+                laneVehicles[l] += sign * other.laneVehicles[l];
+                laneSpeedCount[l] += sign * other.laneSpeedCount[l];
+                laneSpeedSum[l] += sign * other.laneSpeedSum[l];
+            }
+        }
+
+        void ensure(int typeCount, int laneCount) {
+            if (typeCounts.length < typeCount) {
+                typeCounts = Arrays.copyOf(typeCounts, typeCount);
+            }
+            if (laneVehicles.length < laneCount) {
+                laneVehicles = Arrays.copyOf(laneVehicles, laneCount);
+                laneSpeedCount = Arrays.copyOf(laneSpeedCount, laneCount);
+                laneSpeedSum = Arrays.copyOf(laneSpeedSum, laneCount);
+            }
+        }
+    }
+
+    public RingWindowMetrics(long[] windowSeconds, long startSecond) {
+        this.windowSeconds = windowSeconds.clone();
+        this.ringSeconds = (int) Arrays.stream(windowSeconds).max()
+            .orElseThrow(() -> new IllegalArgumentException("Se necesita al menos una ventana"));
+        this.bucketSecond = new long[ringSeconds];
+        Arrays.fill(bucketSecond, Long.MIN_VALUE);
+        this.buckets = new Bucket[ringSeconds];
+        this.windows = new Bucket[windowSeconds.length];
+        for (int w = 0; w < windows.length; w++) {
+            windows[w] = new Bucket();
+        }
+        this.headSecond = startSecond;
+    }
+
+    /**
+     * Suma una detección en su segundo. Las más viejas que la ventana más larga se descartan.
+     */
+    public void add(long second, DetectionPayload payload) {
+        advance(second);
+        if (second <= headSecond - ringSeconds) {
+            lateDetections++;
+            return;
+        }
+        Bucket bucket = bucketFor(second);
+        Bucket delta = new Bucket();
+        delta.detections = 1;
+        accumulate(delta, payload);
+        bucket.add(delta, 1);
+        for (int w = 0; w < windows.length; w++) {
+            if (second > headSecond - windowSeconds[w]) {
+                windows[w].add(delta, 1);
+            }
+        }
+    }
+
+    /**
+     * Mueve el reloj hacia adelante y resta de cada ventana los segundos que quedaron fuera.
+     * Un salto mayor que la ventana la vacía directamente, así el costo queda acotado.
+     */
+    public void advance(long second) {
+        if (second <= headSecond) {
+            return;
+        }
+        for (int w = 0; w < windows.length; w++) {
+            long size = windowSeconds[w];
+            if (second - headSecond >= size) {
+                windows[w].clear();
+                continue;
+            }
+            for (long expired = headSecond - size + 1; expired <= second - size; expired++) {
+                int slot = slot(expired);
+                if (bucketSecond[slot] == expired) {
+                    windows[w].add(buckets[slot], -1);
+                }
+            }
+        }
+        headSecond = second;
+    }
+
+    public long getHeadSecond() {
+        return headSecond;
+    }
+
+    public long getLateDetections() {
+        return lateDetections;
+    }
+
+    public long[] getWindowSeconds() {
+        return windowSeconds.clone();
+    }
+
+    /**
+     * Resumen de la ventana de windowSeconds[index] terminada en el segundo actual.
+     */
+    public Map<String, Object> window(int index) {
+        Bucket window = windows[index];
+        Map<String, Long> totals = new TreeMap<>();
+        for (int t = 0; t < window.typeCounts.length; t++) {
+            if (window.typeCounts[t] != 0) {
+                totals.put(vehicleTypes.value(t), window.typeCounts[t]);
+            }
+        }
+        Map<String, Object> laneStats = new TreeMap<>();
+        for (int l = 0; l < window.laneVehicles.length; l++) {
+            if (window.laneVehicles[l] == 0 && window.laneSpeedCount[l] == 0) {
+                continue;
+            }
+            Map<String, Object> lane = new LinkedHashMap<>();
+            lane.put("vehicles", window.laneVehicles[l]);
+            lane.put("speedSamples", window.laneSpeedCount[l]);
+            lane.put("avgSpeed", window.laneSpeedCount[l] > 0
+                ? Math.round(window.laneSpeedSum[l] / window.laneSpeedCount[l] * 100.0) / 100.0
+                : 0.0);
+            laneStats.put(lanes.value(l), lane);
+        }
+        long vehicles = Arrays.stream(window.typeCounts).sum();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("windowSeconds", windowSeconds[index]);
+        result.put("detections", window.detections);
+        result.put("vehicles", vehicles);
+        result.put("vehiclesPerMinute", Math.round(vehicles * 60.0 / windowSeconds[index] * 100.0) / 100.0);
+        result.put("totals", totals);
+        result.put("lanes", laneStats);
+        return result;
+    }
+
+    private Bucket bucketFor(long second) {
+        int slot = slot(second);
+        if (buckets[slot] == null) {
+            buckets[slot] = new Bucket();
+        }
+        // El slot tenía un segundo que ya salió de todas las ventanas
+        if (bucketSecond[slot] != second) {
+            buckets[slot].clear();
+            bucketSecond[slot] = second;
+        }
+        return buckets[slot];
+    }
+
+    private void accumulate(Bucket delta, DetectionPayload payload) {
+        int[] typeCodes = new int[payload.vehicleTypeCount()];
+        for (int t = 0; t < typeCodes.length; t++) {
+            typeCodes[t] = vehicleTypes.intern(payload.vehicleType(t));
+        }
+        delta.ensure(vehicleTypes.size(), 0);
+        for (int t = 0; t < typeCodes.length; t++) {
+            int total = payload.total(t);
+            if (total > 0) {
+                delta.typeCounts[typeCodes[t]] += total;
+            }
+        }
+        for (int l = 0; l < payload.laneCount(); l++) {
+            int lane = lanes.intern(payload.lane(l));
+            delta.ensure(vehicleTypes.size(), lanes.size());
+            if (payload.hasLaneCounts(l)) {
+                for (int t = 0; t < typeCodes.length; t++) {
+                    int count = payload.laneVehicleCount(l, t);
+                    if (count > 0) {
+                        delta.laneVehicles[lane] += count;
+                    }
+                }
+            }
+            double speed = payload.laneSpeed(l);
+            if (speed > 0) {
+                delta.laneSpeedCount[lane]++;
+                delta.laneSpeedSum[lane] += speed;
+            }
+        }
+    }
+
+    private int slot(long second) {
+        return (int) Math.floorMod(second, (long) ringSeconds);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.demo.service.analytics;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Granularidades de los rollups temporales. El bucket se obtiene truncando la fecha
+ * "yyyy-MM-dd HH:mm:ss" de la detección, tanto en Java como en SQL.
+ */
+public enum RollupGranularity {
+
+    MINUTE("traffic_rollup_minute", 16, ":00", Duration.ofMinutes(1)),
+    HOUR("traffic_rollup_hour", 13, ":00:00", Duration.ofHours(1)),
+    DAY("traffic_rollup_day", 10, " 00:00:00", Duration.ofDays(1));
+
+    private final String table;
+    private final int prefixLength;
+    private final String suffix;
+    private final Duration duration;
+
+    RollupGranularity(String table, int prefixLength, String suffix, Duration duration) {
+        this.table = table;
+        this.prefixLength = prefixLength;
+        this.suffix = suffix;
+        this.duration = duration;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /** Inicio del bucket de una fecha "yyyy-MM-dd HH:mm:ss". */
+    public String bucketOf(String date) {
+        return date.substring(0, prefixLength) + suffix;
+    }
+
+    /** La misma truncación como expresión SQL (CONCAT/SUBSTRING valen en MySQL y H2). */
+    public String sqlBucket(String dateColumn) {
+        return "CONCAT(SUBSTRING(" + dateColumn + ", 1, " + prefixLength + "), '" + suffix + "')";
+    }
+
+    public static RollupGranularity fromName(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Granularidad no soportada: " + name + " (minute, hour, day)");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.demo.service.analytics;
+
+import java.util.List;
+
+/**
+ * Reduce series alineadas (un timestamp y un valor por serie en cada punto) mientras se recorren,
+ * sin guardar la serie completa. Los valores ausentes se pasan como Double.NaN.
+ */
+public interface SeriesDownsampler {
+
+    void accept(String timestamp, long timeMs, double[] values);
+
+    Result finish();
+
+    /** Puntos resultantes, alineados con timestamps; series(i) extrae la serie i. */
+    record Result(List<String> timestamps, List<double[]> points, long sourcePoints) {
+
+        public List<Double> series(int index) {
+            return points.stream().map(values -> values[index]).toList();
+        }
+
+        /** La misma serie como arreglo primitivo, sin boxing. */
+        public double[] column(int index) {
+            double[] column = new double[points.size()];
+            for (int i = 0; i < column.length; i++) {
+                column[i] = points.get(i)[index];
+            }
+            return column;
+        }
+    }
+}
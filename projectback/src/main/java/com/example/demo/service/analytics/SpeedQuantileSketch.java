@@ -0,0 +1,98 @@
+package com.example.demo.service.analytics;
+
+/**
+ * Histograma logarítmico de velocidades (estilo DDSketch/HDR) para estimar percentiles
+ * con error relativo acotado (1%) y memoria fija, sin guardar las muestras.
+ * El bucket i cubre [γ^i, γ^(i+1)); dos sketches se combinan sumando sus conteos,
+ * así los resultados por bloque, por bucket de tiempo o por carril se pueden unir.
+ * La misma indexación se calcula en SQL (sqlBucketIndex) para sembrarlo desde la base de datos.
+ */
+public final class SpeedQuantileSketch {
+
+    public static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    // Rango útil de velocidades; los valores fuera de él se acumulan en los extremos
+    private static final double MIN_VALUE = 0.1;
+    private static final double MAX_VALUE = 1000.0;
+    private static final int MIN_INDEX = index(MIN_VALUE);
+    private static final int MAX_INDEX = index(MAX_VALUE);
+
+    private final long[] counts;
+    private long total;
+
+    public SpeedQuantileSketch() {
+        this.counts = new long[MAX_INDEX - MIN_INDEX + 1];
+    }
+
+    private SpeedQuantileSketch(long[] counts, long total) {
+        this.counts = counts;
+        this.total = total;
+    }
+
+    /** Solo se registran velocidades positivas, como en los promedios. */
+    public void add(double speed) {
+        if (speed > 0) {
+            addToBucket(index(speed), 1);
+        }
+    }
+
+    /** Suma count muestras al bucket con el índice dado (p. ej. calculado en SQL). */
+    public void addToBucket(int index, long count) {
+        if (count <= 0) {
+            return;
+        }
+        int clamped = Math.max(MIN_INDEX, Math.min(MAX_INDEX, index));
+        counts[clamped - MIN_INDEX] += count;
+        total += count;
+    }
+
+    public void merge(SpeedQuantileSketch other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+    }
+
+    /**
+     * Valor aproximado del cuantil q (0..1); NaN si no hay muestras.
+     */
+    public double quantile(double q) {
+        if (total == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.floor(Math.min(1.0, Math.max(0.0, q)) * (total - 1));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative > rank) {
+                return value(i + MIN_INDEX);
+            }
+        }
+        return value(MAX_INDEX);
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public SpeedQuantileSketch copy() {
+        return new SpeedQuantileSketch(counts.clone(), total);
+    }
+
+    public static int index(double value) {
+        return (int) Math.floor(Math.log(value) / LOG_GAMMA);
+    }
+
+    /** La misma indexación como expresión SQL (LN y FLOOR valen en MySQL y H2). */
+    public static String sqlBucketIndex(String speedColumn) {
+        return "FLOOR(LN(" + speedColumn + ") / " + LOG_GAMMA + ")";
+    }
+
+    /** Representante del bucket con error relativo ≤ RELATIVE_ACCURACY respecto de cualquier valor del bucket. */
+    private static double value(int index) {
+        return 2 * Math.pow(GAMMA, index + 1) / (GAMMA + 1);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.demo.service.analytics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Estadísticas de velocidad en memoria constante: conteo, media y varianza (Welford),
+ * mínimo, máximo y un sketch de percentiles. Se puede combinar con otra instancia (Chan et al.),
+ * por ejemplo para unir carriles o partir de agregados calculados en SQL.
+ * No es thread-safe.
+ */
+public final class SpeedStats {
+
+    private long count;
+    private double sum;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private final SpeedQuantileSketch sketch;
+
+    public SpeedStats() {
+        this.sketch = new SpeedQuantileSketch();
+    }
+
+    private SpeedStats(SpeedQuantileSketch sketch) {
+        this.sketch = sketch;
+    }
+
+    /** Solo cuentan velocidades positivas (un 0 significa carril sin lectura). */
+    public void add(double speed) {
+        if (!(speed > 0)) {
+            return;
+        }
+        count++;
+        sum += speed;
+        double delta = speed - mean;
+        mean += delta / count;
+        m2 += delta * (speed - mean);
+        min = Math.min(min, speed);
+        max = Math.max(max, speed);
+        sketch.add(speed);
+    }
+
+    /**
+     * Suma momentos ya agregados (COUNT, SUM, SUM de cuadrados, MIN, MAX en SQL).
+     * Los percentiles se siembran aparte con sketch().addToBucket.
+     */
+    public void addMoments(long otherCount, double otherSum, double otherSumSquares, double otherMin, double otherMax) {
+        if (otherCount <= 0) {
+            return;
+        }
+        SpeedStats other = new SpeedStats(new SpeedQuantileSketch());
+        other.count = otherCount;
+        other.sum = otherSum;
+        other.mean = otherSum / otherCount;
+        other.m2 = Math.max(0.0, otherSumSquares - otherSum * otherSum / otherCount);
+        other.min = otherMin;
+        other.max = otherMax;
+        mergeMoments(other);
+    }
+
+    public void merge(SpeedStats other) {
+        mergeMoments(other);
+        sketch.merge(other.sketch);
+    }
+
+    private void mergeMoments(SpeedStats other) {
+        if (other.count == 0) {
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * count * other.count / total;
+        count = total;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public SpeedQuantileSketch sketch() {
+        return sketch;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /** Media como suma / conteo, igual que el promedio histórico por carril. */
+    public double getMean() {
+        return count > 0 ? sum / count : 0.0;
+    }
+
+    /** Desviación estándar muestral. */
+    public double getStdDev() {
+        return count > 1 ? Math.sqrt(m2 / (count - 1)) : 0.0;
+    }
+
+    public double getMin() {
+        return count > 0 ? min : 0.0;
+    }
+
+    public double getMax() {
+        return count > 0 ? max : 0.0;
+    }
+
+    public double quantile(double q) {
+        return sketch.quantile(q);
+    }
+
+    public SpeedStats copy() {
+        SpeedStats copy = new SpeedStats(sketch.copy());
+        copy.count = count;
+        copy.sum = sum;
+        copy.mean = mean;
+        copy.m2 = m2;
+        copy.min = min;
+        copy.max = max;
+        return copy;
+    }
+
+    /** Resumen para la respuesta, con dos decimales. */
+    public Map<String, Object> toMap() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", count);
+        summary.put("mean", round(getMean()));
+        summary.put("stdDev", round(getStdDev()));
+        summary.put("min", round(getMin()));
+        summary.put("max", round(getMax()));
+        summary.put("p50", round(quantile(0.50)));
+        summary.put("p85", round(quantile(0.85)));
+        summary.put("p95", round(quantile(0.95)));
+        return summary;
+    }
+
+    private static double round(double value) {
+        return Double.isNaN(value) ? 0.0 : Math.round(value * 100.0) / 100.0;
+    }
+}
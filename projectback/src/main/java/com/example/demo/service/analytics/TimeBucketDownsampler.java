@@ -0,0 +1,137 @@
+package com.example.demo.service.analytics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Buckets de tiempo fijos (alineados a epoch) con sum, avg, min o max por serie.
+ * Los puntos deben llegar en orden temporal: cada bucket se cierra al aparecer el siguiente,
+ * así la memoria es O(buckets de salida). Los puntos sin hora y los valores NaN se ignoran.
+ */
+public class TimeBucketDownsampler implements SeriesDownsampler {
+
+    public enum Aggregation {
+        SUM, AVG, MIN, MAX;
+
+        public static Aggregation fromName(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Agregación no soportada: " + name + " (sum, avg, min, max)");
+            }
+        }
+    }
+
+    private final long bucketMs;
+    private final Aggregation aggregation;
+
+    private final List<String> timestamps = new ArrayList<>();
+    private final List<double[]> points = new ArrayList<>();
+    private long sourcePoints;
+
+    private long currentBucket = Long.MIN_VALUE;
+    private double[] sums;
+    private double[] mins;
+    private double[] maxs;
+    private int[] counts;
+
+    public TimeBucketDownsampler(Duration bucket, Aggregation aggregation) {
+        this.bucketMs = bucket.toMillis();
+        this.aggregation = aggregation;
+    }
+
+    @Override
+    public void accept(String timestamp, long timeMs, double[] values) {
+        sourcePoints++;
+        if (timeMs < 0) {
+            return;
+        }
+        long bucket = Math.floorDiv(timeMs, bucketMs) * bucketMs;
+        if (bucket != currentBucket) {
+            flush();
+            open(bucket, values.length);
+        }
+        for (int i = 0; i < values.length; i++) {
+            double value = values[i];
+            if (!Double.isNaN(value)) {
+                sums[i] += value;
+                mins[i] = Math.min(mins[i], value);
+                maxs[i] = Math.max(maxs[i], value);
+                counts[i]++;
+            }
+        }
+    }
+
+    @Override
+    public Result finish() {
+        flush();
+        return new Result(timestamps, points, sourcePoints);
+    }
+
+    /**
+     * Acepta "30s", "5m", "1h", "1d" o una duración ISO-8601 ("PT15M").
+     */
+    public static Duration parseBucket(String value) {
+        String trimmed = value.trim().toLowerCase(Locale.ROOT);
+        Duration duration;
+        try {
+            if (trimmed.startsWith("p")) {
+                duration = Duration.parse(trimmed.toUpperCase(Locale.ROOT));
+            } else {
+                long amount = Long.parseLong(trimmed.substring(0, trimmed.length() - 1));
+                duration = switch (trimmed.charAt(trimmed.length() - 1)) {
+                    case 's' -> Duration.ofSeconds(amount);
+                    case 'm' -> Duration.ofMinutes(amount);
+                    case 'h' -> Duration.ofHours(amount);
+                    case 'd' -> Duration.ofDays(amount);
+                    default -> throw new IllegalArgumentException("Unidad de bucket no soportada: " + value);
+                };
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Bucket inválido: " + value + " (ej. 30s, 5m, 1h, 1d)");
+        }
+        if (duration.toSeconds() < 1) {
+            throw new IllegalArgumentException("El bucket debe ser de al menos 1s: " + value);
+        }
+        return duration;
+    }
+
+    private void open(long bucket, int seriesCount) {
+        currentBucket = bucket;
+        sums = new double[seriesCount];
+        mins = new double[seriesCount];
+        maxs = new double[seriesCount];
+        counts = new int[seriesCount];
+        Arrays.fill(mins, Double.POSITIVE_INFINITY);
+        Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+    }
+
+    private void flush() {
+        if (currentBucket == Long.MIN_VALUE) {
+            return;
+        }
+        double[] values = new double[sums.length];
+        for (int i = 0; i < values.length; i++) {
+            if (counts[i] == 0) {
+                values[i] = Double.NaN;
+                continue;
+            }
+            values[i] = switch (aggregation) {
+                case SUM -> sums[i];
+                case AVG -> sums[i] / counts[i];
+                case MIN -> mins[i];
+                case MAX -> maxs[i];
+            };
+        }
+        timestamps.add(LocalDateTime.ofInstant(Instant.ofEpochMilli(currentBucket), ZoneId.systemDefault())
+            .format(TimeRange.DATE_FORMAT));
+        points.add(values);
+        currentBucket = Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.demo.service.analytics;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Rango [from, to) expresado en el formato de detections.date ("yyyy-MM-dd HH:mm:ss"),
+ * de modo que se compara directamente contra la columna y los buckets de rollup.
+ * Cualquiera de los extremos puede ser null (abierto).
+ */
+public record TimeRange(String from, String to) {
+
+    public static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Acepta epoch ms, "yyyy-MM-dd HH:mm:ss", ISO ("yyyy-MM-ddTHH:mm[:ss]") o solo fecha ("yyyy-MM-dd").
+     */
+    public static TimeRange parse(String from, String to) {
+        TimeRange range = new TimeRange(normalize(from, "from"), normalize(to, "to"));
+        if (range.from() != null && range.to() != null && range.from().compareTo(range.to()) >= 0) {
+            throw new IllegalArgumentException("El rango es vacío: from debe ser anterior a to");
+        }
+        return range;
+    }
+
+    public boolean isUnbounded() {
+        return from == null && to == null;
+    }
+
+    public Long fromMillis() {
+        return toEpochMs(from);
+    }
+
+    public Long toMillis() {
+        return toEpochMs(to);
+    }
+
+    /**
+     * Epoch ms de una fecha "yyyy-MM-dd HH:mm:ss" en la zona del servidor (la misma con la que
+     * detector.py escribe la fecha); null si falta o no tiene ese formato.
+     */
+    public static Long toEpochMs(String date) {
+        if (date == null || date.length() < 19) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(date.substring(0, 19), DATE_FORMAT)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String normalize(String value, String name) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        try {
+            if (trimmed.chars().allMatch(Character::isDigit) && trimmed.length() > 10) {
+                return LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(trimmed)), ZoneId.systemDefault())
+                    .format(DATE_FORMAT);
+            }
+            if (trimmed.length() == 10) {
+                return LocalDate.parse(trimmed).atStartOfDay().format(DATE_FORMAT);
+            }
+            return LocalDateTime.parse(trimmed.replace(' ', 'T')).format(DATE_FORMAT);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Fecha inválida en '" + name + "': " + value);
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.example.demo.service.analytics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.example.demo.entity.Detection;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Acumulador de una sola pasada: cada detección se lee y su payload se decodifica
+ * una única vez, alimentando a la vez totales, carriles, horas, velocidades y series.
+ * Carriles y tipos se internan en códigos enteros y se acumulan en arreglos primitivos;
+ * los mapas de la respuesta solo se construyen en snapshot().
+ * No es thread-safe: se usa una instancia por recorrido, o bajo el lock de DetectionAggregateStore.
+ * Sin series (collectSeries = false) la memoria es O(carriles × tipos + horas).
+ */
+public class TrafficAggregator {
+
+    private static final int HOURS = 24;
+    private static final String[] HOUR_LABELS = new String[HOURS];
+
+    static {
+        for (int hour = 0; hour < HOURS; hour++) {
+            HOUR_LABELS[hour] = String.format("%02d:00", hour);
+        }
+    }
+
+    private final ObjectMapper objectMapper;
+    private final boolean collectSeries;
+
+    private long detectionCount;
+    private long maxDetectionId;
+
+    // Acumuladores primitivos indexados por código de tipo y de carril
+    private final CodeDictionary vehicleTypes = new CodeDictionary();
+    private final CodeDictionary lanes = new CodeDictionary();
+    private long[] totals = new long[4];
+    private final long[] hourly = new long[HOURS];
+    private final Map<String, Long> irregularHours = new HashMap<>();
+    private boolean[] laneSeen = new boolean[4];
+    private long[][] laneVolumes = new long[4][];
+    private SpeedStats[] laneSpeedStats = new SpeedStats[4];
+
+    private final List<String> timestamps = new ArrayList<>();
+    private final IntSeries carSeries = new IntSeries();
+    private final IntSeries busSeries = new IntSeries();
+    private final IntSeries truckSeries = new IntSeries();
+    private final DoubleSeries lane1Speeds = new DoubleSeries();
+    private final DoubleSeries lane2Speeds = new DoubleSeries();
+    private final DoubleSeries lane3Speeds = new DoubleSeries();
+
+    public TrafficAggregator(ObjectMapper objectMapper) {
+        this(objectMapper, true);
+    }
+
+    public TrafficAggregator(ObjectMapper objectMapper, boolean collectSeries) {
+        this.objectMapper = objectMapper;
+        this.collectSeries = collectSeries;
+    }
+
+    public void accept(Detection detection) {
+        detectionCount++;
+        if (detection.getId() != null && detection.getId() > maxDetectionId) {
+            maxDetectionId = detection.getId();
+        }
+        if (collectSeries) {
+            timestamps.add(detection.getDate() != null ? detection.getDate() : "N/A");
+        }
+
+        DetectionPayload payload = DetectionPayload.of(objectMapper, detection);
+        acceptTotals(detection, payload);
+        acceptLanes(payload);
+        acceptSpeeds(payload);
+    }
+
+    private void acceptTotals(Detection detection, DetectionPayload payload) {
+        if (collectSeries) {
+            carSeries.add(Math.max(0, payload.total("car")));
+            busSeries.add(Math.max(0, payload.total("bus")));
+            truckSeries.add(Math.max(0, payload.total("truck")));
+        }
+
+        long detectionTotal = 0;
+        for (int type = 0; type < payload.vehicleTypeCount(); type++) {
+            int value = payload.total(type);
+            if (value != DetectionPayload.ABSENT) {
+                detectionTotal += value;
+                if (value > 0) {
+                    addTotal(vehicleTypes.intern(payload.vehicleType(type)), value);
+                }
+            }
+        }
+
+        if (detectionTotal > 0) {
+            addHour(detection.getDate(), detectionTotal);
+        }
+    }
+
+    private void acceptLanes(DetectionPayload payload) {
+        for (int lane = 0; lane < payload.laneCount(); lane++) {
+            if (!payload.hasLaneCounts(lane)) {
+                continue;
+            }
+            int laneCode = markLane(payload.lane(lane));
+            for (int type = 0; type < payload.vehicleTypeCount(); type++) {
+                int count = payload.laneVehicleCount(lane, type);
+                if (count > 0) {
+                    addLaneVolume(laneCode, vehicleTypes.intern(payload.vehicleType(type)), count);
+                }
+            }
+        }
+    }
+
+    private void acceptSpeeds(DetectionPayload payload) {
+        if (collectSeries) {
+            lane1Speeds.add(seriesSpeed(payload.laneSpeed("lane_1")));
+            lane2Speeds.add(seriesSpeed(payload.laneSpeed("lane_2")));
+            lane3Speeds.add(seriesSpeed(payload.laneSpeed("lane_3")));
+        }
+
+        for (int lane = 0; lane < payload.laneCount(); lane++) {
+            double speed = payload.laneSpeed(lane);
+            if (speed > 0) {
+                speedStats(lanes.intern(payload.lane(lane))).add(speed);
+            }
+        }
+    }
+
+    private static double seriesSpeed(double speed) {
+        return Double.isNaN(speed) ? 0.0 : speed;
+    }
+
+    /**
+     * Acumulador sin series que parte de agregados ya calculados en SQL.
+     * Los métodos seed* suman sobre ese estado; después puede seguir recibiendo detecciones.
+     */
+    static TrafficAggregator seeded(ObjectMapper objectMapper, long detectionCount, long maxDetectionId) {
+        TrafficAggregator aggregator = new TrafficAggregator(objectMapper, false);
+        aggregator.detectionCount = detectionCount;
+        aggregator.maxDetectionId = maxDetectionId;
+        return aggregator;
+    }
+
+    void seedTotal(String vehicleType, int count) {
+        if (count > 0) {
+            addTotal(vehicleTypes.intern(vehicleType), count);
+        }
+    }
+
+    /** hour en formato "HH:00". */
+    void seedHour(String hour, int count) {
+        if (hour != null && count > 0) {
+            int hourOfDay = parseHour(hour, 0);
+            if (hourOfDay >= 0) {
+                hourly[hourOfDay] += count;
+            } else {
+                irregularHours.merge(hour, (long) count, Long::sum);
+            }
+        }
+    }
+
+    void seedLaneVolume(String lane, String vehicleType, int count) {
+        int laneCode = markLane(lane);
+        if (count > 0) {
+            addLaneVolume(laneCode, vehicleTypes.intern(vehicleType), count);
+        }
+    }
+
+    void seedLaneSpeed(String lane, long speedCount, double speedSum, double speedSumSquares,
+            double speedMin, double speedMax) {
+        if (speedCount > 0) {
+            speedStats(lanes.intern(lane)).addMoments(speedCount, speedSum, speedSumSquares, speedMin, speedMax);
+        }
+    }
+
+    /** Bucket del sketch de percentiles calculado en SQL (SpeedQuantileSketch.sqlBucketIndex). */
+    void seedLaneSpeedBucket(String lane, int bucketIndex, long count) {
+        speedStats(lanes.intern(lane)).sketch().addToBucket(bucketIndex, count);
+    }
+
+    private void addTotal(int typeCode, long count) {
+        if (typeCode >= totals.length) {
+            totals = Arrays.copyOf(totals, grow(typeCode));
+        }
+        totals[typeCode] += count;
+    }
+
+    /** Las fechas "yyyy-MM-dd HH:mm:ss" van al arreglo de 24 horas; otros formatos, al mapa. */
+    private void addHour(String date, long count) {
+        int hourOfDay = date != null && date.length() >= 13 && date.charAt(10) == ' ' ? parseHour(date, 11) : -1;
+        if (hourOfDay >= 0) {
+            hourly[hourOfDay] += count;
+            return;
+        }
+        String hour = extractHourFromDate(date);
+        if (hour != null) {
+            irregularHours.merge(hour, count, Long::sum);
+        }
+    }
+
+    private int markLane(String lane) {
+        int laneCode = lanes.intern(lane);
+        if (laneCode >= laneSeen.length) {
+            int size = grow(laneCode);
+            laneSeen = Arrays.copyOf(laneSeen, size);
+            laneVolumes = Arrays.copyOf(laneVolumes, size);
+        }
+        laneSeen[laneCode] = true;
+        return laneCode;
+    }
+
+    private void addLaneVolume(int laneCode, int typeCode, long count) {
+        long[] volumes = laneVolumes[laneCode];
+        if (volumes == null || typeCode >= volumes.length) {
+            volumes = volumes == null ? new long[grow(typeCode)] : Arrays.copyOf(volumes, grow(typeCode));
+            laneVolumes[laneCode] = volumes;
+        }
+        volumes[typeCode] += count;
+    }
+
+    private SpeedStats speedStats(int laneCode) {
+        if (laneCode >= laneSpeedStats.length) {
+            laneSpeedStats = Arrays.copyOf(laneSpeedStats, grow(laneCode));
+        }
+        if (laneSpeedStats[laneCode] == null) {
+            laneSpeedStats[laneCode] = new SpeedStats();
+        }
+        return laneSpeedStats[laneCode];
+    }
+
+    private static int grow(int code) {
+        return Math.max(4, Integer.highestOneBit(code) << 1);
+    }
+
+    /** Dos dígitos 00-23 a partir de offset; -1 si no lo son. */
+    private static int parseHour(String value, int offset) {
+        if (value.length() < offset + 2) {
+            return -1;
+        }
+        int tens = value.charAt(offset) - '0';
+        int units = value.charAt(offset + 1) - '0';
+        if (tens < 0 || tens > 9 || units < 0 || units > 9) {
+            return -1;
+        }
+        int hour = tens * 10 + units;
+        return hour < HOURS ? hour : -1;
+    }
+
+    public long getDetectionCount() {
+        return detectionCount;
+    }
+
+    /** Mayor id de detección acumulado; permite descartar filas ya contadas. */
+    public long getMaxDetectionId() {
+        return maxDetectionId;
+    }
+
+    /**
+     * Los mapas de la respuesta se arman una sola vez aquí, desde los acumuladores primitivos;
+     * las series se entregan tal cual porque el acumulador de un recorrido se descarta después.
+     */
+    public TrafficSnapshot snapshot() {
+        Map<String, Integer> totalsByType = new HashMap<>();
+        for (int type = 0; type < vehicleTypes.size() && type < totals.length; type++) {
+            if (totals[type] > 0) {
+                totalsByType.put(vehicleTypes.value(type), (int) totals[type]);
+            }
+        }
+
+        Map<String, Integer> hourlyTotals = new HashMap<>();
+        for (int hour = 0; hour < HOURS; hour++) {
+            if (hourly[hour] > 0) {
+                hourlyTotals.put(HOUR_LABELS[hour], (int) hourly[hour]);
+            }
+        }
+        irregularHours.forEach((hour, count) -> hourlyTotals.merge(hour, count.intValue(), Integer::sum));
+
+        Map<String, Map<String, Integer>> volumesByLane = new HashMap<>();
+        Map<String, Double> laneSpeeds = new HashMap<>();
+        Map<String, SpeedStats> speedStatsByLane = new HashMap<>();
+        for (int lane = 0; lane < lanes.size(); lane++) {
+            if (lane < laneSeen.length && laneSeen[lane]) {
+                Map<String, Integer> laneData = new HashMap<>();
+                long[] volumes = laneVolumes[lane];
+                for (int type = 0; volumes != null && type < volumes.length; type++) {
+                    if (volumes[type] > 0) {
+                        laneData.put(vehicleTypes.value(type), (int) volumes[type]);
+                    }
+                }
+                volumesByLane.put(lanes.value(lane), laneData);
+            }
+            SpeedStats stats = lane < laneSpeedStats.length ? laneSpeedStats[lane] : null;
+            if (stats != null && stats.getCount() > 0) {
+                laneSpeeds.put(lanes.value(lane), Math.round(stats.getMean() * 100.0) / 100.0);
+                speedStatsByLane.put(lanes.value(lane), stats.copy());
+            }
+        }
+
+        return TrafficSnapshot.builder()
+            .detectionCount(detectionCount)
+            .totals(totalsByType)
+            .hourly(hourlyTotals)
+            .laneVolumes(volumesByLane)
+            .laneSpeeds(laneSpeeds)
+            .laneSpeedStats(speedStatsByLane)
+            .evolutionTimestamps(timestamps)
+            .carSeries(carSeries.toArray())
+            .busSeries(busSeries.toArray())
+            .truckSeries(truckSeries.toArray())
+            .lane1SpeedSeries(lane1Speeds.toArray())
+            .lane2SpeedSeries(lane2Speeds.toArray())
+            .lane3SpeedSeries(lane3Speeds.toArray())
+            .build();
+    }
+
+    static String extractHourFromDate(String dateStr) {
+        if (dateStr == null || dateStr.trim().isEmpty()) return null;
+        String[] parts = dateStr.split(" ");
+        if (parts.length > 1) {
+            String[] timeParts = parts[1].split(":");
+            if (timeParts.length > 0) {
+                return timeParts[0] + ":00";
+            }
+        }
+        return null;
+    }
+
+    /** Serie de enteros sin boxing; crece duplicando. */
+    private static final class IntSeries {
+        private int[] values = new int[64];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class DoubleSeries {
+        private double[] values = new double[64];
+        private int size;
+
+        void add(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        double[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.demo.service.analytics;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.entity.Detection;
+import com.example.demo.repository.DetectionAggregateQueries;
+import com.example.demo.repository.DetectionLaneSpeedRepository;
+import com.example.demo.repository.DetectionRepository;
+import com.example.demo.repository.DetectionVehicleCountRepository;
+import com.example.demo.service.DetectionBreakdownService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Motor de agregación de una sola pasada sobre la tabla de detecciones.
+ * Recorre las filas en streaming (sin findAll) y desacopla cada entidad tras procesarla.
+ */
+@Component
+@RequiredArgsConstructor
+public class TrafficAnalyticsEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrafficAnalyticsEngine.class);
+
+    private final DetectionRepository detectionRepository;
+    private final DetectionVehicleCountRepository vehicleCountRepository;
+    private final DetectionLaneSpeedRepository laneSpeedRepository;
+    private final DetectionBreakdownService breakdownService;
+    private final DetectionAggregateQueries aggregateQueries;
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Transactional(readOnly = true)
+    public TrafficSnapshot computeSnapshot() {
+        return aggregate(true).snapshot();
+    }
+
+    /**
+     * Recorre toda la tabla y devuelve el acumulador, que puede seguir recibiendo detecciones.
+     */
+    @Transactional(readOnly = true)
+    public TrafficAggregator aggregate(boolean collectSeries) {
+        long start = System.nanoTime();
+        TrafficAggregator aggregator = new TrafficAggregator(objectMapper, collectSeries);
+        try (Stream<Detection> detections = detectionRepository.streamAllOrderByTimestamp()) {
+            detections.forEach(detection -> {
+                aggregator.accept(detection);
+                entityManager.detach(detection);
+            });
+        }
+        logger.debug("Agregación en una pasada: {} detecciones en {} ms",
+            aggregator.getDetectionCount(), (System.nanoTime() - start) / 1_000_000);
+        return aggregator;
+    }
+
+    /**
+     * Agregados sin series. Con el desglose normalizado completo se resuelven con GROUP BY
+     * en la base de datos (O(grupos)); si no, con un recorrido de la tabla.
+     * Abre su propia transacción porque también se invoca desde listeners posteriores al commit.
+     */
+    @Transactional(readOnly = true, propagation = Propagation.REQUIRES_NEW)
+    public TrafficAggregator aggregateTotals() {
+        if (!breakdownService.isBackfilled()) {
+            return aggregate(false);
+        }
+        long start = System.nanoTime();
+        TrafficAggregator aggregator = TrafficAggregator.seeded(
+            objectMapper, detectionRepository.count(), detectionRepository.findMaxId());
+
+        vehicleCountRepository.sumTotalsByType()
+            .forEach(row -> aggregator.seedTotal(row.getVehicleType(), row.getTotal().intValue()));
+        vehicleCountRepository.sumTotalsByHour()
+            .forEach(row -> aggregator.seedHour(row.getHour() + ":00", row.getTotal().intValue()));
+        vehicleCountRepository.sumByLaneAndType()
+            .forEach(row -> aggregator.seedLaneVolume(row.getLane(), row.getVehicleType(), row.getTotal().intValue()));
+        laneSpeedRepository.sumSpeedsByLane()
+            .forEach(row -> aggregator.seedLaneSpeed(row.getLane(), row.getSpeedCount(), row.getSpeedSum(),
+                row.getSpeedSumSquares(), row.getSpeedMin(), row.getSpeedMax()));
+        aggregateQueries.speedHistogramByLane(DetectionFilter.NONE,
+            rs -> aggregator.seedLaneSpeedBucket(rs.getString("lane"), rs.getInt("bucket_index"), rs.getLong("bucket_count")));
+
+        logger.debug("Agregados por GROUP BY: {} detecciones en {} ms",
+            aggregator.getDetectionCount(), (System.nanoTime() - start) / 1_000_000);
+        return aggregator;
+    }
+
+    /**
+     * Agregados sin series para un rango, carril y/o tipo, resueltos en la base de datos.
+     * Solo se leen las filas del rango (índice sobre event_time_ms).
+     */
+    @Transactional(readOnly = true)
+    public TrafficAggregator aggregateFiltered(DetectionFilter filter) {
+        if (!breakdownService.isBackfilled()) {
+            throw new IllegalStateException("El desglose normalizado aún no está completo");
+        }
+        long start = System.nanoTime();
+        long[] detections = aggregateQueries.countDetections(filter);
+        TrafficAggregator aggregator = TrafficAggregator.seeded(objectMapper, detections[0], detections[1]);
+
+        aggregateQueries.sumTotalsByType(filter,
+            rs -> aggregator.seedTotal(rs.getString("vehicle_type"), rs.getInt("total")));
+        aggregateQueries.sumTotalsByHour(filter,
+            rs -> aggregator.seedHour(rs.getString("hour_of_day") + ":00", rs.getInt("total")));
+        aggregateQueries.sumByLaneAndType(filter,
+            rs -> aggregator.seedLaneVolume(rs.getString("lane"), rs.getString("vehicle_type"), rs.getInt("total")));
+        aggregateQueries.sumSpeedsByLane(filter,
+            rs -> aggregator.seedLaneSpeed(rs.getString("lane"), rs.getLong("speed_count"), rs.getDouble("speed_sum"),
+                rs.getDouble("speed_sum_squares"), rs.getDouble("speed_min"), rs.getDouble("speed_max")));
+        aggregateQueries.speedHistogramByLane(filter,
+            rs -> aggregator.seedLaneSpeedBucket(rs.getString("lane"), rs.getInt("bucket_index"), rs.getLong("bucket_count")));
+
+        logger.debug("Agregados filtrados ({}): {} detecciones en {} ms",
+            filter, aggregator.getDetectionCount(), (System.nanoTime() - start) / 1_000_000);
+        return aggregator;
+    }
+
+    /**
+     * Series de conteos por tipo reducidas en un solo recorrido del rango; con filtro de carril
+     * los conteos salen de objects_by_lane de ese carril.
+     */
+    @Transactional(readOnly = true)
+    public SeriesDownsampler.Result downsampleVehicleCounts(DetectionFilter filter, List<String> vehicleTypes,
+            DownsampleSpec spec) {
+        return downsample(filter, spec, TimeBucketDownsampler.Aggregation.SUM, vehicleTypes.size(), (payload, values) -> {
+            for (int i = 0; i < values.length; i++) {
+                int count = filter.lane() == null
+                    ? payload.total(vehicleTypes.get(i))
+                    : payload.laneVehicleCount(filter.lane(), vehicleTypes.get(i));
+                values[i] = Math.max(0, count);
+            }
+        });
+    }
+
+    /**
+     * Series de velocidad por carril; un carril sin lectura cuenta como ausente (no como 0)
+     * para que avg/min de los buckets no se deformen.
+     */
+    @Transactional(readOnly = true)
+    public SeriesDownsampler.Result downsampleLaneSpeeds(DetectionFilter filter, List<String> lanes, DownsampleSpec spec) {
+        return downsample(filter, spec, TimeBucketDownsampler.Aggregation.AVG, lanes.size(), (payload, values) -> {
+            for (int i = 0; i < values.length; i++) {
+                double speed = payload.laneSpeed(lanes.get(i));
+                values[i] = speed > 0 ? speed : Double.NaN;
+            }
+        });
+    }
+
+    private SeriesDownsampler.Result downsample(DetectionFilter filter, DownsampleSpec spec,
+            TimeBucketDownsampler.Aggregation defaultAggregation, int seriesCount,
+            BiConsumer<DetectionPayload, double[]> extractor) {
+        long start = System.nanoTime();
+        long[] detections = aggregateQueries.countDetections(filter);
+        SeriesDownsampler downsampler = spec.create(detections[0], defaultAggregation);
+        double[] values = new double[seriesCount];
+        aggregateQueries.streamSeriesRows(filter, detections[1], rs -> {
+            Detection detection = Detection.builder()
+                .date(rs.getString("date"))
+                .objectsTotal(rs.getString("objects_total"))
+                .objectsByLane(rs.getString("objects_by_lane"))
+                .avgSpeedByLane(rs.getString("avg_speed_by_lane"))
+                .payload(rs.getBytes("payload"))
+                .build();
+            extractor.accept(DetectionPayload.of(objectMapper, detection), values);
+            long eventTime = rs.getLong("event_time_ms");
+            downsampler.accept(detection.getDate() != null ? detection.getDate() : "N/A",
+                rs.wasNull() ? -1 : eventTime, values);
+        });
+        SeriesDownsampler.Result result = downsampler.finish();
+        logger.debug("Series reducidas: {} puntos a {} en {} ms",
+            result.sourcePoints(), result.timestamps().size(), (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.demo.service.analytics;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Resultado de una pasada completa sobre las detecciones.
+ * Contiene todas las métricas del dashboard calculadas a la vez.
+ */
+@Getter
+@Builder
+public class TrafficSnapshot {
+
+    private final long detectionCount;
+
+    /** Totales por tipo de vehículo (solo conteos positivos). */
+    private final Map<String, Integer> totals;
+
+    /** Vehículos por hora ("HH:00"). */
+    private final Map<String, Integer> hourly;
+
+    /** Vehículos por carril y tipo. */
+    private final Map<String, Map<String, Integer>> laneVolumes;
+
+    /** Velocidad promedio por carril, redondeada a dos decimales. */
+    private final Map<String, Double> laneSpeeds;
+
+    /** Distribución de velocidades por carril (media, desviación, extremos y percentiles). */
+    private final Map<String, SpeedStats> laneSpeedStats;
+
+    /** Serie de evolución del tráfico, una entrada por detección en orden temporal. */
+    private final List<String> evolutionTimestamps;
+    private final int[] carSeries;
+    private final int[] busSeries;
+    private final int[] truckSeries;
+
+    /** Serie de evolución de velocidad por carril. */
+    private final double[] lane1SpeedSeries;
+    private final double[] lane2SpeedSeries;
+    private final double[] lane3SpeedSeries;
+
+    public boolean isEmpty() {
+        return detectionCount == 0;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.demo.service.event;
+
+import java.util.List;
+
+import com.example.demo.entity.Detection;
+
+/**
+ * Detecciones agregadas a la base de datos por una ingesta incremental.
+ * Los listeners transaccionales lo reciben una vez confirmada la transacción.
+ */
+public record DetectionsIngestedEvent(String sourceId, List<Detection> detections) {
+}
@@ -0,0 +1,15 @@
+package com.example.demo.service.event;
+
+import com.example.demo.service.analytics.TrafficAggregator;
+
+/**
+ * El conjunto de detecciones cambió en bloque (recarga completa, truncado o retención).
+ * Todo estado derivado debe reconstruirse desde la base de datos, salvo los agregados
+ * en memoria cuando la recarga ya los trae calculados (aggregates != null).
+ */
+public record DetectionsReplacedEvent(String reason, TrafficAggregator aggregates) {
+
+    public DetectionsReplacedEvent(String reason) {
+        this(reason, null);
+    }
+}
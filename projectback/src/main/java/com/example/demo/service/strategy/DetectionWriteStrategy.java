@@ -0,0 +1,13 @@
+package com.example.demo.service.strategy;
+
+import java.util.List;
+
+import com.example.demo.entity.Detection;
+
+/**
+ * Estrategia de escritura masiva de detecciones.
+ * Cada implementación debe dejar asignado el id de cada detección escrita.
+ */
+public interface DetectionWriteStrategy {
+    int write(List<Detection> detections);
+}
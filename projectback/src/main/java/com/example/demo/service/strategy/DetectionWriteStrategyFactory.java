@@ -0,0 +1,19 @@
+package com.example.demo.service.strategy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+@Component
+public class DetectionWriteStrategyFactory {
+
+    @Autowired
+    private ApplicationContext context;
+
+    /**
+     * Resuelve la estrategia por modo: "jpa", "jdbc" o "loadData".
+     */
+    public DetectionWriteStrategy getStrategy(String mode) {
+        return context.getBean(mode + "WriteStrategy", DetectionWriteStrategy.class);
+    }
+}
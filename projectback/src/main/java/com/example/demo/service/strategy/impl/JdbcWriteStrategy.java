@@ -0,0 +1,73 @@
+package com.example.demo.service.strategy.impl;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.entity.Detection;
+import com.example.demo.service.strategy.DetectionWriteStrategy;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Escritura con JdbcTemplate.batchUpdate. En MySQL, con rewriteBatchedStatements=true
+ * el driver envía el lote como un único INSERT multi-fila y devuelve los ids generados.
+ */
+@Component("jdbcWriteStrategy")
+@RequiredArgsConstructor
+public class JdbcWriteStrategy implements DetectionWriteStrategy {
+
+    private static final String INSERT_SQL =
+        "INSERT INTO detections (timestamp_ms, date, event_time_ms, objects_total, objects_by_lane, avg_speed_by_lane, payload, source_id) "
+        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int write(List<Detection> detections) {
+        if (detections.isEmpty()) {
+            return 0;
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+            connection -> connection.prepareStatement(INSERT_SQL, new String[] {"id"}),
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(@NonNull PreparedStatement ps, int i) throws SQLException {
+                    Detection detection = detections.get(i);
+                    ps.setLong(1, detection.getTimestampMs());
+                    ps.setString(2, detection.getDate());
+                    ps.setObject(3, detection.getEventTimeMs(), Types.BIGINT);
+                    ps.setString(4, detection.getObjectsTotal());
+                    ps.setString(5, detection.getObjectsByLane());
+                    ps.setString(6, detection.getAvgSpeedByLane());
+                    ps.setBytes(7, detection.getPayload());
+                    ps.setString(8, detection.getSourceId());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return detections.size();
+                }
+            },
+            keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < keys.size() && i < detections.size(); i++) {
+            Object key = keys.get(i).values().stream().findFirst().orElse(null);
+            if (key instanceof Number number) {
+                detections.get(i).setId(number.longValue());
+            }
+        }
+        return detections.size();
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.demo.service.strategy.impl;
+
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+
+import com.example.demo.entity.Detection;
+import com.example.demo.repository.DetectionRepository;
+import com.example.demo.service.strategy.DetectionWriteStrategy;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Escritura vía JPA. Con ids IDENTITY Hibernate no agrupa los INSERT,
+ * por lo que se mantiene solo por compatibilidad.
+ */
+@Component("jpaWriteStrategy")
+@RequiredArgsConstructor
+public class JpaWriteStrategy implements DetectionWriteStrategy {
+
+    private final DetectionRepository detectionRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int write(List<Detection> detections) {
+        detectionRepository.saveAllAndFlush(detections);
+        entityManager.clear();
+        return detections.size();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.demo.service.strategy.impl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.demo.entity.Detection;
+import com.example.demo.service.strategy.DetectionWriteStrategy;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Escritura por archivo CSV temporal: LOAD DATA LOCAL INFILE en MySQL
+ * (requiere allowLoadLocalInfile=true en la URL) o CSVREAD en H2.
+ * Los ids se asignan a partir de MAX(id); la ingesta es de un solo escritor (JsonLoader no deja
+ * escribir a dos fuentes a la vez con este modo).
+ * El payload binario viaja en hexadecimal (UNHEX en MySQL); H2 no convierte hex desde CSV,
+ * así que allí se completa con un UPDATE por lote.
+ */
+@Component("loadDataWriteStrategy")
+@RequiredArgsConstructor
+public class LoadDataWriteStrategy implements DetectionWriteStrategy {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadDataWriteStrategy.class);
+    private static final String COLUMNS = "id,timestamp_ms,date,event_time_ms,objects_total,objects_by_lane,avg_speed_by_lane,source_id";
+    // Sin comillas: MySQL lo lee como NULL; en H2 se declara con la opción null=NULL
+    private static final String NULL_VALUE = "NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean mysql;
+
+    @Override
+    public int write(List<Detection> detections) {
+        if (detections.isEmpty()) {
+            return 0;
+        }
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM detections", Long.class);
+        long nextId = (maxId != null ? maxId : 0L) + 1;
+        for (Detection detection : detections) {
+            detection.setId(nextId++);
+        }
+
+        Path csv = null;
+        try {
+            csv = Files.createTempFile("detections-", ".csv");
+            writeCsv(csv, detections);
+            String path = csv.toAbsolutePath().toString().replace("\\", "/").replace("'", "''");
+
+            if (isMySql()) {
+                jdbcTemplate.execute("LOAD DATA LOCAL INFILE '" + path + "' INTO TABLE detections "
+                    + "CHARACTER SET utf8mb4 FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY '' "
+                    + "LINES TERMINATED BY '\\n' (" + COLUMNS + ", @payload) SET payload = UNHEX(@payload)");
+            } else {
+                jdbcTemplate.execute("INSERT INTO detections (" + COLUMNS + ") SELECT " + COLUMNS + " FROM CSVREAD('"
+                    + path + "', '" + (COLUMNS + ",payload_hex").toUpperCase() + "', 'charset=UTF-8 null=" + NULL_VALUE + "')");
+                // H2 no avanza la identidad con ids explícitos
+                restartIdentityAfterCommit();
+                jdbcTemplate.batchUpdate("UPDATE detections SET payload = ? WHERE id = ?", detections.stream()
+                    .filter(detection -> detection.getPayload() != null)
+                    .map(detection -> new Object[] {detection.getPayload(), detection.getId()})
+                    .toList());
+            }
+            return detections.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error escribiendo CSV temporal", e);
+        } finally {
+            if (csv != null) {
+                try {
+                    Files.deleteIfExists(csv);
+                } catch (IOException e) {
+                    logger.debug("No se pudo borrar el CSV temporal {}: {}", csv, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * El ALTER TABLE de H2 confirma implícitamente la transacción en curso: dentro de la ingesta dejaría
+     * el lote a medias confirmado aunque luego fallara. Se difiere al commit y, si hay rollback, no hace falta.
+     */
+    private void restartIdentityAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            restartIdentity();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                restartIdentity();
+            }
+        });
+    }
+
+    private void restartIdentity() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM detections", Long.class);
+        jdbcTemplate.execute("ALTER TABLE detections ALTER COLUMN id RESTART WITH " + ((maxId != null ? maxId : 0L) + 1));
+    }
+
+    private void writeCsv(Path csv, List<Detection> detections) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            for (Detection detection : detections) {
+                writer.write(Long.toString(detection.getId()));
+                writer.write(',');
+                writer.write(Long.toString(detection.getTimestampMs()));
+                writer.write(',');
+                writer.write(quote(detection.getDate()));
+                writer.write(',');
+                writer.write(detection.getEventTimeMs() != null ? Long.toString(detection.getEventTimeMs()) : NULL_VALUE);
+                writer.write(',');
+                writer.write(quote(detection.getObjectsTotal()));
+                writer.write(',');
+                writer.write(quote(detection.getObjectsByLane()));
+                writer.write(',');
+                writer.write(quote(detection.getAvgSpeedByLane()));
+                writer.write(',');
+                writer.write(detection.getSourceId() != null ? quote(detection.getSourceId()) : NULL_VALUE);
+                writer.write(',');
+                writer.write(detection.getPayload() != null ? HexFormat.of().formatHex(detection.getPayload()) : NULL_VALUE);
+                writer.write('\n');
+            }
+        }
+    }
+
+    private String quote(String value) {
+        if (value == null) {
+            return "\"\"";
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private boolean isMySql() {
+        if (mysql == null) {
+            String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            mysql = product != null && product.toLowerCase().contains("mysql");
+        }
+        return mysql;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+/**
+ * Resultados de las mediciones de rendimiento (@Tag("benchmark"), mvn test -Pbenchmark): cada corrida
+ * agrega una línea a target/benchmarks/&lt;prueba&gt;.txt en lugar de escribir en la salida estándar.
+ */
+public final class BenchmarkReport {
+
+	private static final Path DIRECTORY = Path.of("target", "benchmarks");
+
+	private BenchmarkReport() {
+	}
+
+	public static void append(Class<?> test, String result) throws IOException {
+		Files.createDirectories(DIRECTORY);
+		Files.writeString(DIRECTORY.resolve(test.getSimpleName() + ".txt"),
+			LocalDateTime.now().withNano(0) + " " + result + System.lineSeparator(),
+			StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+}
@@ -0,0 +1,54 @@
+package com.example.demo.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.example.demo.service.analytics.DataVersionTracker;
+import com.example.demo.service.event.DetectionsReplacedEvent;
+
+class DataVersionEtagInterceptorTests {
+
+	private final DataVersionTracker tracker = new DataVersionTracker();
+	private final DataVersionEtagInterceptor interceptor = new DataVersionEtagInterceptor(tracker);
+
+	private MockHttpServletResponse get(String query, String ifNoneMatch) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/detections/volume/total");
+		request.setQueryString(query);
+		if (ifNoneMatch != null) {
+			request.addHeader("If-None-Match", ifNoneMatch);
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		boolean proceed = interceptor.preHandle(request, response, new Object());
+		assertEquals(proceed, response.getStatus() == 200);
+		return response;
+	}
+
+	@Test
+	void answersNotModifiedUntilDataVersionChanges() {
+		String etag = get(null, null).getHeader("ETag");
+
+		assertEquals(304, get(null, etag).getStatus());
+		assertNotEquals(etag, get("lane=lane_1", null).getHeader("ETag"));
+
+		tracker.onDetectionsReplaced(new DetectionsReplacedEvent("test"));
+
+		MockHttpServletResponse changed = get(null, etag);
+		assertEquals(200, changed.getStatus());
+		assertNotEquals(etag, changed.getHeader("ETag"));
+	}
+
+	@Test
+	void ignoresNonGetRequests() {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/detections/load-json");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertTrue(interceptor.preHandle(request, response, new Object()));
+		assertFalse(response.containsHeader("ETag"));
+	}
+}
@@ -0,0 +1,136 @@
+package com.example.demo.service.DTO;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.BenchmarkReport;
+import com.example.demo.config.AppConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compara el payload de /temporal/evolution y /temporal/speed como HashMap con listas boxeadas
+ * (antes) y como records con arreglos primitivos (ahora): mismo JSON, menos asignaciones.
+ * La medición de asignaciones es un benchmark (mvn test -Pbenchmark).
+ */
+class EvolutionSerializationTests {
+
+	private static final int POINTS = 20_000;
+	private static final int ROUNDS = 30;
+
+	private final ObjectMapper mapper = new AppConfig().objectMapper();
+
+	private final List<String> timestamps = new ArrayList<>();
+	private final int[] car = new int[POINTS];
+	private final int[] bus = new int[POINTS];
+	private final int[] truck = new int[POINTS];
+	private final double[] lane1 = new double[POINTS];
+	private final double[] lane2 = new double[POINTS];
+	private final double[] lane3 = new double[POINTS];
+
+	EvolutionSerializationTests() {
+		Random random = new Random(7);
+		for (int i = 0; i < POINTS; i++) {
+			timestamps.add(String.format("2025-05-01 %02d:%02d:%02d", i / 3600 % 24, i / 60 % 60, i % 60));
+			car[i] = random.nextInt(40);
+			bus[i] = random.nextInt(5);
+			truck[i] = random.nextInt(8);
+			lane1[i] = Math.round(random.nextDouble() * 6000.0) / 100.0;
+			lane2[i] = Math.round(random.nextDouble() * 6000.0) / 100.0;
+			lane3[i] = Math.round(random.nextDouble() * 6000.0) / 100.0;
+		}
+	}
+
+	private Map<String, Object> trafficMap() {
+		Map<String, Object> result = new HashMap<>();
+		result.put("timestamps", timestamps);
+		result.put("car", Arrays.stream(car).boxed().toList());
+		result.put("bus", Arrays.stream(bus).boxed().toList());
+		result.put("truck", Arrays.stream(truck).boxed().toList());
+		return result;
+	}
+
+	private Map<String, Object> speedMap() {
+		Map<String, Object> result = new HashMap<>();
+		result.put("timestamps", timestamps);
+		result.put("lane_1", Arrays.stream(lane1).boxed().toList());
+		result.put("lane_2", Arrays.stream(lane2).boxed().toList());
+		result.put("lane_3", Arrays.stream(lane3).boxed().toList());
+		return result;
+	}
+
+	private SeriesResponse trafficRecord() {
+		return new TrafficEvolutionResponse(null, timestamps, car, bus, truck);
+	}
+
+	private SeriesResponse speedRecord() {
+		return new SpeedEvolutionResponse(null, timestamps, lane1, lane2, lane3);
+	}
+
+	@Test
+	void typedResponsesSerializeToTheSameJson() throws Exception {
+		assertEquals(mapper.readTree(mapper.writeValueAsBytes(trafficMap())),
+			mapper.readTree(mapper.writeValueAsBytes(trafficRecord())));
+		assertEquals(mapper.readTree(mapper.writeValueAsBytes(speedMap())),
+			mapper.readTree(mapper.writeValueAsBytes(speedRecord())));
+
+		Map<String, double[]> series = new LinkedHashMap<>();
+		series.put("car", new double[] {1.0, 2.5});
+		String json = mapper.writeValueAsString(
+			new DownsampledSeriesResponse(Map.of("maxPoints", 2), List.of("a", "b"), series));
+		assertEquals("{\"downsample\":{\"maxPoints\":2},\"timestamps\":[\"a\",\"b\"],\"car\":[1.0,2.5]}", json);
+	}
+
+	/**
+	 * Arma y escribe la respuesta como lo hace el endpoint; registra en target/benchmarks el tiempo
+	 * y los bytes asignados por ronda.
+	 */
+	@Test
+	@Tag("benchmark")
+	void typedResponsesAllocateLess() throws Exception {
+		long[] trafficBefore = measure(this::trafficMap);
+		long[] trafficAfter = measure(this::trafficRecord);
+		long[] speedBefore = measure(this::speedMap);
+		long[] speedAfter = measure(this::speedRecord);
+
+		report("temporal/evolution", trafficBefore, trafficAfter);
+		report("temporal/speed", speedBefore, speedAfter);
+
+		assertTrue(trafficAfter[1] < trafficBefore[1]);
+		assertTrue(speedAfter[1] < speedBefore[1]);
+	}
+
+	private long[] measure(Supplier<Object> payload) throws Exception {
+		for (int i = 0; i < ROUNDS; i++) {
+			mapper.writeValue(OutputStream.nullOutputStream(), payload.get());
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long bytes = threads.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++) {
+			mapper.writeValue(OutputStream.nullOutputStream(), payload.get());
+		}
+		long nanos = System.nanoTime() - start;
+		return new long[] {nanos / ROUNDS, (threads.getThreadAllocatedBytes(thread) - bytes) / ROUNDS};
+	}
+
+	private void report(String endpoint, long[] before, long[] after) throws IOException {
+		BenchmarkReport.append(getClass(), String.format("%s (%d puntos): HashMap %.2f ms / %d KB, record %.2f ms / %d KB",
+			endpoint, POINTS, before[0] / 1e6, before[1] / 1024, after[0] / 1e6, after[1] / 1024));
+	}
+}
@@ -0,0 +1,36 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * La copia de una tabla de H2 a partir de SCRIPT NODATA: nombre de staging, identidad sin reiniciar
+ * y nombres temporales para índices y restricciones, que se restauran tras el intercambio.
+ */
+class DetectionStagingServiceTests {
+
+	@Test
+	void clonesH2TableWithTemporaryNames() {
+		List<String> script = List.of(
+			"-- 1 +/- SELECT COUNT(*) FROM PUBLIC.DETECTIONS;",
+			"CREATE USER IF NOT EXISTS \"SA\" PASSWORD '' ADMIN",
+			"CREATE CACHED TABLE \"PUBLIC\".\"DETECTIONS\"(\"ID\" BIGINT GENERATED BY DEFAULT AS IDENTITY(START WITH 1 RESTART WITH 57) DEFAULT ON NULL NOT NULL, \"DATE\" CHARACTER VARYING(50))",
+			"ALTER TABLE \"PUBLIC\".\"DETECTIONS\" ADD CONSTRAINT \"PUBLIC\".\"CONSTRAINT_A\" PRIMARY KEY(\"ID\")",
+			"CREATE INDEX \"PUBLIC\".\"IDX_DETECTIONS_TIMESTAMP_MS\" ON \"PUBLIC\".\"DETECTIONS\"(\"TIMESTAMP_MS\" NULLS FIRST)");
+
+		DetectionStagingService.H2Clone clone = DetectionStagingService.h2Clone(script, "detections");
+
+		assertEquals(List.of(
+			"CREATE CACHED TABLE \"PUBLIC\".\"DETECTIONS_STAGING\"(\"ID\" BIGINT GENERATED BY DEFAULT AS IDENTITY(START WITH 1) DEFAULT ON NULL NOT NULL, \"DATE\" CHARACTER VARYING(50))",
+			"ALTER TABLE \"PUBLIC\".\"DETECTIONS_STAGING\" ADD CONSTRAINT \"PUBLIC\".\"CONSTRAINT_A_STG\" PRIMARY KEY(\"ID\")",
+			"CREATE INDEX \"PUBLIC\".\"IDX_DETECTIONS_TIMESTAMP_MS_STG\" ON \"PUBLIC\".\"DETECTIONS_STAGING\"(\"TIMESTAMP_MS\" NULLS FIRST)"),
+			clone.create());
+		assertEquals(List.of(
+			"ALTER TABLE \"PUBLIC\".\"DETECTIONS\" RENAME CONSTRAINT \"PUBLIC\".\"CONSTRAINT_A_STG\" TO \"CONSTRAINT_A\"",
+			"ALTER INDEX \"PUBLIC\".\"IDX_DETECTIONS_TIMESTAMP_MS_STG\" RENAME TO \"IDX_DETECTIONS_TIMESTAMP_MS\""),
+			clone.restoreNames());
+	}
+}
@@ -0,0 +1,157 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.demo.config.AppConfig;
+import com.fasterxml.jackson.core.exc.StreamReadException;
+
+/**
+ * Seguimiento de un archivo JSON-lines: solo se consumen líneas completas y la lectura
+ * siguiente continúa desde el offset devuelto. En un documento JSON, cada elemento informa el
+ * offset siguiente a su cierre y la cola agregada se lee desde ahí; solo un elemento cortado al final
+ * de los bytes disponibles se trata como cola incompleta.
+ */
+class DetectionStreamReaderTests {
+
+	private final DetectionStreamReader reader = new DetectionStreamReader(new AppConfig().objectMapper());
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void readsCompleteLinesAndResumesAfterPartialTail() throws Exception {
+		Path file = dir.resolve("detections.ndjson");
+		String first = "{\"timestamp_ms\": 1, \"date\": \"2025-05-30 16:00:00\"}\n";
+		String skipped = "\n{no es json}\r\n";
+		String partial = "{\"timestamp_ms\": 3, \"date\": \"2025-05";
+		Files.writeString(file, first + skipped + partial);
+
+		List<Long> timestamps = new ArrayList<>();
+		long offset = read(file, 0, timestamps);
+
+		assertEquals(List.of(1L), timestamps);
+		assertEquals((first + skipped).getBytes(StandardCharsets.UTF_8).length, offset);
+
+		Files.writeString(file, "-30 16:00:03\"}\n{\"timestamp_ms\": 4}\n", StandardOpenOption.APPEND);
+		long next = read(file, offset, timestamps);
+
+		assertEquals(List.of(1L, 3L, 4L), timestamps);
+		assertEquals(Files.size(file), next);
+		assertEquals(next, read(file, next, timestamps));
+	}
+
+	@Test
+	void readDocumentReportsOffsetAfterEachElement() throws Exception {
+		String first = "{\"timestamp_ms\": 1, \"date\": \"2025-05-30 16:00:00\"}";
+		String second = "{\"timestamp_ms\": 2, \"objects_total\": {\"car\": 3}}";
+		String document = "{\"source\": {\"ignored\": [1, 2]}, \"detections\": [\n  " + first + ",\n  " + second + "\n]}";
+
+		List<Long> offsets = new ArrayList<>();
+		List<Long> timestamps = new ArrayList<>();
+		long count = reader.readDocument(bytes(document), (detection, endOffset) -> {
+			timestamps.add(detection.getTimestamp_ms());
+			offsets.add(endOffset);
+		});
+
+		assertEquals(2, count);
+		assertEquals(List.of(1L, 2L), timestamps);
+		assertEquals(List.of((long) (document.indexOf(first) + first.length()), (long) (document.indexOf(second) + second.length())),
+			offsets);
+	}
+
+	@Test
+	void readTailContinuesFromCheckpointWithAbsoluteOffsets() throws Exception {
+		String prefix = "{\"detections\": [\n  {\"timestamp_ms\": 1}";
+		String appended = "{\"timestamp_ms\": 2}";
+		String document = prefix + ",\n  " + appended + "\n]}";
+
+		List<Long> offsets = new ArrayList<>();
+		List<Long> timestamps = new ArrayList<>();
+		long count = reader.readTail(bytes(document.substring(prefix.length())), prefix.length(), (detection, endOffset) -> {
+			timestamps.add(detection.getTimestamp_ms());
+			offsets.add(endOffset);
+		});
+
+		assertEquals(1, count);
+		assertEquals(List.of(2L), timestamps);
+		assertEquals(List.of((long) document.length() - "\n]}".length()), offsets);
+	}
+
+	@Test
+	void readTailStopsAtIncompleteElement() throws Exception {
+		String tail = ",\n  {\"timestamp_ms\": 2},\n  {\"timestamp_ms\": 3, \"date\": \"2025-";
+
+		List<Long> timestamps = new ArrayList<>();
+		long count = reader.readTail(bytes(tail), 100, (detection, endOffset) -> timestamps.add(detection.getTimestamp_ms()));
+
+		assertEquals(1, count);
+		assertEquals(List.of(2L), timestamps);
+		assertEquals(0, reader.readTail(bytes("\n]}"), 100, (detection, endOffset) -> timestamps.add(0L)));
+	}
+
+	@Test
+	void readTailStopsAtTokenTruncatedAtTheEnd() throws Exception {
+		String tail = ",\n  {\"timestamp_ms\": 2},\n  {\"timestamp_ms\": 3, \"date\": nu";
+
+		List<Long> timestamps = new ArrayList<>();
+
+		assertEquals(1, reader.readTail(bytes(tail), 100, (detection, endOffset) -> timestamps.add(detection.getTimestamp_ms())));
+		assertEquals(List.of(2L), timestamps);
+	}
+
+	@Test
+	void readTailSkipsElementsThatCannotBeMapped() throws Exception {
+		String invalid = "{\"timestamp_ms\": \"no es un número\", \"objects_total\": {\"car\": 1}}";
+		String valid = "{\"timestamp_ms\": 4}";
+		String tail = ",\n  " + invalid + ",\n  " + valid + "\n]}";
+
+		List<Long> offsets = new ArrayList<>();
+		List<Long> timestamps = new ArrayList<>();
+		long count = reader.readTail(bytes(tail), 100, (detection, endOffset) -> {
+			timestamps.add(detection.getTimestamp_ms());
+			offsets.add(endOffset);
+		});
+
+		assertEquals(1, count);
+		assertEquals(List.of(4L), timestamps);
+		assertEquals(List.of(100L + tail.getBytes(StandardCharsets.UTF_8).length - "\n]}".length()), offsets);
+	}
+
+	@Test
+	void readTailSurfacesMalformedElementsBeforeTheEnd() {
+		// Un error de sintaxis en medio del archivo no es una cola incompleta: no debe bloquear en silencio
+		String tail = ",\n  {\"timestamp_ms\": x},\n  {\"timestamp_ms\": 4}\n]}";
+
+		assertThrows(StreamReadException.class, () -> reader.readTail(bytes(tail), 100, (detection, endOffset) -> { }));
+	}
+
+	@Test
+	void readTailRejectsContentThatIsNotAContinuation() throws Exception {
+		// El offset cae en medio de un elemento de un archivo reescrito
+		assertEquals(DetectionStreamReader.NOT_A_TAIL,
+			reader.readTail(bytes("\"date\": \"2025-05-30 16:00:00\"},\n  {\"timestamp_ms\": 2}"), 40, (detection, endOffset) -> { }));
+	}
+
+	private static ByteArrayInputStream bytes(String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private long read(Path file, long offset, List<Long> timestamps) throws Exception {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return reader.readLines(channel, offset, (detection, endOffset) -> timestamps.add(detection.getTimestamp_ms()));
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * El hash del prefijo se continúa leyendo solo lo agregado y distingue un agregado al final
+ * de un cambio en lo ya ingerido. La identidad guardada en el checkpoint se continúa igual y separa
+ * una rotación (otro archivo o cabecera distinta) de una edición de lo ya ingerido.
+ */
+class FileFingerprintTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void extendsPrefixHashAndDetectsEditsBeforeTheOffset() throws Exception {
+		Path file = dir.resolve("detections.json");
+		String ingested = "{\"detections\": [{\"timestamp_ms\": 1}";
+		Files.writeString(file, ingested + "]}");
+		long offset = ingested.length();
+		FileFingerprint.Scan before = FileFingerprint.scan(file, offset);
+
+		Files.writeString(file, ingested + ", {\"timestamp_ms\": 2}]}");
+		FileFingerprint.Scan appended = FileFingerprint.scan(file, offset);
+		assertEquals(before.prefixHash(), appended.prefixHash());
+		assertNotEquals(before.contentHash(), appended.contentHash());
+
+		long newOffset = offset + ", {\"timestamp_ms\": 2}".length();
+		long extended = FileFingerprint.extend(file, offset, newOffset, before.prefixHash());
+		assertEquals(FileFingerprint.scan(file, newOffset).prefixHash(), extended);
+
+		Files.writeString(file, ingested.replace('1', '7') + "]}");
+		assertNotEquals(before.prefixHash(), FileFingerprint.scan(file, offset).prefixHash());
+
+		Files.writeString(file, "{}", StandardOpenOption.TRUNCATE_EXISTING);
+		assertNull(FileFingerprint.scan(file, offset).prefixHash());
+	}
+
+	@Test
+	void identityExtendsOverAppendsAndSeparatesRotationFromEdits() throws Exception {
+		Path file = dir.resolve("detections.ndjson");
+		String head = "{\"timestamp_ms\": 1, \"date\": \"2025-05-30 16:00:00\"}\n".repeat(8);
+		String ingested = head + "{\"timestamp_ms\": 9}\n";
+		Files.writeString(file, ingested);
+		FileFingerprint.Identity first = FileFingerprint.Identity.of(file, 10);
+
+		Files.writeString(file, "{\"timestamp_ms\": 10}\n", StandardOpenOption.APPEND);
+		long offset = Files.size(file);
+		FileFingerprint.Identity extended = first.extend(file, ingested.length()).extend(file, offset);
+		assertEquals(FileFingerprint.Identity.of(file, offset), extended);
+		assertEquals(extended, FileFingerprint.Identity.decode(extended.encode()));
+		assertTrue(extended.sameHead(file));
+		assertTrue(extended.matches(file, FileFingerprint.scan(file, offset)));
+
+		// Edición de lo ya ingerido después de la cabecera: no es una rotación, pero el prefijo cambió
+		Files.writeString(file, Files.readString(file).replace("\"timestamp_ms\": 9", "\"timestamp_ms\": 8"));
+		assertTrue(extended.sameHead(file));
+		assertFalse(extended.matches(file, FileFingerprint.scan(file, offset)));
+
+		// Reemplazado por otro archivo con el mismo contenido (escritura y renombrado, como una rotación)
+		Path replacement = Files.writeString(dir.resolve("detections.ndjson.tmp"), Files.readString(file));
+		Files.move(replacement, file, StandardCopyOption.REPLACE_EXISTING);
+		assertFalse(extended.sameHead(file));
+
+		assertNull(FileFingerprint.Identity.decode("(dev=1,ino=2)|256|abc"));
+	}
+}
@@ -0,0 +1,41 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * El id de cada fuente sale de la ruta relativa a su raíz: detections.* toma el nombre de su directorio
+ * y el archivo de la raíz es la fuente por defecto. Los patrones por defecto alcanzan directorios anidados.
+ */
+class FileWatcherServiceTests {
+
+	private final Path root = Path.of("../detections");
+
+	@Test
+	void derivesSourceIdFromPathRelativeToRoot() {
+		assertEquals("default", FileWatcherService.sourceIdOf(root, root.resolve("detections.json")));
+		assertEquals("default", FileWatcherService.sourceIdOf(root, root.resolve("detections.ndjson")));
+		assertEquals("cam1", FileWatcherService.sourceIdOf(root, root.resolve("cam1/detections.json")));
+		assertEquals("sitio/norte", FileWatcherService.sourceIdOf(root, root.resolve("sitio/norte/detections.ndjson")));
+		assertEquals("cam2", FileWatcherService.sourceIdOf(root, root.resolve("cam2.json")));
+		assertEquals("sitio/cam3", FileWatcherService.sourceIdOf(Path.of("../detections/"), Path.of("../detections/./sitio/cam3.ndjson")));
+	}
+
+	@Test
+	void defaultPatternsMatchNestedDirectories() {
+		List<String> patterns = List.of(FileWatcherService.DEFAULT_PATTERNS.split(","));
+
+		assertTrue(FileWatcherService.matchesAny(patterns, root, root.resolve("detections.json")));
+		assertTrue(FileWatcherService.matchesAny(patterns, root, root.resolve("cam1/detections.ndjson")));
+		assertTrue(FileWatcherService.matchesAny(patterns, root, root.resolve("sitio/norte/detections.ndjson")));
+		assertTrue(FileWatcherService.matchesAny(patterns, root, root.resolve("sitio/norte/detections.json")));
+		assertFalse(FileWatcherService.matchesAny(patterns, root, root.resolve("sitio/norte/otro.json")));
+		assertFalse(FileWatcherService.matchesAny(patterns, root, root.resolve("cam1/detections.json.tmp")));
+	}
+}
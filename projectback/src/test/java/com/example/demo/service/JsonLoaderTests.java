@@ -0,0 +1,189 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.entity.Detection;
+import com.example.demo.entity.IngestCheckpoint;
+import com.example.demo.repository.IngestCheckpointRepository;
+
+/**
+ * Ingesta incremental de un documento JSON contra la base de datos: solo se inserta la cola agregada
+ * después del checkpoint, una cola incompleta espera a la próxima lectura y un archivo reescrito se
+ * recarga por completo, reiniciando el checkpoint. La recarga forzada reemplaza solo la fuente por defecto.
+ * Cada prueba usa su propia fuente y la borra al terminar, junto con su checkpoint.
+ */
+@SpringBootTest
+class JsonLoaderTests {
+
+	private static final List<String> SOURCES = List.of("test-append", "test-tail", "test-rewrite", "test-replace", "test-camera",
+		Detection.DEFAULT_SOURCE);
+
+	@Autowired
+	private JsonLoader jsonLoader;
+
+	@Autowired
+	private IngestCheckpointRepository checkpointRepository;
+
+	@Autowired
+	private DetectionDataLifecycleService lifecycleService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@TempDir
+	Path dir;
+
+	@Value("${app.detections.file-path}")
+	private Path reloadFile;
+
+	@AfterEach
+	void removeTestSources() throws Exception {
+		SOURCES.forEach(lifecycleService::deleteSource);
+		checkpointRepository.deleteById(checkpointId(dir.resolve("detections.json")));
+		checkpointRepository.deleteById(checkpointId(reloadFile));
+		Files.deleteIfExists(reloadFile);
+	}
+
+	@Test
+	void appendsOnlyTheTailAfterTheCheckpoint() throws Exception {
+		Path file = dir.resolve("detections.json");
+		String first = detection(10, 1);
+		String second = detection(20, 2);
+		String third = detection(30, 3);
+		Files.writeString(file, document(first, second));
+
+		jsonLoader.ingestIncrementally(file.toString(), "test-append");
+
+		IngestCheckpoint loaded = checkpoint(file);
+		assertEquals(2, count("test-append"));
+		assertEquals(20L, loaded.getLastTimestampMs());
+		assertEquals(endOf(document(first, second), second), loaded.getFileOffset());
+		assertNotNull(loaded.getFileIdentity());
+
+		Files.writeString(file, document(first, second, third));
+
+		assertEquals(1, jsonLoader.ingestIncrementally(file.toString(), "test-append"));
+		IngestCheckpoint appended = checkpoint(file);
+		assertEquals(3, count("test-append"));
+		assertEquals(30L, appended.getLastTimestampMs());
+		assertEquals(endOf(document(first, second, third), third), appended.getFileOffset());
+		assertEquals(3L, appended.getDetectionsIngested());
+	}
+
+	@Test
+	void leavesAnIncompleteTailForTheNextRead() throws Exception {
+		Path file = dir.resolve("detections.json");
+		String first = detection(10, 1);
+		String second = detection(20, 2);
+		Files.writeString(file, document(first));
+		jsonLoader.ingestIncrementally(file.toString(), "test-tail");
+		long offset = checkpoint(file).getFileOffset();
+
+		// El detector todavía está escribiendo el segundo elemento
+		Files.writeString(file, "{\"detections\": [\n" + first + ",\n" + second.substring(0, second.length() / 2));
+
+		assertEquals(0, jsonLoader.ingestIncrementally(file.toString(), "test-tail"));
+		assertEquals(offset, checkpoint(file).getFileOffset());
+		assertEquals(1, count("test-tail"));
+
+		Files.writeString(file, document(first, second));
+
+		assertEquals(1, jsonLoader.ingestIncrementally(file.toString(), "test-tail"));
+		assertEquals(2, count("test-tail"));
+	}
+
+	@Test
+	void reloadsAFileRewrittenWithOlderDetections() throws Exception {
+		Path file = dir.resolve("detections.json");
+		String first = detection(10, 1);
+		String second = detection(20, 2);
+		Files.writeString(file, document(first, second));
+		jsonLoader.ingestIncrementally(file.toString(), "test-rewrite");
+
+		// Mismo inicio, pero lo que sigue al checkpoint es anterior a lo ya ingerido
+		Files.writeString(file, document(first, second, detection(5, 4)));
+		jsonLoader.ingestIncrementally(file.toString(), "test-rewrite");
+
+		IngestCheckpoint reloaded = checkpoint(file);
+		assertEquals(3, count("test-rewrite"));
+		assertEquals(3L, reloaded.getDetectionsIngested());
+		assertEquals(Files.size(file) - "\n]}".length(), reloaded.getFileOffset());
+	}
+
+	@Test
+	void reloadsAReplacedFile() throws Exception {
+		Path file = dir.resolve("detections.json");
+		Files.writeString(file, document(detection(10, 1), detection(20, 2)));
+		jsonLoader.ingestIncrementally(file.toString(), "test-replace");
+
+		Files.delete(file);
+		Files.writeString(file, document(detection(100, 5), detection(200, 6), detection(300, 7)));
+		jsonLoader.ingestIncrementally(file.toString(), "test-replace");
+
+		IngestCheckpoint reloaded = checkpoint(file);
+		assertEquals(3, count("test-replace"));
+		assertEquals(3L, reloaded.getDetectionsIngested());
+		assertEquals(300L, reloaded.getLastTimestampMs());
+	}
+
+	@Test
+	void forceReloadReplacesTheDefaultSourceAndKeepsOtherCameras() throws Exception {
+		Path camera = dir.resolve("detections.json");
+		Files.writeString(camera, document(detection(10, 1), detection(20, 2)));
+		jsonLoader.ingestIncrementally(camera.toString(), "test-camera");
+		Files.createDirectories(reloadFile.getParent());
+		Files.writeString(reloadFile, document(detection(100, 1), detection(200, 2), detection(300, 3)));
+
+		jsonLoader.forceReload();
+
+		assertEquals(3, count(Detection.DEFAULT_SOURCE));
+		assertEquals(2, count("test-camera"));
+
+		Files.writeString(reloadFile, document(detection(400, 4)));
+		jsonLoader.forceReload();
+
+		assertEquals(1, count(Detection.DEFAULT_SOURCE));
+		assertEquals(2, count("test-camera"));
+		assertEquals(400L, checkpoint(reloadFile).getLastTimestampMs());
+	}
+
+	private IngestCheckpoint checkpoint(Path file) {
+		return checkpointRepository.findById(checkpointId(file)).orElseThrow();
+	}
+
+	private static String checkpointId(Path file) {
+		return file.toAbsolutePath().normalize().toString();
+	}
+
+	private long count(String sourceId) {
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM detections WHERE source_id = ?", Long.class, sourceId);
+	}
+
+	private static long endOf(String document, String element) {
+		return document.indexOf(element) + element.length();
+	}
+
+	private static String document(String... detections) {
+		return Arrays.stream(detections).collect(Collectors.joining(",\n", "{\"detections\": [\n", "\n]}"));
+	}
+
+	private static String detection(long timestampMs, int cars) {
+		return "{\"timestamp_ms\": " + timestampMs + ", \"date\": \"2031-01-01 10:00:00\", \"objects_total\": {\"car\": "
+			+ cars + "}, \"objects_by_lane\": {\"lane_1\": {\"car\": " + cars + "}}, \"avg_speed_by_lane\": {\"lane_1\": 40.0}}";
+	}
+}
@@ -0,0 +1,165 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.demo.BenchmarkReport;
+import com.example.demo.config.AppConfig;
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * El lector mapeado entrega los mismos elementos y offsets que el lector en streaming,
+ * también cuando un elemento cruza el borde de una ventana, sea cual sea el byte en el que cae el borde.
+ * La medición de rendimiento es un benchmark (mvn test -Pbenchmark); el tamaño del archivo se cambia
+ * con -Dmapped.benchmark.mb (p. ej. 5120 para 5 GB) y el resultado va a target/benchmarks.
+ */
+class MappedDetectionReaderTests {
+
+	private static final long BENCHMARK_MB = Long.getLong("mapped.benchmark.mb", 32);
+
+	private final ObjectMapper mapper = new AppConfig().objectMapper();
+	private final DetectionStreamReader streamReader = new DetectionStreamReader(mapper);
+	private final MappedDetectionReader mappedReader = new MappedDetectionReader(mapper);
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void matchesStreamReaderAcrossWindowBorders() throws Exception {
+		Path file = dir.resolve("detections.json");
+		Files.writeString(file, """
+			{"source": {"camera": "a}[\\"b"}, "detections": [
+			  {"timestamp_ms": 1, "date": "2025-05-30 16:00:00", "objects_total": {"car": 2}},
+			  {"timestamp_ms": 2, "date": "llaves { y [ dentro de \\"strings\\"", "objects_by_lane": {"lane_1": {"car": 1}}},
+			  {"timestamp_ms": 3, "avg_speed_by_lane": {"lane_1": 20.5, "lane_2": 31.0}}
+			], "version": 2}
+			""");
+
+		List<String> expected = readWithStream(file);
+		for (long window : new long[] {128, 200, 4096}) {
+			assertEquals(expected, readWithMapped(file, window), "ventana de " + window + " bytes");
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			assertThrows(IOException.class, () -> mappedReader.readDocument(channel, 64, (detection, endOffset) -> { }));
+		}
+	}
+
+	@Test
+	void resumesFromTheElementStartAtEveryWindowBorder() throws Exception {
+		// Con cualquier tamaño de ventana el borde cae en otro byte: dentro de un token, entre elementos o justo
+		// tras un cierre, casos en los que Jackson ya agotó la ventana leyendo por adelantado
+		Path file = dir.resolve("detections.json");
+		generate(file, 2048);
+		List<String> expected = readWithStream(file);
+
+		for (long window = 400; window <= Files.size(file); window++) {
+			assertEquals(expected, readWithMapped(file, window), "ventana de " + window + " bytes");
+		}
+	}
+
+	@Test
+	void skipsUnmappableElementsAndSurfacesMalformedOnes() throws Exception {
+		Path file = dir.resolve("detections.json");
+		Files.writeString(file, """
+			{"detections": [
+			  {"timestamp_ms": 1},
+			  {"timestamp_ms": "no es un número", "objects_total": {"car": 1}},
+			  {"timestamp_ms": 3}
+			]}
+			""");
+
+		assertEquals(readWithStream(file), readWithMapped(file, 100));
+		assertEquals(2, readWithMapped(file, 100).size());
+
+		Files.writeString(file, """
+			{"detections": [
+			  {"timestamp_ms": 1},
+			  {"timestamp_ms": x},
+			  {"timestamp_ms": 3}
+			]}
+			""");
+		assertThrows(StreamReadException.class, () -> readWithMapped(file, 4096));
+	}
+
+	/**
+	 * Genera un volcado de BENCHMARK_MB y compara el rendimiento de lectura de ambos lectores.
+	 */
+	@Test
+	@Tag("benchmark")
+	void reportsThroughput() throws Exception {
+		Path file = dir.resolve("archive.json");
+		generate(file, BENCHMARK_MB * 1024 * 1024);
+		double mb = Files.size(file) / (1024.0 * 1024.0);
+
+		long[] streamed = new long[1];
+		long start = System.nanoTime();
+		try (InputStream input = new BufferedInputStream(Files.newInputStream(file))) {
+			streamReader.readDocument(input, (detection, endOffset) -> streamed[0]++);
+		}
+		double streamSeconds = (System.nanoTime() - start) / 1e9;
+
+		long[] mapped = new long[1];
+		start = System.nanoTime();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			mappedReader.readDocument(channel, 256L * 1024 * 1024, (detection, endOffset) -> mapped[0]++);
+		}
+		double mappedSeconds = (System.nanoTime() - start) / 1e9;
+
+		BenchmarkReport.append(getClass(), String.format("Volcado de %.0f MB (%d detecciones): streaming %.0f MB/s, mapeado %.0f MB/s",
+			mb, streamed[0], mb / streamSeconds, mb / mappedSeconds));
+		assertEquals(streamed[0], mapped[0]);
+	}
+
+	private List<String> readWithMapped(Path file, long window) throws Exception {
+		List<String> result = new ArrayList<>();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			mappedReader.readDocument(channel, window,
+				(detection, endOffset) -> result.add(detection.getTimestamp_ms() + "@" + endOffset + ":" + detection.getDate()));
+		}
+		return result;
+	}
+
+	private List<String> readWithStream(Path file) throws Exception {
+		List<String> result = new ArrayList<>();
+		try (InputStream input = Files.newInputStream(file)) {
+			streamReader.readDocument(input,
+				(detection, endOffset) -> result.add(detection.getTimestamp_ms() + "@" + endOffset + ":" + detection.getDate()));
+		}
+		return result;
+	}
+
+	private static void generate(Path file, long bytes) throws Exception {
+		try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+			writer.write("{\"detections\": [\n");
+			long written = 0;
+			for (long i = 0; written < bytes; i++) {
+				String detection = String.format(
+					"%s{\"timestamp_ms\": %d, \"date\": \"2025-05-%02d %02d:%02d:%02d\", "
+						+ "\"objects_total\": {\"car\": %d, \"bus\": %d, \"truck\": %d}, "
+						+ "\"objects_by_lane\": {\"lane_1\": {\"car\": %d, \"bus\": 0}, \"lane_2\": {\"car\": %d, \"truck\": 1}}, "
+						+ "\"avg_speed_by_lane\": {\"lane_1\": %d.25, \"lane_2\": %d.5, \"lane_3\": 18.75}}",
+					i == 0 ? "" : ",\n", i * 100, 1 + i / 86400 % 28, i / 3600 % 24, i / 60 % 60, i % 60,
+					i % 9, i % 3, i % 4, i % 5, i % 7, 10 + i % 50, 5 + i % 40);
+				writer.write(detection);
+				written += detection.length();
+			}
+			writer.write("\n]}\n");
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.example.demo.repository.IngestCheckpointRepository;
+import com.example.demo.service.analytics.RollupGranularity;
+import com.example.demo.service.analytics.TimeRange;
+
+/**
+ * Rollups temporales: la granularidad se elige según max-points (500 por defecto) y cada ingesta
+ * suma sus deltas a los buckets existentes en lugar de reemplazarlos. La fuente de prueba se borra al
+ * terminar, lo que regenera los rollups de sus días.
+ */
+@SpringBootTest
+class TrafficRollupServiceTests {
+
+	@Autowired
+	private TrafficRollupService rollupService;
+
+	private static final String SOURCE = "test-rollup";
+
+	@Autowired
+	private JsonLoader jsonLoader;
+
+	@Autowired
+	private DetectionDataLifecycleService lifecycleService;
+
+	@Autowired
+	private IngestCheckpointRepository checkpointRepository;
+
+	@TempDir
+	Path dir;
+
+	@AfterEach
+	void removeTestSource() {
+		lifecycleService.deleteSource(SOURCE);
+		checkpointRepository.deleteById(dir.resolve("detections.ndjson").toAbsolutePath().normalize().toString());
+	}
+
+	@Test
+	void choosesTheFinestGranularityWithinMaxPoints() {
+		assertEquals(RollupGranularity.MINUTE,
+			rollupService.chooseGranularity(TimeRange.parse("2032-01-01 00:00:00", "2032-01-01 02:00:00")));
+		assertEquals(RollupGranularity.HOUR, rollupService.chooseGranularity(TimeRange.parse("2032-01-01", "2032-01-04")));
+		assertEquals(RollupGranularity.DAY, rollupService.chooseGranularity(TimeRange.parse("2032-01-01", "2032-03-01")));
+	}
+
+	@Test
+	void upsertAddsToExistingBuckets() throws Exception {
+		Path file = dir.resolve("detections.ndjson");
+		Files.writeString(file, line(1, "2032-02-02 10:00:05", 2, 30.0) + line(2, "2032-02-02 10:00:30", 3, 50.0));
+		jsonLoader.ingestLines(file.toString(), SOURCE);
+		Files.writeString(file, line(3, "2032-02-02 10:00:50", 4, 40.0), StandardOpenOption.APPEND);
+		jsonLoader.ingestLines(file.toString(), SOURCE);
+
+		List<TrafficRollupService.Bucket> buckets = rollupService.readBuckets(
+			TimeRange.parse("2032-02-02 10:00:00", "2032-02-02 10:01:00"), RollupGranularity.MINUTE, null);
+
+		assertEquals(1, buckets.size());
+		assertEquals("2032-02-02 10:00:00", buckets.get(0).start());
+		assertEquals(3, buckets.get(0).detections());
+		assertEquals(Map.of("car", 9L), buckets.get(0).totals());
+		assertEquals(Map.of("lane_1", 40.0), buckets.get(0).laneSpeeds());
+	}
+
+	private static String line(long timestampMs, String date, int cars, double speed) {
+		return "{\"timestamp_ms\": " + timestampMs + ", \"date\": \"" + date + "\", \"objects_total\": {\"car\": " + cars
+			+ "}, \"objects_by_lane\": {\"lane_1\": {\"car\": " + cars + "}}, \"avg_speed_by_lane\": {\"lane_1\": " + speed + "}}\n";
+	}
+}
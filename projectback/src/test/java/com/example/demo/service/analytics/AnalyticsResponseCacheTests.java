@@ -0,0 +1,61 @@
+package com.example.demo.service.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class AnalyticsResponseCacheTests {
+
+	private AnalyticsResponseCache cache;
+	private final AtomicInteger loads = new AtomicInteger();
+
+	@BeforeEach
+	void setUp() {
+		cache = new AnalyticsResponseCache();
+		ReflectionTestUtils.setField(cache, "enabled", true);
+		ReflectionTestUtils.setField(cache, "maxEntries", 2);
+		ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+	}
+
+	private Integer load() {
+		return loads.incrementAndGet();
+	}
+
+	@Test
+	void reusesEntryUntilInvalidated() {
+		assertEquals(1, cache.get("volume", this::load, DetectionFilter.NONE));
+		assertEquals(1, cache.get("volume", this::load, DetectionFilter.NONE));
+		assertEquals(2, cache.get("volume", this::load, DetectionFilter.of(null, null, "lane_1", null, null)));
+
+		cache.invalidate("test");
+
+		assertEquals(3, cache.get("volume", this::load, DetectionFilter.NONE));
+	}
+
+	@Test
+	void dropsResultComputedAcrossAnInvalidation() {
+		Integer stale = cache.get("volume", () -> {
+			cache.invalidate("ingesta concurrente");
+			return load();
+		});
+
+		assertEquals(1, stale);
+		assertEquals(2, cache.get("volume", this::load));
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedEntry() {
+		cache.get("a", this::load);
+		cache.get("b", this::load);
+		cache.get("a", this::load);
+		cache.get("c", this::load);
+
+		assertEquals(1, cache.get("a", this::load));
+		assertEquals(4, cache.get("b", this::load));
+		assertEquals(2L, cache.getStatus().get("evictions"));
+	}
+}
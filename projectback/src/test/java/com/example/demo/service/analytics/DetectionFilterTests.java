@@ -0,0 +1,47 @@
+package com.example.demo.service.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Los parámetros vacíos equivalen a no filtrar; solo un filtro sin ningún parámetro usa los agregados globales.
+ */
+class DetectionFilterTests {
+
+	@Test
+	void blankParametersAreIgnored() {
+		DetectionFilter filter = DetectionFilter.of(" ", null, "", "  ", null);
+
+		assertTrue(filter.isEmpty());
+		assertEquals(DetectionFilter.NONE, filter);
+	}
+
+	@Test
+	void laneAndTypeAreTrimmed() {
+		DetectionFilter filter = DetectionFilter.of(null, null, " lane_1 ", "car ", null);
+
+		assertFalse(filter.isEmpty());
+		assertEquals("lane_1", filter.lane());
+		assertEquals("car", filter.vehicleType());
+		assertNull(filter.source());
+	}
+
+	@Test
+	void aRangeAloneIsAFilter() {
+		DetectionFilter filter = DetectionFilter.of("2025-05-30", null, null, null, null);
+
+		assertFalse(filter.isEmpty());
+		assertEquals("2025-05-30 00:00:00", filter.range().from());
+		assertNull(filter.range().to());
+	}
+
+	@Test
+	void invalidRangesAreRejected() {
+		assertThrows(IllegalArgumentException.class, () -> DetectionFilter.of("2025-05-31", "2025-05-30", null, null, null));
+	}
+}
@@ -0,0 +1,54 @@
+package com.example.demo.service.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class DetectionPayloadTests {
+
+	@Test
+	void roundTripKeepsCountsSpeedsAndAbsentValues() {
+		Map<String, Map<String, Integer>> lanes = new HashMap<>();
+		lanes.put("lane_1", Map.of("car", 3, "truck", 0));
+		lanes.put("lane_2", null);
+		DetectionPayload original = DetectionPayload.fromMaps(Map.of("car", 4, "bus", 1), lanes,
+			Map.of("lane_1", 21.5, "lane_3", 30.25));
+
+		DetectionPayload decoded = DetectionPayload.decode(original.encode());
+
+		assertEquals(4, decoded.total("car"));
+		assertEquals(1, decoded.total("bus"));
+		assertEquals(DetectionPayload.ABSENT, decoded.total("truck"));
+		assertEquals(3, decoded.laneVehicleCount("lane_1", "car"));
+		assertEquals(0, decoded.laneVehicleCount("lane_1", "truck"));
+		assertEquals(DetectionPayload.ABSENT, decoded.laneVehicleCount("lane_1", "bus"));
+		assertTrue(decoded.hasLaneCounts(decoded.laneIndex("lane_1")));
+		assertFalse(decoded.hasLaneCounts(decoded.laneIndex("lane_2")));
+		assertEquals(21.5, decoded.laneSpeed("lane_1"));
+		assertEquals(30.25, decoded.laneSpeed("lane_3"));
+		assertTrue(Double.isNaN(decoded.laneSpeed("lane_2")));
+	}
+
+	@Test
+	void emptyColumnsDecodeToEmptyPayload() {
+		DetectionPayload decoded = DetectionPayload.decode(DetectionPayload.fromMaps(null, null, null).encode());
+
+		assertEquals(0, decoded.vehicleTypeCount());
+		assertEquals(0, decoded.laneCount());
+	}
+
+	@Test
+	void rejectsTruncatedPayload() {
+		byte[] encoded = DetectionPayload.fromMaps(Map.of("car", 1), null, null).encode();
+		byte[] truncated = Arrays.copyOf(encoded, encoded.length - 2);
+
+		assertThrows(IllegalArgumentException.class, () -> DetectionPayload.decode(truncated));
+	}
+}
@@ -0,0 +1,45 @@
+package com.example.demo.service.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class LiveDeltaTests {
+
+	private static final DetectionPayload PAYLOAD = DetectionPayload.fromMaps(Map.of("car", 5, "bus", 1),
+		Map.of("lane_1", Map.of("car", 3), "lane_2", Map.of("car", 2, "bus", 1)),
+		Map.of("lane_1", 40.0, "lane_2", 20.0));
+
+	@Test
+	void projectsDetectionOntoLaneAndTypeFilter() {
+		LiveDelta delta = new LiveDelta();
+
+		assertTrue(delta.add(7, PAYLOAD, DetectionFilter.of(null, null, "lane_2", "bus", null)));
+
+		Map<String, Object> map = delta.toMap();
+		assertEquals(Map.of("bus", 1L), map.get("totals"));
+		assertEquals(Map.of("lane_2", Map.of("bus", 1L)), map.get("laneCounts"));
+		assertEquals(Map.of("lane_2", Map.of("count", 1L, "sum", 20.0)), map.get("laneSpeeds"));
+		assertFalse(new LiveDelta().add(8, PAYLOAD, DetectionFilter.of(null, null, "lane_3", null, null)));
+	}
+
+	@Test
+	void mergeAddsCountsAndKeepsHighestId() {
+		LiveDelta first = new LiveDelta();
+		first.add(7, PAYLOAD, DetectionFilter.NONE);
+		LiveDelta second = new LiveDelta();
+		second.add(9, PAYLOAD, DetectionFilter.NONE);
+
+		first.merge(second);
+
+		Map<String, Object> map = first.toMap();
+		assertEquals(2L, map.get("detections"));
+		assertEquals(9L, map.get("maxDetectionId"));
+		assertEquals(Map.of("bus", 2L, "car", 10L), map.get("totals"));
+		assertEquals(Map.of("count", 2L, "sum", 80.0), ((Map<?, ?>) map.get("laneSpeeds")).get("lane_1"));
+	}
+}
@@ -0,0 +1,81 @@
+package com.example.demo.service.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class RequestCoalescerTests {
+
+	private final RequestCoalescer coalescer = new RequestCoalescer();
+
+	@Test
+	void concurrentCallersShareOneExecution() throws Exception {
+		int callers = 8;
+		AtomicInteger executions = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(callers);
+		try {
+			List<Future<Integer>> results = new ArrayList<>();
+			for (int i = 0; i < callers; i++) {
+				results.add(pool.submit(() -> coalescer.execute("volume", "key", () -> {
+					executions.incrementAndGet();
+					await(release);
+					return 42;
+				})));
+			}
+			while (coalescer.getInFlight() == 0 || waiting() < callers - 1) {
+				Thread.sleep(5);
+			}
+			release.countDown();
+
+			for (Future<Integer> result : results) {
+				assertEquals(42, result.get(5, TimeUnit.SECONDS));
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		assertEquals(1, executions.get());
+		assertEquals(0, coalescer.getInFlight());
+		@SuppressWarnings("unchecked")
+		Map<String, Object> stats = (Map<String, Object>) coalescer.getStats().get("volume");
+		assertEquals(1L, stats.get("executions"));
+		assertEquals((long) callers - 1, stats.get("coalesced"));
+	}
+
+	@Test
+	void failureIsRethrownAndNextCallRunsAgain() {
+		IllegalStateException failure = new IllegalStateException("pool agotado");
+
+		assertSame(failure, assertThrows(IllegalStateException.class,
+			() -> coalescer.execute("volume", "key", () -> { throw failure; })));
+		assertEquals(7, coalescer.execute("volume", "key", () -> 7));
+	}
+
+	// Las llamadas que se unieron al cálculo en curso ya están contadas como coalesced
+	private long waiting() {
+		@SuppressWarnings("unchecked")
+		Map<String, Object> stats = (Map<String, Object>) coalescer.getStats().get("volume");
+		return stats != null ? (Long) stats.get("coalesced") : 0L;
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package com.example.demo.service.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class RingWindowMetricsTests {
+
+	private static DetectionPayload cars(int count, double speed) {
+		return DetectionPayload.fromMaps(Map.of("car", count), Map.of("lane_1", Map.of("car", count)),
+			Map.of("lane_1", speed));
+	}
+
+	@Test
+	void expiresSecondsAsTheClockAdvances() {
+		RingWindowMetrics metrics = new RingWindowMetrics(new long[] { 60, 300 }, 1_000);
+		metrics.add(1_000, cars(2, 20.0));
+		metrics.add(1_030, cars(3, 40.0));
+
+		assertEquals(5L, metrics.window(0).get("vehicles"));
+
+		metrics.advance(1_070);
+		assertEquals(3L, metrics.window(0).get("vehicles"));
+		assertEquals(5L, metrics.window(1).get("vehicles"));
+
+		metrics.advance(1_299);
+		assertEquals(0L, metrics.window(0).get("vehicles"));
+		assertEquals(Map.of("vehicles", 5L, "speedSamples", 2L, "avgSpeed", 30.0),
+			((Map<?, ?>) metrics.window(1).get("lanes")).get("lane_1"));
+
+		metrics.advance(1_300);
+		assertEquals(3L, metrics.window(1).get("vehicles"));
+	}
+
+	@Test
+	void reusesRingSlotsAndDropsLateDetections() {
+		RingWindowMetrics metrics = new RingWindowMetrics(new long[] { 60 }, 0);
+		metrics.add(10, cars(1, 10.0));
+		metrics.add(70, cars(4, 10.0));
+		metrics.add(5, cars(9, 10.0));
+
+		assertEquals(4L, metrics.window(0).get("vehicles"));
+		assertEquals(1L, metrics.window(0).get("detections"));
+		assertEquals(1L, metrics.getLateDetections());
+
+		metrics.advance(10_000);
+		metrics.add(9_990, cars(6, 10.0));
+		assertEquals(6L, metrics.window(0).get("vehicles"));
+	}
+}
@@ -0,0 +1,65 @@
+package com.example.demo.service.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SeriesDownsamplerTests {
+
+	@Test
+	void lttbKeepsEndpointsAndPeak() {
+		LttbDownsampler downsampler = new LttbDownsampler(10, 1000);
+		for (int i = 0; i < 1000; i++) {
+			double value = i == 437 ? 500.0 : i % 7;
+			downsampler.accept("t" + i, i, new double[] {value});
+		}
+
+		SeriesDownsampler.Result result = downsampler.finish();
+
+		assertEquals(10, result.timestamps().size());
+		assertEquals(1000, result.sourcePoints());
+		assertEquals("t0", result.timestamps().get(0));
+		assertEquals("t999", result.timestamps().get(9));
+		assertTrue(result.timestamps().contains("t437"));
+	}
+
+	@Test
+	void lttbPassesThroughShortSeries() {
+		LttbDownsampler downsampler = new LttbDownsampler(10, 4);
+		for (int i = 0; i < 4; i++) {
+			downsampler.accept("t" + i, i, new double[] {i});
+		}
+
+		assertEquals(List.of(0.0, 1.0, 2.0, 3.0), downsampler.finish().series(0));
+	}
+
+	@Test
+	void timeBucketsAggregateAndSkipMissingValues() {
+		TimeBucketDownsampler downsampler = new TimeBucketDownsampler(Duration.ofMinutes(1),
+			TimeBucketDownsampler.Aggregation.AVG);
+		downsampler.accept("a", 0, new double[] {2.0, Double.NaN});
+		downsampler.accept("b", 30_000, new double[] {4.0, 10.0});
+		downsampler.accept("c", 60_000, new double[] {6.0, Double.NaN});
+
+		SeriesDownsampler.Result result = downsampler.finish();
+
+		assertEquals(2, result.timestamps().size());
+		assertEquals(List.of(3.0, 6.0), result.series(0));
+		assertEquals(10.0, result.series(1).get(0));
+		assertTrue(result.series(1).get(1).isNaN());
+	}
+
+	@Test
+	void parsesBucketSizes() {
+		assertEquals(Duration.ofMinutes(5), TimeBucketDownsampler.parseBucket("5m"));
+		assertEquals(Duration.ofHours(1), TimeBucketDownsampler.parseBucket("1h"));
+		assertEquals(Duration.ofMinutes(15), TimeBucketDownsampler.parseBucket("PT15M"));
+		assertThrows(IllegalArgumentException.class, () -> TimeBucketDownsampler.parseBucket("5x"));
+		assertThrows(IllegalArgumentException.class, () -> TimeBucketDownsampler.parseBucket("0s"));
+	}
+}
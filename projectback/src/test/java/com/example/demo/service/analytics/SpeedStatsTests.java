@@ -0,0 +1,75 @@
+package com.example.demo.service.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class SpeedStatsTests {
+
+	@Test
+	void matchesTwoPassMeanAndVariance() {
+		double[] speeds = new Random(7).doubles(5_000, 5.0, 90.0).toArray();
+		SpeedStats stats = new SpeedStats();
+		for (double speed : speeds) {
+			stats.add(speed);
+		}
+		stats.add(0.0);
+
+		double mean = Arrays.stream(speeds).average().orElseThrow();
+		double variance = Arrays.stream(speeds).map(s -> (s - mean) * (s - mean)).sum() / (speeds.length - 1);
+
+		assertEquals(speeds.length, stats.getCount());
+		assertEquals(mean, stats.getMean(), 1e-9);
+		assertEquals(Math.sqrt(variance), stats.getStdDev(), 1e-9);
+		assertEquals(Arrays.stream(speeds).min().orElseThrow(), stats.getMin());
+		assertEquals(Arrays.stream(speeds).max().orElseThrow(), stats.getMax());
+	}
+
+	@Test
+	void mergeAndSqlMomentsEqualSinglePass() {
+		Random random = new Random(11);
+		SpeedStats left = new SpeedStats();
+		SpeedStats right = new SpeedStats();
+		SpeedStats combined = new SpeedStats();
+		SpeedStats seeded = new SpeedStats();
+		double sum = 0;
+		double sumSquares = 0;
+		for (int i = 0; i < 2_000; i++) {
+			double speed = 20.0 + random.nextGaussian() * 3.0 + (i % 2 == 0 ? 0.0 : 25.0);
+			(i % 2 == 0 ? left : right).add(speed);
+			combined.add(speed);
+			seeded.sketch().addToBucket(SpeedQuantileSketch.index(speed), 1);
+			sum += speed;
+			sumSquares += speed * speed;
+		}
+		seeded.addMoments(combined.getCount(), sum, sumSquares, combined.getMin(), combined.getMax());
+		left.merge(right);
+
+		for (SpeedStats stats : new SpeedStats[] { left, seeded }) {
+			assertEquals(combined.getCount(), stats.getCount());
+			assertEquals(combined.getMean(), stats.getMean(), 1e-9);
+			assertEquals(combined.getStdDev(), stats.getStdDev(), 1e-6);
+			assertEquals(combined.quantile(0.85), stats.quantile(0.85));
+		}
+	}
+
+	@Test
+	void quantilesStayWithinRelativeAccuracy() {
+		double[] speeds = new Random(3).doubles(20_000, 1.0, 120.0).toArray();
+		SpeedStats stats = new SpeedStats();
+		for (double speed : speeds) {
+			stats.add(speed);
+		}
+		Arrays.sort(speeds);
+
+		for (double q : new double[] { 0.50, 0.85, 0.95 }) {
+			double exact = speeds[(int) Math.floor(q * (speeds.length - 1))];
+			double error = Math.abs(stats.quantile(q) - exact) / exact;
+			assertTrue(error <= SpeedQuantileSketch.RELATIVE_ACCURACY, "q=" + q + " error=" + error);
+		}
+	}
+}
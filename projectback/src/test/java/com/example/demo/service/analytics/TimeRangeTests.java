@@ -0,0 +1,46 @@
+package com.example.demo.service.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Los extremos del rango se normalizan al formato de detections.date, sea cual sea el formato
+ * de entrada, y un rango vacío o una fecha inválida se rechazan.
+ */
+class TimeRangeTests {
+
+	@Test
+	void normalizesSupportedFormats() {
+		long epochMs = LocalDateTime.of(2025, 5, 30, 16, 59, 6).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+		assertEquals(new TimeRange("2025-05-30 00:00:00", "2025-05-30 16:59:06"),
+			TimeRange.parse("2025-05-30", String.valueOf(epochMs)));
+		assertEquals(new TimeRange("2025-05-30 16:00:00", "2025-05-30 17:30:15"),
+			TimeRange.parse(" 2025-05-30T16:00 ", "2025-05-30 17:30:15"));
+		assertEquals(epochMs, TimeRange.toEpochMs("2025-05-30 16:59:06"));
+	}
+
+	@Test
+	void openEndsAreNull() {
+		TimeRange range = TimeRange.parse(null, " ");
+
+		assertTrue(range.isUnbounded());
+		assertNull(range.fromMillis());
+		assertEquals(new TimeRange("2025-05-30 00:00:00", null), TimeRange.parse("2025-05-30", null));
+	}
+
+	@Test
+	void rejectsEmptyRangesAndInvalidDates() {
+		assertThrows(IllegalArgumentException.class, () -> TimeRange.parse("2025-05-30", "2025-05-30"));
+		assertThrows(IllegalArgumentException.class, () -> TimeRange.parse("2025-05-31", "2025-05-30"));
+		assertThrows(IllegalArgumentException.class, () -> TimeRange.parse("30/05/2025", null));
+		assertNull(TimeRange.toEpochMs("2025-05-30"));
+	}
+}